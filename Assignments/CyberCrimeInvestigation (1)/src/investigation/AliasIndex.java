@@ -0,0 +1,132 @@
+package investigation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Resolves former hacker names to the hacker they were merged into, using
+ * union-find (weighted quick-union with path halving). Every name that has
+ * taken part in a merge gets an id; each set of ids is one surviving hacker,
+ * whose current name is stored as the label of the set's root. Resolving a
+ * name and merging two sets both take near-constant amortized time, however
+ * long the chain of merges behind a hacker gets.
+ */
+public class AliasIndex {
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private int[] parent = new int[16];
+    private int[] size = new int[16];
+    private String[] label = new String[16];  // live name of a root, null once removed
+    private int count = 0;
+
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private int newSet(String name) {
+        if (count == parent.length) {
+            parent = Arrays.copyOf(parent, count * 2);
+            size = Arrays.copyOf(size, count * 2);
+            label = Arrays.copyOf(label, count * 2);
+        }
+        parent[count] = count;
+        size[count] = 1;
+        label[count] = name;
+        ids.put(name, count);
+        return count++;
+    }
+
+    /**
+     * @return The root of the set a live hacker heads. A name that used to be
+     * someone else's alias, or belonged to a removed hacker, starts a new set.
+     */
+    private int rootOfLive(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            int root = find(id);
+            if (name.equals(label[root])) {
+                return root;
+            }
+        }
+        return newSet(name);
+    }
+
+    /**
+     * Records that merged was merged into survivor. Both must be live hacker names.
+     * 
+     * @param survivor
+     * @param merged
+     */
+    public synchronized void union(String survivor, String merged) {
+        int p = rootOfLive(survivor);
+        int q = rootOfLive(merged);
+        if (p == q) {
+            return;
+        }
+        label[p] = null;
+        label[q] = null;
+        int root;
+        if (size[p] < size[q]) {
+            parent[p] = q;
+            size[q] += size[p];
+            root = q;
+        } else {
+            parent[q] = p;
+            size[p] += size[q];
+            root = p;
+        }
+        label[root] = survivor;
+    }
+
+    /**
+     * @param name Any current or former hacker name
+     * @return The current name of the hacker it belongs to, or null if it is
+     * unknown or that hacker has been removed.
+     */
+    public synchronized String resolve(String name) {
+        Integer id = ids.get(name);
+        return id == null ? null : label[find(id)];
+    }
+
+    /**
+     * Records that a live hacker was removed: neither its name nor its former
+     * names resolve any more.
+     * 
+     * @param name
+     */
+    public synchronized void forget(String name) {
+        Integer id = ids.remove(name);
+        if (id != null) {
+            int root = find(id);
+            if (name.equals(label[root])) {
+                label[root] = null;
+            }
+        }
+    }
+
+    /**
+     * @return Every former name that still resolves to a live hacker.
+     */
+    public synchronized ArrayList<String> resolvableNames() {
+        ArrayList<String> names = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+            if (label[find(entry.getValue())] != null) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return The number of names ever merged.
+     */
+    public synchronized int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,126 @@
+package investigation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A Bloom filter over hacker names. mightContain() returning false means the
+ * name was definitely never added; true means it probably was. Each name sets
+ * k bits chosen by double hashing a 64-bit hash of the name's characters, so
+ * a check costs one pass over the name and a few array reads, and no
+ * String.equals. Hashing the characters rather than folding String.hashCode()
+ * keeps names whose 32-bit hash codes collide apart, so they are not
+ * guaranteed false positives of each other.
+ *
+ * Names cannot be removed; the filter is rebuilt instead. Bits are set
+ * atomically, so threads may add and check names concurrently.
+ */
+public class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+    private final int expectedNames;
+    private final AtomicInteger numNames = new AtomicInteger();
+
+    /**
+     * @param expectedNames Number of names the filter is sized for
+     * @param falsePositiveRate Target false positive rate at that many names
+     */
+    public BloomFilter(int expectedNames, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        this.expectedNames = Math.max(1, expectedNames);
+        long m = (long) Math.ceil(-this.expectedNames * Math.log(falsePositiveRate) / (LN2 * LN2));
+        m = Math.max(64, (m + 63) & ~63L);
+        numBits = m;
+        numHashes = Math.max(1, (int) Math.round(m / (double) this.expectedNames * LN2));
+        bits = new AtomicLongArray((int) (m >>> 6));
+    }
+
+    // FNV-1a over the characters, then a murmur3 finalizer to spread the bits
+    private static long hash(String name) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Adds a name. Adding a name already in the filter sets no new bits and
+     * is not counted again.
+     * 
+     * @param name
+     */
+    public void add(String name) {
+        long h = hash(name);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        boolean changed = false;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+                current = bits.get(word);
+            }
+        }
+        if (changed) {
+            numNames.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param name
+     * @return False if the name was never added, true if it probably was.
+     */
+    public boolean mightContain(String name) {
+        long h = hash(name);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < numHashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % numBits;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of names added so far, not counting repeats.
+     */
+    public int numNames() {
+        return numNames.get();
+    }
+
+    /**
+     * @return The number of names the filter was sized for.
+     */
+    public int expectedNames() {
+        return expectedNames;
+    }
+
+    /**
+     * @return The expected false positive rate given the names added so far.
+     */
+    public double falsePositiveRate() {
+        double filled = 1 - Math.exp(-(double) numHashes * numNames.get() / numBits);
+        return Math.pow(filled, numHashes);
+    }
+}
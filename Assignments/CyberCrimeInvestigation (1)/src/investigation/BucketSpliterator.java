@@ -0,0 +1,87 @@
+package investigation;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/*
+ * Splits a table of HNode chains by bucket range, so a directory can be
+ * scanned with parallelStream(): trySplit() hands off the upper half of the
+ * remaining buckets, and each half walks its chains with no shared state.
+ * The size estimate is halved with the range, which is accurate while
+ * hackers are spread evenly over the buckets.
+ */
+public class BucketSpliterator implements Spliterator<Hacker> {
+
+    private final HNode[] table;
+    private int bucket;        // Next bucket to start
+    private final int fence;   // One past the last bucket
+    private HNode current;     // Next node in the chain being walked, if any
+    private long estimate;
+
+    /**
+     * @param table The buckets to scan
+     * @param numHackers Number of hackers in the table
+     */
+    public BucketSpliterator(HNode[] table, long numHackers) {
+        this(table, 0, table.length, numHackers);
+    }
+
+    private BucketSpliterator(HNode[] table, int bucket, int fence, long estimate) {
+        this.table = table;
+        this.bucket = bucket;
+        this.fence = fence;
+        this.estimate = estimate;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Hacker> action) {
+        while (current == null) {
+            if (bucket >= fence) {
+                return false;
+            }
+            current = table[bucket++];
+        }
+        Hacker hacker = current.getHacker();
+        current = current.getNext();
+        action.accept(hacker);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Hacker> action) {
+        for (HNode node = current; node != null; node = node.getNext()) {
+            action.accept(node.getHacker());
+        }
+        current = null;
+        for (; bucket < fence; bucket++) {
+            for (HNode node = table[bucket]; node != null; node = node.getNext()) {
+                action.accept(node.getHacker());
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<Hacker> trySplit() {
+        int mid = (bucket + fence) >>> 1;
+        if (mid <= bucket) {
+            return null;
+        }
+        // This half keeps the chain in progress and the lower buckets, so encounter order is kept
+        estimate >>>= 1;
+        BucketSpliterator prefix = new BucketSpliterator(table, bucket, mid, estimate);
+        prefix.current = current;
+        current = null;
+        bucket = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
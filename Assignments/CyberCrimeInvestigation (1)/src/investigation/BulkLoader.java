@@ -0,0 +1,102 @@
+package investigation;
+
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Loads a hacker input file in parallel. Every record is exactly 7 lines
+ * (name, ip hash, location, os, web server, date, url hash), so once the file is
+ * mapped and its lines indexed by MappedHackerFile it is split into shards at
+ * record boundaries and each shard is parsed on a fork-join pool.
+ * Shards aggregate incidents per hacker name locally, so the shared directory
+ * only sees one addHacker call per distinct hacker, after it has been sized
+ * for all of them.
+ */
+public class BulkLoader {
+
+    static final int LINES_PER_RECORD = 7;
+
+    // Records parsed by one leaf task before it stops splitting
+    private static final int SHARD_RECORDS = 2048;
+
+    private final ForkJoinPool pool;
+
+    public BulkLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public BulkLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Parses the given file and adds its hackers to the investigation.
+     * 
+     * @param inputFile The name of the file to read hacker data from.
+     * @param investigation The investigation to load into.
+     * @return The number of records read.
+     */
+    public int load(String inputFile, CyberCrimeInvestigation investigation) {
+        MappedHackerFile file = new MappedHackerFile(inputFile);
+        int records = file.numRecords();
+
+        HashMap<String, Hacker> hackers = pool.invoke(new ParseTask(file, 0, records));
+
+        investigation.ensureCapacity(investigation.numHackers() + hackers.size());
+        for (Hacker hacker : hackers.values()) {
+            investigation.addHacker(hacker);
+        }
+        return records;
+    }
+
+    private static final class ParseTask extends RecursiveTask<HashMap<String, Hacker>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MappedHackerFile file;
+        private final int from;
+        private final int to;
+
+        ParseTask(MappedHackerFile file, int from, int to) {
+            this.file = file;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected HashMap<String, Hacker> compute() {
+            if (to - from <= SHARD_RECORDS) {
+                return parseShard();
+            }
+            int mid = (from + to) >>> 1;
+            ParseTask left = new ParseTask(file, from, mid);
+            ParseTask right = new ParseTask(file, mid, to);
+            right.fork();
+            HashMap<String, Hacker> merged = left.compute();
+            combine(merged, right.join());
+            return merged;
+        }
+
+        private HashMap<String, Hacker> parseShard() {
+            HashMap<String, Hacker> hackers = new HashMap<>();
+            for (int record = from; record < to; record++) {
+                hackers.computeIfAbsent(file.name(record), Hacker::new).addIncident(file.incident(record));
+            }
+            return hackers;
+        }
+    }
+
+    /**
+     * Appends the later shard's incidents to the earlier shard's hackers,
+     * keeping each hacker's incidents in file order.
+     */
+    static void combine(HashMap<String, Hacker> into, HashMap<String, Hacker> later) {
+        for (Hacker hacker : later.values()) {
+            Hacker existing = into.putIfAbsent(hacker.getName(), hacker);
+            if (existing != null) {
+                existing.addIncidents(hacker.getIncidents());
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package investigation;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * The original resizing hash table: an array of HNode linked lists. The table
+ * doubles once the number of hackers reaches half of its length.
+ */
+public class ChainedHackerDirectory implements HackerDirectory {
+
+    private HNode[] hackerDirectory;
+    private int numHackers = 0;
+
+    public ChainedHackerDirectory() {
+        hackerDirectory = new HNode[10];
+    }
+
+    public Hacker add(Hacker toAdd) {
+        int index = HackerDirectory.indexFor(toAdd.getName(), hackerDirectory.length);
+
+        HNode current = hackerDirectory[index];
+        HNode tail = null;
+
+        while (current != null) {
+            if (current.getHacker().getName().equals(toAdd.getName())) {
+                current.getHacker().addIncidents(toAdd.getIncidents());
+                return current.getHacker();
+            }
+            tail = current;
+            current = current.getNext();
+        }
+
+        HNode newNode = new HNode(toAdd);
+        if (tail == null) {
+            hackerDirectory[index] = newNode;
+        } else {
+            tail.setNext(newNode);
+        }
+
+        numHackers++;
+
+        if (numHackers >= hackerDirectory.length / 2) {
+            resize();
+        }
+        return toAdd;
+    }
+
+    /**
+     * Resizes the hacker directory to double its current size.  Rehashes all hackers
+     * into the new doubled directory.
+     */
+    private void resize() {
+        resize(hackerDirectory.length * 2);
+    }
+
+    private void resize(int length) {
+        HNode[] oldDirectory = hackerDirectory;
+
+        hackerDirectory = new HNode[length];
+
+        numHackers = 0;
+
+        for (HNode head : oldDirectory) {
+            HNode current = head;
+            while (current != null) {
+                add(current.getHacker());
+                current = current.getNext();
+            }
+        }
+    }
+
+    public Hacker search(String toSearch) {
+        HNode current = hackerDirectory[HackerDirectory.indexFor(toSearch, hackerDirectory.length)];
+
+        while (current != null) {
+            if (current.getHacker().getName().equals(toSearch)) {
+                return current.getHacker();
+            }
+            current = current.getNext();
+        }
+
+        return null;
+    }
+
+    public Hacker remove(String toRemove) {
+        int index = HackerDirectory.indexFor(toRemove, hackerDirectory.length);
+
+        HNode current = hackerDirectory[index];
+        HNode previous = null;
+
+        while (current != null) {
+            if (current.getHacker().getName().equals(toRemove)) {
+                if (previous == null) {
+                    hackerDirectory[index] = current.getNext();
+                } else {
+                    previous.setNext(current.getNext());
+                }
+
+                numHackers--;
+                return current.getHacker();
+            }
+
+            previous = current;
+            current = current.getNext();
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return numHackers;
+    }
+
+    public void ensureCapacity(int numHackers) {
+        int length = hackerDirectory.length;
+        while (numHackers >= length / 2) {
+            length *= 2;
+        }
+        if (length != hackerDirectory.length) {
+            resize(length);
+        }
+    }
+
+    public int capacity() {
+        return hackerDirectory.length;
+    }
+
+    public HNode[] toChains() {
+        return hackerDirectory;
+    }
+
+    public Iterator<Hacker> iterator() {
+        return new Iterator<Hacker>() {
+            private int bucket = 0;
+            private HNode next = advance(null);
+
+            private HNode advance(HNode current) {
+                if (current != null && current.getNext() != null) {
+                    return current.getNext();
+                }
+                while (bucket < hackerDirectory.length) {
+                    HNode head = hackerDirectory[bucket++];
+                    if (head != null) {
+                        return head;
+                    }
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public Hacker next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                HNode current = next;
+                next = advance(current);
+                return current.getHacker();
+            }
+        };
+    }
+}
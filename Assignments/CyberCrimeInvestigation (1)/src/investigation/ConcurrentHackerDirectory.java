@@ -0,0 +1,257 @@
+package investigation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * A thread-safe hacker directory using lock striping. The table is split into
+ * independent segments, each a small chained hash table guarded by its own lock,
+ * chosen by the high bits of the name's mixed hash. Threads working on
+ * different segments never contend, and each segment doubles on its own
+ * schedule, so resizing one segment only blocks callers that hash to it.
+ *
+ * add() runs entirely under the segment lock, so two threads adding incidents
+ * for the same hacker are applied one after the other and no incident is lost.
+ * The returned Hacker's incident list should only be read once ingestion is done.
+ *
+ * search() takes no lock. Chain nodes never change once published: add()
+ * pushes a new head, remove() copies the nodes in front of the removed one,
+ * and a resize builds a new table of new nodes. Buckets are read and written
+ * through an AtomicReferenceArray, so a reader sees either the chain from
+ * before a change or the one after it, never one half relinked.
+ */
+public class ConcurrentHackerDirectory implements HackerDirectory {
+
+    private static final int DEFAULT_CONCURRENCY = 64;
+
+    private static final class Node {
+        final Hacker hacker;
+        final Node next;
+
+        Node(Hacker hacker, Node next) {
+            this.hacker = hacker;
+            this.next = next;
+        }
+    }
+
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile AtomicReferenceArray<Node> table = new AtomicReferenceArray<>(8);
+        volatile int count = 0;
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    public ConcurrentHackerDirectory() {
+        this(DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * @param concurrencyLevel Expected number of writer threads; rounded up to a power of two segments.
+     */
+    public ConcurrentHackerDirectory(int concurrencyLevel) {
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be positive: " + concurrencyLevel);
+        }
+        int numSegments = 1;
+        int bits = 0;
+        while (numSegments < concurrencyLevel) {
+            numSegments <<= 1;
+            bits++;
+        }
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment();
+        }
+        segmentShift = 32 - bits;
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // Names such as "Hacker1234" differ only in their hash's low bits, so a
+    // multiplicative hash carries those into the high bits picking the segment
+    private Segment segmentFor(int h) {
+        return segments.length == 1 ? segments[0] : segments[(h * 0x9E3779B9) >>> segmentShift];
+    }
+
+    private static int bucket(AtomicReferenceArray<Node> table, int h) {
+        return h & (table.length() - 1);
+    }
+
+    public Hacker add(Hacker toAdd) {
+        int h = hash(toAdd.getName());
+        Segment segment = segmentFor(h);
+        segment.lock.lock();
+        try {
+            AtomicReferenceArray<Node> table = segment.table;
+            int index = bucket(table, h);
+            Node head = table.get(index);
+            for (Node current = head; current != null; current = current.next) {
+                if (current.hacker.getName().equals(toAdd.getName())) {
+                    current.hacker.addIncidents(toAdd.getIncidents());
+                    return current.hacker;
+                }
+            }
+            table.set(index, new Node(toAdd, head));
+            segment.count++;
+
+            if (segment.count >= table.length() / 2) {
+                resize(segment);
+            }
+            return toAdd;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Doubles one segment. Called with the segment lock held.
+     */
+    private static void resize(Segment segment) {
+        resize(segment, segment.table.length() * 2);
+    }
+
+    private static void resize(Segment segment, int length) {
+        AtomicReferenceArray<Node> oldTable = segment.table;
+        AtomicReferenceArray<Node> table = new AtomicReferenceArray<>(length);
+        for (int i = 0; i < oldTable.length(); i++) {
+            for (Node current = oldTable.get(i); current != null; current = current.next) {
+                int index = bucket(table, hash(current.hacker.getName()));
+                table.set(index, new Node(current.hacker, table.get(index)));
+            }
+        }
+        segment.table = table;
+    }
+
+    public Hacker search(String toSearch) {
+        int h = hash(toSearch);
+        AtomicReferenceArray<Node> table = segmentFor(h).table;
+        for (Node current = table.get(bucket(table, h)); current != null; current = current.next) {
+            if (current.hacker.getName().equals(toSearch)) {
+                return current.hacker;
+            }
+        }
+        return null;
+    }
+
+    public Hacker remove(String toRemove) {
+        int h = hash(toRemove);
+        Segment segment = segmentFor(h);
+        segment.lock.lock();
+        try {
+            AtomicReferenceArray<Node> table = segment.table;
+            int index = bucket(table, h);
+            Node head = table.get(index);
+            Node found = head;
+            while (found != null && !found.hacker.getName().equals(toRemove)) {
+                found = found.next;
+            }
+            if (found == null) {
+                return null;
+            }
+            // Copy the nodes in front of the removed one onto the rest of the chain
+            Node chain = found.next;
+            for (Node current = head; current != found; current = current.next) {
+                chain = new Node(current.hacker, chain);
+            }
+            table.set(index, chain);
+            segment.count--;
+            return found.hacker;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    /**
+     * Assumes names spread evenly and sizes every segment for its share, with some headroom.
+     */
+    public void ensureCapacity(int numHackers) {
+        int perSegment = numHackers / segments.length + 1;
+        perSegment += perSegment / 4;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                int length = segment.table.length();
+                while (perSegment >= length / 2) {
+                    length *= 2;
+                }
+                if (length != segment.table.length()) {
+                    resize(segment, length);
+                }
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    public int capacity() {
+        int capacity = 0;
+        for (Segment segment : segments) {
+            capacity += segment.table.length();
+        }
+        return capacity;
+    }
+
+    /**
+     * Copies every segment, one at a time, into a list. Chains are immutable,
+     * so each segment's table is read as it stood without locking it.
+     */
+    private ArrayList<Hacker> snapshot() {
+        ArrayList<Hacker> hackers = new ArrayList<>(size());
+        for (Segment segment : segments) {
+            AtomicReferenceArray<Node> table = segment.table;
+            for (int i = 0; i < table.length(); i++) {
+                for (Node current = table.get(i); current != null; current = current.next) {
+                    hackers.add(current.hacker);
+                }
+            }
+        }
+        return hackers;
+    }
+
+    /**
+     * Builds fresh HNode chains indexed like the original chained table.
+     * The chains are a copy; they do not change with the directory.
+     */
+    public HNode[] toChains() {
+        ArrayList<Hacker> hackers = snapshot();
+        HNode[] chains = new HNode[Math.max(10, capacity())];
+        for (Hacker hacker : hackers) {
+            int index = HackerDirectory.indexFor(hacker.getName(), chains.length);
+            HNode node = new HNode(hacker);
+            node.setNext(chains[index]);
+            chains[index] = node;
+        }
+        return chains;
+    }
+
+    /**
+     * Weakly consistent: each segment is copied when iteration starts.
+     */
+    public Iterator<Hacker> iterator() {
+        return snapshot().iterator();
+    }
+
+    /**
+     * Splits a snapshot taken like iterator()'s, so scans see the same hackers in the same order.
+     */
+    @Override
+    public Spliterator<Hacker> spliterator() {
+        return snapshot().spliterator();
+    }
+}
@@ -0,0 +1,271 @@
+package investigation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/*
+ * Finds hackers that share indicators (incident IP or URL hashes) by a
+ * parallel, partitioned hash join of every incident against every other:
+ *
+ *   1. Each incident contributes one (IP key, hacker) and one (URL key, hacker)
+ *      entry. Entries are radix-partitioned on the key's top bits: chunks of
+ *      entries are counted and scattered in parallel.
+ *   2. Each partition is joined on its own: a hash table chains the entries
+ *      with equal keys, and each key shared by 2..MAX_SHARERS distinct hackers
+ *      adds evidence to every pair of them. Keys shared by more hackers (proxies,
+ *      common landing pages) are skipped as they say little about identity and
+ *      would add a quadratic number of pairs.
+ *   3. The per-partition pairs are summed into MergeCandidates, and union-find
+ *      over the pairs gives the connected components of the co-occurrence graph.
+ *
+ * Keys are 64-bit mixes of the 128-bit hashes, so two different hashes are
+ * joined only with probability about 2^-64 per pair. The engine reads each
+ * hacker's incidents once, when run() starts, and works on that copy, so
+ * incidents added meanwhile are left out rather than overflowing the entries.
+ */
+public class CorrelationEngine {
+
+    static final int MAX_SHARERS = 64;
+
+    private static final long URL_SALT = 0x5bd1e9955bd1e995L;
+
+    private final ForkJoinPool pool;
+    private final Hacker[] hackers;
+
+    private ArrayList<MergeCandidate> candidates;
+    private ArrayList<ArrayList<Hacker>> components;
+
+    /**
+     * @param hackers The hackers to correlate
+     */
+    public CorrelationEngine(Iterable<Hacker> hackers) {
+        this(hackers, ForkJoinPool.commonPool());
+    }
+
+    public CorrelationEngine(Iterable<Hacker> hackers, ForkJoinPool pool) {
+        ArrayList<Hacker> all = new ArrayList<>();
+        for (Hacker hacker : hackers) {
+            all.add(hacker);
+        }
+        this.hackers = all.toArray(new Hacker[0]);
+        this.pool = pool;
+    }
+
+    private static long mix(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Runs the join and builds the candidates and components.
+     * 
+     * @return This engine, for chaining.
+     */
+    public CorrelationEngine run() {
+        pool.submit(this::join).join();
+        return this;
+    }
+
+    private void join() {
+        // One copy per hacker both sizes and fills its entries
+        ArrayList<List<Incident>> incidents = new ArrayList<>(Collections.nCopies(hackers.length, null));
+        IntStream.range(0, hackers.length).parallel().forEach(h -> incidents.set(h, hackers[h].getIncidents()));
+
+        // Entry e is (keys[e], owners[e]); hacker h owns entries 2 * offsets[h] ..
+        int[] offsets = new int[hackers.length + 1];
+        for (int h = 0; h < hackers.length; h++) {
+            offsets[h + 1] = offsets[h] + incidents.get(h).size();
+        }
+        int numEntries = 2 * offsets[hackers.length];
+        long[] keys = new long[numEntries];
+        int[] owners = new int[numEntries];
+        IntStream.range(0, hackers.length).parallel().forEach(h -> {
+            int e = 2 * offsets[h];
+            for (Incident incident : incidents.get(h)) {
+                keys[e] = mix(incident.getIPHashHigh(), incident.getIPHashLow()) & ~1L;
+                owners[e++] = h;
+                keys[e] = mix(incident.getURLHashHigh() ^ URL_SALT, incident.getURLHashLow()) | 1L;
+                owners[e++] = h;
+            }
+        });
+
+        // Radix-partition on the top bits of the key
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, pool.getParallelism() * 8 - 1));
+        int numPartitions = 1 << bits;
+        int numChunks = Math.max(1, Math.min(pool.getParallelism() * 4, numEntries / 4096));
+        int chunkSize = (numEntries + numChunks - 1) / Math.max(1, numChunks);
+        int[][] counts = new int[numChunks][numPartitions];
+        IntStream.range(0, numChunks).parallel().forEach(c -> {
+            int end = Math.min(numEntries, (c + 1) * chunkSize);
+            for (int e = c * chunkSize; e < end; e++) {
+                counts[c][(int) (keys[e] >>> (64 - bits))]++;
+            }
+        });
+        int[] partitionStart = new int[numPartitions + 1];
+        int[][] cursors = new int[numChunks][numPartitions];
+        int position = 0;
+        for (int p = 0; p < numPartitions; p++) {
+            partitionStart[p] = position;
+            for (int c = 0; c < numChunks; c++) {
+                cursors[c][p] = position;
+                position += counts[c][p];
+            }
+        }
+        partitionStart[numPartitions] = position;
+        long[] partitionedKeys = new long[numEntries];
+        int[] partitionedOwners = new int[numEntries];
+        IntStream.range(0, numChunks).parallel().forEach(c -> {
+            int end = Math.min(numEntries, (c + 1) * chunkSize);
+            for (int e = c * chunkSize; e < end; e++) {
+                int to = cursors[c][(int) (keys[e] >>> (64 - bits))]++;
+                partitionedKeys[to] = keys[e];
+                partitionedOwners[to] = owners[e];
+            }
+        });
+
+        // Join each partition independently, then sum the pairs
+        ArrayList<HashMap<Long, MergeCandidate>> pairs = new ArrayList<>(Collections.nCopies(numPartitions, null));
+        IntStream.range(0, numPartitions).parallel().forEach(p -> pairs.set(p,
+                joinPartition(partitionedKeys, partitionedOwners, partitionStart[p], partitionStart[p + 1])));
+        HashMap<Long, MergeCandidate> all = new HashMap<>();
+        for (HashMap<Long, MergeCandidate> partition : pairs) {
+            for (Map.Entry<Long, MergeCandidate> entry : partition.entrySet()) {
+                MergeCandidate existing = all.putIfAbsent(entry.getKey(), entry.getValue());
+                if (existing != null) {
+                    existing.add(entry.getValue());
+                }
+            }
+        }
+
+        candidates = new ArrayList<>(all.values());
+        Collections.sort(candidates);
+        components = connectedComponents(all.keySet());
+    }
+
+    private HashMap<Long, MergeCandidate> joinPartition(long[] keys, int[] owners, int from, int to) {
+        HashMap<Long, MergeCandidate> pairs = new HashMap<>();
+        int size = to - from;
+        if (size < 2) {
+            return pairs;
+        }
+
+        // Build: chain the entries of each distinct key from a linear-probing table
+        int capacity = Integer.highestOneBit(size * 2 - 1) << 1;
+        int mask = capacity - 1;
+        long[] slotKeys = new long[capacity];
+        int[] heads = new int[capacity];
+        Arrays.fill(heads, -1);
+        int[] next = new int[size];
+        for (int e = 0; e < size; e++) {
+            long key = keys[from + e];
+            int slot = (int) key & mask;
+            while (heads[slot] != -1 && slotKeys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            slotKeys[slot] = key;
+            next[e] = heads[slot];
+            heads[slot] = e;
+        }
+
+        // Probe: every key with several distinct owners links each pair of them
+        int[] sharers = new int[MAX_SHARERS + 1];
+        for (int slot = 0; slot < capacity; slot++) {
+            if (heads[slot] == -1 || next[heads[slot]] == -1) {
+                continue;
+            }
+            int k = 0;
+            for (int e = heads[slot]; e != -1 && k <= MAX_SHARERS; e = next[e]) {
+                int owner = owners[from + e];
+                boolean seen = false;
+                for (int i = 0; i < k && !seen; i++) {
+                    seen = sharers[i] == owner;
+                }
+                if (!seen) {
+                    sharers[k++] = owner;
+                }
+            }
+            if (k < 2 || k > MAX_SHARERS) {
+                continue;
+            }
+            boolean isURL = (slotKeys[slot] & 1L) != 0;
+            double weight = 1.0 / (k - 1);
+            for (int i = 0; i < k; i++) {
+                for (int j = i + 1; j < k; j++) {
+                    int a = Math.min(sharers[i], sharers[j]);
+                    int b = Math.max(sharers[i], sharers[j]);
+                    MergeCandidate pair = pairs.computeIfAbsent(((long) a << 32) | b,
+                            key -> new MergeCandidate(hackers[a], hackers[b]));
+                    if (isURL) {
+                        pair.sharedURLs++;
+                    } else {
+                        pair.sharedIPs++;
+                    }
+                    pair.score += weight;
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private ArrayList<ArrayList<Hacker>> connectedComponents(Iterable<Long> edges) {
+        int[] parent = new int[hackers.length];
+        for (int h = 0; h < parent.length; h++) {
+            parent[h] = h;
+        }
+        for (long edge : edges) {
+            int a = find(parent, (int) (edge >>> 32));
+            int b = find(parent, (int) edge);
+            if (a != b) {
+                parent[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+
+        HashMap<Integer, ArrayList<Hacker>> byRoot = new HashMap<>();
+        for (int h = 0; h < hackers.length; h++) {
+            byRoot.computeIfAbsent(find(parent, h), r -> new ArrayList<>()).add(hackers[h]);
+        }
+        ArrayList<ArrayList<Hacker>> result = new ArrayList<>();
+        for (ArrayList<Hacker> component : byRoot.values()) {
+            if (component.size() > 1) {
+                result.add(component);
+            }
+        }
+        result.sort((x, y) -> x.size() != y.size() ? y.size() - x.size()
+                : x.get(0).getName().compareTo(y.get(0).getName()));
+        return result;
+    }
+
+    private static int find(int[] parent, int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    /**
+     * @return Every pair of hackers sharing an indicator, highest score first.
+     */
+    public ArrayList<MergeCandidate> candidates() {
+        return candidates;
+    }
+
+    /**
+     * @return The groups of two or more hackers linked by shared indicators,
+     * largest first, each in table order.
+     */
+    public ArrayList<ArrayList<Hacker>> components() {
+        return components;
+    }
+}
@@ -1,10 +1,33 @@
 package investigation;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList; 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /*  
  * This class represents a cyber crime investigation.  It contains a directory of hackers, which is a resizing
- * hash table. The hash table is an array of HNode objects, which are linked lists of Hacker objects.  
+ * hash table. By default the hash table is an array of HNode objects, which are linked lists of Hacker objects;
+ * any other HackerDirectory (such as the open addressing ProbingHackerDirectory) can be supplied instead.
+ * With a ConcurrentHackerDirectory, addHacker, search and remove may be called from many threads at once:
+ * each change to a hacker, and to the indexes for it, holds the lock of the stripe its name hashes to.
  * 
  * The class contains methods to add a hacker to the directory, remove a hacker from the directory.
  * You will implement these methods, to create and use the HashTable, as well as analyze the data in the directory.
@@ -13,11 +36,73 @@ import java.util.ArrayList;
  */
 public class CyberCrimeInvestigation {
        
-    private HNode[] hackerDirectory;
-    private int numHackers = 0; 
+    private HackerDirectory hackerDirectory;
+    private final LocationIndex locationIndex = new LocationIndex();
+    private final MostWantedBoard mostWanted = new MostWantedBoard();
+    private final AliasIndex aliases = new AliasIndex();
+
+    // A hacker is added, removed or merged, and its index entries changed,
+    // only while holding the stripe lock for its name
+    private static final int NUM_STRIPES = 64;
+    private final ReentrantLock[] stripes = new ReentrantLock[NUM_STRIPES];
+
+    private boolean deduplicate = false;
+
+    // Optional off-heap home for every stored hacker's incidents
+    private volatile IncidentStore incidentStore = null;
+
+    // Optional ranking over the most recent days only
+    private volatile WindowedMostWanted window = null;
+
+    // In approximate mode, added hackers are only counted here, not stored
+    private volatile MostWantedSketch approximate = null;
+
+    // Optional negative-lookup filter over names and aliases. While it is being
+    // rebuilt, names are added to both the current and the pending filter.
+    // Rebuilds are serialized by bloomLock, which is never taken under a stripe.
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+    private volatile BloomFilter bloom = null;
+    private volatile BloomFilter pendingBloom = null;
+    private volatile int bloomCapacity = 0;
+    private final Object bloomLock = new Object();
+
+    // Optional write-ahead log. Logged mutations hold the read lock, so a
+    // checkpoint, which takes the write lock, sees none half done. Each is
+    // appended under the stripe locks of the hackers it changes, so the log
+    // orders them as they were applied.
+    private volatile MutationLog mutationLog = null;
+    private String checkpointFile;
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+    // Built on the first date query, then kept up to date under the stripe locks.
+    // The bitmap index is only read and rebuilt under the date index's own lock.
+    private volatile DateIndex dateIndex = null;
+    private IncidentBitmapIndex bitmapIndex;
 
     public CyberCrimeInvestigation() {
-        hackerDirectory = new HNode[10];
+        this(new ChainedHackerDirectory());
+    }
+
+    /**
+     * Creates an investigation backed by the given directory implementation,
+     * e.g. a ProbingHackerDirectory instead of the default chained table.
+     * 
+     * @param directory An empty hacker directory
+     */
+    public CyberCrimeInvestigation(HackerDirectory directory) {
+        hackerDirectory = directory;
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Creates an investigation backed by a directory chosen by name.
+     * 
+     * @param directoryType "chained", "probing", "incremental" or "concurrent"
+     */
+    public CyberCrimeInvestigation(String directoryType) {
+        this(HackerDirectory.create(directoryType));
     }
 
     /**
@@ -32,6 +117,134 @@ public class CyberCrimeInvestigation {
         }
     }
 
+    /**
+     * Initializes the hacker directory from a file input, parsing the file
+     * in parallel with a BulkLoader. Produces the same hackers and incidents
+     * as initializeTable, though hackers may be inserted in a different order.
+     * 
+     * @param inputFile
+     */
+    public void bulkLoadTable(String inputFile) {
+        new BulkLoader().load(inputFile, this);
+    }
+
+    /**
+     * Subscribes to a live feed of hackers, which are added in batches as they
+     * arrive. A batch that has not filled up is applied after a short delay,
+     * so a slow feed still shows up. Use the returned ingestor to follow
+     * progress or wait for the end.
+     * 
+     * @param feed
+     * @param batchSize The most records in flight at once
+     * @return The subscribed ingestor.
+     */
+    public HackerIngestor ingest(Flow.Publisher<Hacker> feed, int batchSize) {
+        return ingest(feed, batchSize, HackerIngestor.DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * @param feed
+     * @param batchSize The most records in flight at once
+     * @param maxDelayMillis Longest a received record waits before it is added
+     * @return The subscribed ingestor.
+     */
+    public HackerIngestor ingest(Flow.Publisher<Hacker> feed, int batchSize, long maxDelayMillis) {
+        HackerIngestor ingestor = new HackerIngestor(this, batchSize, maxDelayMillis);
+        feed.subscribe(ingestor);
+        return ingestor;
+    }
+
+    /**
+     * Writes the hacker directory to a binary snapshot file.
+     * 
+     * @param outputFile
+     */
+    public void saveSnapshot(String outputFile) {
+        DirectorySnapshot.save(this, outputFile);
+    }
+
+    /**
+     * Initializes the hacker directory from a snapshot written by saveSnapshot.
+     * 
+     * @param inputFile
+     */
+    public void loadSnapshot(String inputFile) {
+        DirectorySnapshot.load(inputFile, this);
+    }
+
+    /**
+     * Makes addHacker, remove and mergeHackers durable. The directory is first
+     * recovered from the checkpoint file, if it exists, and then from the
+     * mutations logged since; after that every mutation is appended to the log.
+     * Call checkpoint() now and then, e.g. from a scheduled task, to keep the
+     * log short.
+     * 
+     * @param logFile The mutation log, created if missing
+     * @param checkpointFile The snapshot written by checkpoint()
+     * @return The number of mutations replayed from the log.
+     */
+    public int openMutationLog(String logFile, String checkpointFile) {
+        if (mutationLog != null) {
+            throw new IllegalStateException("A mutation log is already open");
+        }
+        if (numHackers() != 0) {
+            throw new IllegalStateException("A mutation log must be opened on an empty directory");
+        }
+        long sequence = 0;
+        if (new File(checkpointFile).exists()) {
+            sequence = DirectorySnapshot.logSequence(checkpointFile);
+            loadSnapshot(checkpointFile);
+        }
+        MutationLog log = MutationLog.open(logFile, sequence, this);
+        this.checkpointFile = checkpointFile;
+        mutationLog = log;
+        return log.replayed();
+    }
+
+    /**
+     * Writes the whole directory to the checkpoint file and empties the mutation
+     * log. Mutations wait while the snapshot is written.
+     */
+    public void checkpoint() {
+        MutationLog log = requireMutationLog();
+        checkpointLock.writeLock().lock();
+        try {
+            String tempFile = checkpointFile + ".tmp";
+            DirectorySnapshot.save(this, tempFile, log.lastSequence(), true);
+            Files.move(Paths.get(tempFile), Paths.get(checkpointFile), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            log.truncate();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint " + checkpointFile, e);
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until every mutation so far is in the mutation log on disk.
+     */
+    public void syncMutationLog() {
+        requireMutationLog().sync();
+    }
+
+    /**
+     * Flushes and closes the mutation log; later mutations are no longer logged.
+     */
+    public void closeMutationLog() {
+        MutationLog log = requireMutationLog();
+        mutationLog = null;
+        log.close();
+    }
+
+    private MutationLog requireMutationLog() {
+        MutationLog log = mutationLog;
+        if (log == null) {
+            throw new IllegalStateException("No mutation log is open");
+        }
+        return log;
+    }
+
     /**
      * Reads a single hackers data from the already set file,
      * Then returns a Hacker object with the data, including 
@@ -62,87 +275,320 @@ public class CyberCrimeInvestigation {
      * Adds a hacker to the directory.  If the hacker already exists in the directory,
      * instead adds the given Hacker's incidents to the existing Hacker's incidents.
      * 
-     * After a new insertion (NOT if a hacker already exists), checks if the number of 
-     * hackers in the table is >= table length divided by 2. If so, calls resize()
+     * After a new insertion (NOT if a hacker already exists), the directory checks
+     * its own load factor and resizes if needed.
      * 
      * @param toAdd
      */
     public void addHacker(Hacker toAdd) {
-        int index = toAdd.hashCode() % hackerDirectory.length;
-        if (index < 0) index += hackerDirectory.length;
-    
-        HNode current = hackerDirectory[index];
-    
-        while (current != null) {
-            if (current.getHacker().getName().equals(toAdd.getName())) {
-                current.getHacker().getIncidents().addAll(toAdd.getIncidents());
-                return;
-            }
-            current = current.getNext();
+        MostWantedSketch sketch = approximate;
+        if (sketch != null) {
+            sketch.add(toAdd.getName(), toAdd.numIncidents());
+            return;
         }
-    
-        HNode newNode = new HNode(toAdd);
-        if (hackerDirectory[index] == null) {
-            hackerDirectory[index] = newNode;
+        if (deduplicate) {
+            toAdd.enableDeduplication();
+        }
+        MutationLog log = mutationLog;
+        if (log == null) {
+            add(toAdd, null, null);
         } else {
-            HNode tail = hackerDirectory[index];
-            while (tail.getNext() != null) {
-                tail = tail.getNext();
+            byte[] record = MutationLog.encodeAdd(toAdd.getName(), toAdd.getIncidents());
+            checkpointLock.readLock().lock();
+            try {
+                add(toAdd, log, record);
+            } finally {
+                checkpointLock.readLock().unlock();
             }
-            tail.setNext(newNode);
         }
-    
-        numHackers++;
-    
-        if (numHackers >= hackerDirectory.length / 2) {
-            resize();
+        if (bloom != null && bloomOutgrown()) {
+            rebuildBloom();
         }
     }
-    
-    
 
     /**
-     * Resizes the hacker directory to double its current size.  Rehashes all hackers
-     * into the new doubled directory.
+     * Adds a hacker under its stripe lock. The record, if any, is appended to
+     * the log before the lock is released, so mutations of the same hacker are
+     * logged in the order they were applied.
      */
-    private void resize() {
-        HNode[] oldDirectory = hackerDirectory;
-    
-        hackerDirectory = new HNode[oldDirectory.length * 2];
-    
-        numHackers = 0;
-    
-        for (HNode head : oldDirectory) {
-            HNode current = head;
-            while (current != null) {
-                addHacker(current.getHacker());
-                current = current.getNext();
+    private void add(Hacker toAdd, MutationLog log, byte[] record) {
+        ReentrantLock lock = stripe(toAdd.getName());
+        lock.lock();
+        try {
+            if (bloom != null) {
+                // Before the directory, so a search never misses a stored hacker
+                addToBloom(toAdd.getName());
+            }
+            // The stripe is held, so the hacker cannot be added or removed between search and add
+            Hacker stored = hackerDirectory.search(toAdd.getName());
+            Collection<Incident> added;
+            int lastRow = IncidentStore.NONE;
+            if (stored != null) {
+                // Only incidents the hacker accepted reach the indexes
+                lastRow = stored.lastRow();
+                added = stored.addIncidents(toAdd.getIncidents());
+            } else {
+                added = toAdd.getIncidents();
+                stored = hackerDirectory.add(toAdd);
+                IncidentStore store = incidentStore;
+                if (store != null) {
+                    stored.moveIncidentsTo(store);
+                }
+            }
+            locationIndex.add(stored, added);
+            mostWanted.update(stored);
+            WindowedMostWanted recent = window;
+            if (recent != null) {
+                recent.add(stored, added);
+            }
+            DateIndex dates = dateIndex;
+            if (dates != null) {
+                dates.add(stored, added, lastRow);
             }
+            if (log != null) {
+                log.append(record);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock stripe(String name) {
+        return stripes[stripeIndex(name)];
+    }
+
+    private static int stripeIndex(String name) {
+        int h = name.hashCode();
+        return (h ^ (h >>> 16)) & (NUM_STRIPES - 1);
+    }
+
+    /**
+     * Runs a change that scans the whole directory while holding every stripe
+     * lock, taken in order, so no hacker is added, removed or merged under it.
+     */
+    private void withAllStripes(Runnable change) {
+        for (ReentrantLock lock : stripes) {
+            lock.lock();
+        }
+        try {
+            change.run();
+        } finally {
+            for (int i = NUM_STRIPES - 1; i >= 0; i--) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Applies a change of mode, first appending it to the mutation log if one
+     * is open, so that replay turns the mode on between the same mutations.
+     */
+    private void logMode(byte[] record, Runnable change) {
+        MutationLog log = mutationLog;
+        if (log == null) {
+            change.run();
+            return;
+        }
+        checkpointLock.readLock().lock();
+        try {
+            change.run();
+            log.append(record);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves every hacker's incidents off the Java heap into a columnar
+     * IncidentStore, and stores the incidents of hackers added later there
+     * too. The collector then sees a few large direct buffers instead of an
+     * object per incident. Hacker.getIncidents() still returns a copy, decoded
+     * from the store, so use Hacker.addIncident to change a hacker's incidents.
+     * Takes only the stripe locks, like the other modes, so it may run while
+     * other threads change the directory.
+     */
+    public void enableOffHeapIncidents() {
+        if (incidentStore != null) {
+            return;
+        }
+        logMode(MutationLog.encodeMode("offHeap"), () -> withAllStripes(() -> {
+            if (incidentStore != null) {
+                return; // Another thread moved them first
+            }
+            IncidentStore store = new IncidentStore();
+            for (Hacker hacker : hackerDirectory) {
+                hacker.moveIncidentsTo(store);
+            }
+            incidentStore = store;
+            // Rebuilt on the next date query, over store rows
+            dateIndex = null;
+        }));
+    }
+
+    /**
+     * @return The off-heap memory holding incidents, in bytes, or 0 if incidents are on the heap.
+     */
+    public long getOffHeapIncidentBytes() {
+        IncidentStore store = incidentStore;
+        return store == null ? 0 : store.allocatedBytes();
+    }
+
+    /**
+     * Switches to approximate mode for unbounded streams: from now on addHacker
+     * only counts the hacker's incidents in a Count-Min sketch and keeps the k
+     * hackers with the highest counts, so memory stays fixed however many
+     * hackers arrive. Hackers already in the directory are counted first and
+     * stay there; new ones are not stored, searched or logged.
+     * 
+     * The mode itself is logged and checkpointed, but the sketch is not: after
+     * a recovery it starts again from the hackers in the directory.
+     * 
+     * @param k Number of most-wanted hackers to track
+     * @param epsilon Counts may be over by epsilon times all incidents seen...
+     * @param delta ...with at most this probability
+     */
+    public void enableApproximateMode(int k, double epsilon, double delta) {
+        MostWantedSketch sketch = new MostWantedSketch(k, epsilon, delta);
+        logMode(MutationLog.encodeApproximate(k, epsilon, delta), () -> withAllStripes(() -> {
+            for (Hacker hacker : hackerDirectory) {
+                sketch.add(hacker.getName(), hacker.numIncidents());
+            }
+            approximate = sketch;
+        }));
+    }
+
+    /**
+     * Gets the top n most wanted hackers counted in approximate mode. Counts
+     * never undercount, and the ranking is exact whenever the gaps between
+     * counts are larger than the error bound.
+     * 
+     * @param n At most the k given to enableApproximateMode
+     * @return Hacker names mapped to their estimated incident counts, highest first.
+     */
+    public LinkedHashMap<String, Long> getApproximateMostWanted(int n) {
+        MostWantedSketch sketch = approximate;
+        if (sketch == null) {
+            throw new IllegalStateException("Approximate mode is not enabled");
+        }
+        return sketch.top(n);
+    }
+
+    /**
+     * Turns on incident de-duplication: from now on every hacker rejects
+     * incidents equal to one it already has, on add and on merge, so loading
+     * overlapping inputs twice is idempotent. Duplicates already in the
+     * directory are dropped when this is first turned on.
+     */
+    public void enableDeduplication() {
+        if (deduplicate) {
+            return;
+        }
+        // Re-ranking under every stripe, so it cannot bring back a hacker removed meanwhile
+        logMode(MutationLog.encodeMode("deduplicate"), () -> withAllStripes(() -> {
+            deduplicate = true;
+            hackerDirectory.parallelStream().forEach(Hacker::enableDeduplication);
+            for (Hacker hacker : hackerDirectory) {
+                mostWanted.update(hacker);
+            }
+            // Dropped duplicates are still counted there, so recount over the same days
+            WindowedMostWanted recent = window;
+            if (recent != null) {
+                window = countWindow(recent.days(), recent.today());
+            }
+            // Dropped duplicates are still rows there, so start again on the next date query
+            dateIndex = null;
+        }));
+    }
+
+    /**
+     * Turns on a Bloom filter over hacker names and aliases, so that search()
+     * answers most lookups for unknown names without touching the directory.
+     * The filter is rebuilt at the directory's new capacity whenever the
+     * directory resizes or the filter fills up, which also clears names of
+     * removed hackers.
+     */
+    public void enableBloomFilter() {
+        if (bloom == null) {
+            logMode(MutationLog.encodeMode("bloom"), this::rebuildBloom);
+        }
+    }
+
+    /**
+     * @return The expected false positive rate of the Bloom filter, or 0 if it is not enabled.
+     */
+    public double getBloomFalsePositiveRate() {
+        BloomFilter filter = bloom;
+        return filter == null ? 0 : filter.falsePositiveRate();
+    }
+
+    private void addToBloom(String name) {
+        BloomFilter filter;
+        do {
+            filter = bloom;
+            filter.add(name);
+            BloomFilter pending = pendingBloom;
+            if (pending != null) {
+                pending.add(name);
+            }
+            // A rebuild that finished meanwhile may have scanned before the name was stored
+        } while (filter != bloom);
+    }
+
+    /**
+     * @return True if the directory resized since the filter was built, or the filter is full.
+     */
+    private boolean bloomOutgrown() {
+        BloomFilter filter = bloom;
+        return hackerDirectory.capacity() > bloomCapacity || filter.numNames() >= filter.expectedNames();
+    }
+
+    /**
+     * Builds a fresh filter sized for the directory's current capacity. Must
+     * not be called under a stripe lock: it takes every stripe briefly, only
+     * to publish the pending filter, and scans the directory without them.
+     */
+    private void rebuildBloom() {
+        synchronized (bloomLock) {
+            if (bloom != null && !bloomOutgrown()) {
+                return; // Another thread already rebuilt it
+            }
+            int capacity = hackerDirectory.capacity();
+            int expected = Math.max(capacity, 2 * (hackerDirectory.size() + aliases.size()));
+            BloomFilter filter = new BloomFilter(Math.max(16, expected), BLOOM_FALSE_POSITIVE_RATE);
+            // Adds in flight finish first, and every later add also goes to the new filter
+            withAllStripes(() -> pendingBloom = filter);
+            hackerDirectory.parallelStream().forEach(hacker -> filter.add(hacker.getName()));
+            for (String alias : aliases.resolvableNames()) {
+                filter.add(alias);
+            }
+            bloomCapacity = capacity;
+            bloom = filter;
+            pendingBloom = null;
         }
     }
-    
 
     /**
      * Searches the hacker directory for a hacker with the given name.
+     * A name that was merged into another hacker finds the surviving hacker.
      * Returns null if the Hacker is not found
      * 
      * @param toSearch
      * @return The hacker object if found, null otherwise.
      */
-        public Hacker search(String toSearch) {
-            int index = Math.abs(toSearch.hashCode()) % hackerDirectory.length;
-        
-            HNode current = hackerDirectory[index];
-        
-            while (current != null) {
-                if (current.getHacker().getName().equals(toSearch)) {
-                    return current.getHacker(); 
-                }
-                current = current.getNext();
+    public Hacker search(String toSearch) {
+        BloomFilter filter = bloom;
+        if (filter != null && !filter.mightContain(toSearch)) {
+            return null; // Definitely neither a hacker nor an alias
+        }
+        Hacker found = hackerDirectory.search(toSearch);
+        if (found == null) {
+            String current = aliases.resolve(toSearch);
+            if (current != null && !current.equals(toSearch)) {
+                found = hackerDirectory.search(current);
             }
-        
-            return null;
         }
+        return found;
+    }
         
     /**
      * Removes a hacker from the directory.  Returns the removed hacker object.
@@ -152,48 +598,124 @@ public class CyberCrimeInvestigation {
      * @return The removed hacker object, or null if not found.
      */
     public Hacker remove(String toRemove) {
-        int index = Math.abs(toRemove.hashCode()) % hackerDirectory.length;
-    
-        HNode current = hackerDirectory[index];
-        HNode previous = null;
-    
-        while (current != null) {
-            if (current.getHacker().getName().equals(toRemove)) {
-                if (previous == null) {
-                    hackerDirectory[index] = current.getNext();
-                } else {
-                    previous.setNext(current.getNext());
+        MutationLog log = mutationLog;
+        if (log == null) {
+            return removeAndForget(toRemove, null);
+        }
+        checkpointLock.readLock().lock();
+        try {
+            return removeAndForget(toRemove, log);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a hacker and forgets its former names, logging the removal
+     * before the stripe lock is released.
+     */
+    private Hacker removeAndForget(String toRemove, MutationLog log) {
+        ReentrantLock lock = stripe(toRemove);
+        lock.lock();
+        try {
+            Hacker removed = detach(toRemove);
+            if (removed != null) {
+                aliases.forget(toRemove);
+                if (log != null) {
+                    log.append(MutationLog.encodeRemove(toRemove));
                 }
-    
-                numHackers--; 
-                return current.getHacker(); 
             }
-    
-            previous = current;
-            current = current.getNext();
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a hacker from the directory and the indexes, leaving its aliases alone.
+     */
+    private Hacker detach(String toRemove) {
+        ReentrantLock lock = stripe(toRemove);
+        lock.lock();
+        try {
+            Hacker removed = hackerDirectory.remove(toRemove);
+            if (removed != null) {
+                locationIndex.remove(removed);
+                mostWanted.remove(removed);
+                WindowedMostWanted recent = window;
+                if (recent != null) {
+                    recent.remove(removed);
+                }
+                DateIndex dates = dateIndex;
+                if (dates != null) {
+                    dates.remove(removed);
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlock();
         }
-    
-        return null; 
     }
     
     /**
-     * Merges two hackers into one. The first hacker is the one that will be kept.
-     * The second hacker is the one that will be removed. The incidents of the second
-     * hacker will be added to the first hacker. The second hacker will be removed from
-     * the directory.
+     * Merges two hackers into one. The hacker with more incidents (the first on a tie)
+     * is kept and the other is removed from the directory. The removed hacker's
+     * incident list is spliced onto the kept hacker's rather than copied, and its
+     * name becomes an alias that search() resolves to the kept hacker.
      * 
      * @param hacker1 The hacker to merge into
      * @param hacker2 The hacker to merge from
      * @return True if the merge was successful, false otherwise.
      */
     public boolean mergeHackers(String hacker1, String hacker2) {
-        Hacker h1 = search(hacker1);
-        Hacker h2 = search(hacker2);
+        MutationLog log = mutationLog;
+        if (log == null) {
+            return merge(hacker1, hacker2, null);
+        }
+        checkpointLock.readLock().lock();
+        try {
+            return merge(hacker1, hacker2, log);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges under both hackers' stripe locks, appending the merge to the log,
+     * if any, before they are released.
+     */
+    private boolean merge(String hacker1, String hacker2, MutationLog log) {
+        while (true) {
+            Hacker h1 = search(hacker1);
+            Hacker h2 = search(hacker2);
+
+            if (h1 == null || h2 == null || h1 == h2) {
+                return false;
+            }
 
-        if (h1 == null || h2 == null) {
-            return false;
+            // Lock both stripes in index order, then check neither hacker changed meanwhile
+            int i1 = stripeIndex(h1.getName());
+            int i2 = stripeIndex(h2.getName());
+            ReentrantLock first = stripes[Math.min(i1, i2)];
+            ReentrantLock second = stripes[Math.max(i1, i2)];
+            first.lock();
+            second.lock();
+            try {
+                if (search(hacker1) == h1 && search(hacker2) == h2) {
+                    merge(h1, h2);
+                    if (log != null) {
+                        log.append(MutationLog.encodeMerge(hacker1, hacker2));
+                    }
+                    return true;
+                }
+            } finally {
+                second.unlock();
+                first.unlock();
+            }
         }
-    
+    }
+
+    private void merge(Hacker h1, Hacker h2) {
         Hacker keep, remove;
     
         if (h1.numIncidents() > h2.numIncidents()) {
@@ -207,78 +729,256 @@ public class CyberCrimeInvestigation {
             remove = h2;
         }
     
-        for (Incident inc : remove.getIncidents()) {
-            keep.addIncident(inc);
+        int lastRow = keep.lastRow();
+        ArrayList<Incident> copied = keep.absorb(remove);
+        locationIndex.merge(keep, remove);
+        mostWanted.update(keep);
+        WindowedMostWanted recent = window;
+        if (recent != null) {
+            if (copied == null) {
+                recent.merge(keep, remove);
+            } else {
+                // Some incidents may have been rejected as duplicates, so count only those copied
+                recent.remove(remove);
+                recent.add(keep, copied);
+            }
+        }
+        DateIndex dates = dateIndex;
+        if (dates != null) {
+            if (copied == null) {
+                dates.merge(keep, remove);
+            } else {
+                dates.remove(remove);
+                dates.add(keep, copied, lastRow);
+            }
         }
     
         keep.addAlias(remove.getName());
     
-        remove(remove.getName());
-    
-        return true;
+        detach(remove.getName());
+        aliases.union(keep.getName(), remove.getName());
     }
     
     /**
      * Gets the top n most wanted Hackers from the directory, and
      * returns them in an arraylist. 
      * 
-     * You should use the provided MaxPQ class to do this. You can
-     * add all hackers, then delMax() n times, to get the top n hackers.
+     * Read from the leaderboard that addHacker, remove and mergeHackers keep
+     * up to date, in the same order repeated MaxPQ.delMax() calls would give.
      * 
      * @param n
      * @return Arraylist containing top n hackers
      */
     public ArrayList<Hacker> getNMostWanted(int n) {
-        MaxPQ<Hacker> pq = new MaxPQ<>(); 
-        ArrayList<Hacker> mostWanted = new ArrayList<>();
+        return mostWanted.top(n);
+    }
     
-        for (int i = 0; i < hackerDirectory.length; i++) {
-            HNode current = hackerDirectory[i];
-            while (current != null) {
-                pq.insert(current.getHacker());
-                current = current.getNext();
-            }
+    /**
+     * Starts ranking hackers by their incidents in the last given number of
+     * days. The window ends at the newest incident date seen, or a later day
+     * passed to advanceWindowTo, and is kept up to date by addHacker, remove
+     * and mergeHackers.
+     * 
+     * @param days Length of the window, e.g. 7 or 30
+     */
+    public void enableWindowedRanking(int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("Window must be at least one day: " + days);
         }
-    
-        for (int i = 0; i < n && !pq.isEmpty(); i++) {
-            mostWanted.add(pq.delMax());
+        logMode(MutationLog.encodeWindow(days), () -> withAllStripes(() -> {
+            window = countWindow(days, Integer.MIN_VALUE);
+        }));
+    }
+
+    /**
+     * Counts every hacker's incidents into a new window that ends no earlier
+     * than the given day. Call it holding every stripe.
+     */
+    private WindowedMostWanted countWindow(int days, int today) {
+        WindowedMostWanted recent = new WindowedMostWanted(days);
+        recent.advanceTo(today);
+        for (Hacker hacker : hackerDirectory) {
+            recent.add(hacker, hacker.getIncidents());
         }
-    
-        return mostWanted;
+        return recent;
     }
-    
+
+    /**
+     * Slides the window forward so it ends on the given date, dropping
+     * incidents that fall out of it.
+     * 
+     * @param date An ISO date such as "2015-06-30"
+     */
+    public void advanceWindowTo(String date) {
+        advanceWindowTo(Incident.toEpochDay(date));
+    }
+
+    void advanceWindowTo(int epochDay) {
+        WindowedMostWanted recent = requireWindow();
+        logMode(MutationLog.encodeAdvanceWindow(epochDay), () -> recent.advanceTo(epochDay));
+    }
+
+    /**
+     * Gets the top n most wanted Hackers by their number of incidents in the
+     * window, ties broken by name like getNMostWanted.
+     * 
+     * @param n
+     * @return Arraylist containing top n hackers in the window
+     */
+    public ArrayList<Hacker> getNMostWantedInWindow(int n) {
+        return requireWindow().top(n);
+    }
+
+    private WindowedMostWanted requireWindow() {
+        WindowedMostWanted recent = window;
+        if (recent == null) {
+            throw new IllegalStateException("Windowed ranking is not enabled");
+        }
+        return recent;
+    }
+
     /**
      * Gets all hackers that have been involved in incidents at the given location.
      * 
-     * You should check all hackers, and ALL of each hackers incidents.
-     * You should not add a single hacker more than once.
+     * Answered from the location index, so the cost is proportional to the
+     * number of hackers returned. No hacker is returned more than once.
      * 
      * @param location
      * @return Arraylist containing all hackers who have been involved in incidents at the given location.
      */
     public ArrayList<Hacker> getHackersByLocation(String location) {
-        ArrayList<Hacker> result = new ArrayList<>();
-    
-        for (int i = 0; i < hackerDirectory.length; i++) {
-            HNode current = hackerDirectory[i];
-    
-            while (current != null) {
-                Hacker hacker = current.getHacker();
-                ArrayList<Incident> incidents = hacker.getIncidents();
-    
-                for (Incident inc : incidents) {
-                    if (inc.getLocation().equals(location)) {
-                        result.add(hacker); // Add hacker if incident matches location
-                        break; // Only add hacker once
-                    }
+        return locationIndex.get(Incident.LOCATIONS.lookup(location));
+    }
+
+    /**
+     * Estimates how many distinct IP hashes have attacked from a location,
+     * from a sketch kept up to date by addHacker. Removing hackers does not
+     * lower the count.
+     * 
+     * @param location
+     * @return The estimated number of distinct IPs, within about 1%.
+     */
+    public long getDistinctIPs(String location) {
+        return locationIndex.distinctIPs(Incident.LOCATIONS.lookup(location));
+    }
+
+    /**
+     * Estimates how many distinct URL hashes a hacker has attacked, including
+     * those of hackers merged into it.
+     * 
+     * @param name
+     * @return The estimated number of distinct URLs, or 0 if the hacker is not found.
+     */
+    public long getDistinctURLs(String name) {
+        Hacker hacker = search(name);
+        return hacker == null ? 0 : hacker.numDistinctURLs();
+    }
+
+    /**
+     * Looks for hackers that are probably the same person: joins every incident
+     * on its IP and URL hashes, in parallel, and reports the pairs of hackers
+     * sharing them and the groups they link up into. Candidates can then be
+     * confirmed with mergeHackers.
+     * 
+     * @return The finished correlation, with candidates() and components().
+     */
+    public CorrelationEngine correlate() {
+        return new CorrelationEngine(hackerDirectory).run();
+    }
+
+    /**
+     * @return The date index, built first if there is none yet.
+     */
+    private DateIndex dateIndex() {
+        DateIndex dates = dateIndex;
+        if (dates == null) {
+            // Under every stripe, so no change is missed between the scan and publishing it
+            withAllStripes(() -> {
+                if (dateIndex == null) {
+                    dateIndex = new DateIndex(hackerDirectory, incidentStore);
                 }
-    
-                current = current.getNext();
-            }
+            });
+            dates = dateIndex;
         }
-    
-        return result;
-    }    
+        return dates;
+    }
+
+    /**
+     * Gets all incidents dated between the given days, inclusive, in date order.
+     * 
+     * @param from An ISO date such as "2002-11-18"
+     * @param to An ISO date such as "2012-06-21"
+     * @return Arraylist containing the incidents in the window.
+     */
+    public ArrayList<Incident> getIncidentsBetween(String from, String to) {
+        return dateIndex().incidentsBetween(Incident.toEpochDay(from), Incident.toEpochDay(to));
+    }
+
+    /**
+     * Gets all hackers with at least one incident dated between the given days, inclusive.
+     * 
+     * @param from An ISO date such as "2002-11-18"
+     * @param to An ISO date such as "2012-06-21"
+     * @return Arraylist containing each matching hacker once.
+     */
+    public ArrayList<Hacker> getHackersBetween(String from, String to) {
+        return dateIndex().hackersBetween(Incident.toEpochDay(from), Incident.toEpochDay(to));
+    }
+
+    /**
+     * Gets the top n hackers ranked by their number of incidents dated between
+     * the given days, inclusive.
+     * 
+     * @param n
+     * @param from An ISO date such as "2002-11-18"
+     * @param to An ISO date such as "2012-06-21"
+     * @return Arraylist containing top n hackers in the window
+     */
+    public ArrayList<Hacker> getNMostWanted(int n, String from, String to) {
+        return dateIndex().mostWantedBetween(n, Incident.toEpochDay(from), Incident.toEpochDay(to));
+    }
+
+    /**
+     * Call while holding the lock of rows.
+     *
+     * @return The bitmap index, extended with any rows appended to rows, or
+     * rebuilt if rows were renumbered.
+     */
+    private IncidentBitmapIndex bitmapIndex(DateIndex rows) {
+        IncidentBitmapIndex bitmaps = bitmapIndex;
+        if (bitmaps == null || bitmaps.rows() != rows || !bitmaps.isCurrent()) {
+            bitmaps = new IncidentBitmapIndex(rows);
+            bitmapIndex = bitmaps;
+        } else {
+            bitmaps.catchUp();
+        }
+        return bitmaps;
+    }
+
+    /**
+     * Finds incidents by OS, web server, location and date, e.g.
+     * IncidentQuery.os("Linux").and(IncidentQuery.webServer("Apache")).
+     * 
+     * @param query
+     * @return Every matching incident, in date order.
+     */
+    public ArrayList<Incident> getIncidents(IncidentQuery query) {
+        DateIndex rows = dateIndex();
+        synchronized (rows) {
+            return query.incidents(bitmapIndex(rows));
+        }
+    }
+
+    /**
+     * @param query
+     * @return Each hacker with an incident matching the query, once, ordered by their first match.
+     */
+    public ArrayList<Hacker> getHackers(IncidentQuery query) {
+        DateIndex rows = dateIndex();
+        synchronized (rows) {
+            return query.hackers(bitmapIndex(rows));
+        }
+    }
 
     /**
      * PROVIDED--DO NOT MODIFY!
@@ -288,26 +988,152 @@ public class CyberCrimeInvestigation {
         System.out.println(toString());
     } 
 
+    /**
+     * Writes the whole directory to the given writer, one hacker at a time,
+     * without building it into a String first. The writer is flushed, not closed.
+     * 
+     * @param out
+     * @param format TEXT (the toString() layout), CSV or JSONL
+     */
+    public void export(Writer out, DirectoryExporter.Format format) {
+        try {
+            Writer buffered = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+            new DirectoryExporter(buffered, format).writeAll(hackerDirectory);
+            buffered.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not export the hacker directory", e);
+        }
+    }
+
+    /**
+     * Writes the whole directory to the given stream as UTF-8. The stream is flushed, not closed.
+     * 
+     * @param out
+     * @param format TEXT (the toString() layout), CSV or JSONL
+     */
+    public void export(OutputStream out, DirectoryExporter.Format format) {
+        export(new OutputStreamWriter(out, StandardCharsets.UTF_8), format);
+    }
+
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < this.hackerDirectory.length; i++) {
-            HNode headHackerNode = hackerDirectory[i];
-            while (headHackerNode != null) {
-                if (headHackerNode.getHacker() != null) {
-                    sb.append(headHackerNode.getHacker().toString()).append("\n");
-                    ArrayList<Incident> incidents = headHackerNode.getHacker().getIncidents();
-                    for (Incident incident : incidents) {
-                        sb.append("\t" +incident.toString()).append("\n");
-                    }
-                }
-                headHackerNode = headHackerNode.getNext();
-            } 
-        }
-        return sb.toString();
+        // Render hackers in parallel; joining keeps table order
+        return hackerDirectory.parallelStream().map(hacker -> {
+            StringBuilder sb = new StringBuilder();
+            sb.append(hacker.toString()).append("\n");
+            hacker.forEachIncident(incident -> sb.append("\t" +incident.toString()).append("\n"));
+            return sb;
+        }).collect(Collectors.joining());
     }
 
     public HNode[] getHackerDirectory() {
+        return hackerDirectory.toChains();
+    }
+
+    /**
+     * Pre-sizes the directory for the given number of hackers.
+     * 
+     * @param numHackers
+     */
+    public void ensureCapacity(int numHackers) {
+        hackerDirectory.ensureCapacity(numHackers);
+    }
+
+    /**
+     * @return Every hacker in the directory, in table order.
+     */
+    public Iterable<Hacker> hackers() {
         return hackerDirectory;
     }
+
+    /**
+     * @return Every hacker in the directory as a parallel stream, split by bucket range.
+     */
+    public Stream<Hacker> parallelStream() {
+        return hackerDirectory.parallelStream();
+    }
+
+    /**
+     * Gets every location any incident came from, scanning the directory in parallel.
+     * 
+     * @return The distinct locations, sorted.
+     */
+    public ArrayList<String> getLocations() {
+        BitSet codes = hackerDirectory.parallelStream().collect(BitSet::new,
+                (seen, hacker) -> hacker.forEachIncident(incident -> seen.set(incident.getLocationCode())), BitSet::or);
+        ArrayList<String> locations = new ArrayList<>(codes.cardinality());
+        for (int code = codes.nextSetBit(0); code >= 0; code = codes.nextSetBit(code + 1)) {
+            locations.add(Incident.LOCATIONS.symbol(code));
+        }
+        Collections.sort(locations);
+        return locations;
+    }
+
+    /**
+     * @return The number of hackers currently in the directory.
+     */
+    public int numHackers() {
+        return hackerDirectory.size();
+    }
+
+    boolean isDeduplicating() {
+        return deduplicate;
+    }
+
+    boolean isBloomFilterEnabled() {
+        return bloom != null;
+    }
+
+    boolean isOffHeap() {
+        return incidentStore != null;
+    }
+
+    /**
+     * @return The store holding every hacker's incidents, or null if they are on the heap.
+     */
+    IncidentStore incidentStore() {
+        return incidentStore;
+    }
+
+    /**
+     * @return The windowed ranking, or null if it is not enabled.
+     */
+    WindowedMostWanted windowedRanking() {
+        return window;
+    }
+
+    /**
+     * @return The approximate mode sketch, or null if it is not enabled.
+     */
+    MostWantedSketch approximateSketch() {
+        return approximate;
+    }
+
+    /**
+     * @return Every former hacker name that still resolves, paired with the
+     * current name it resolves to.
+     */
+    ArrayList<String[]> formerNames() {
+        ArrayList<String[]> pairs = new ArrayList<>();
+        for (String name : aliases.resolvableNames()) {
+            String current = aliases.resolve(name);
+            if (current != null && !current.equals(name)) {
+                pairs.add(new String[] {name, current});
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Makes a former name resolve to a live hacker again, e.g. when loading a snapshot.
+     * 
+     * @param current
+     * @param former
+     */
+    void restoreFormerName(String current, String former) {
+        aliases.union(current, former);
+        if (bloom != null) {
+            addToBloom(former);
+        }
+    }
 }
@@ -0,0 +1,381 @@
+package investigation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+
+/*
+ * A global index of every incident in a directory by date, kept up to date as
+ * hackers are added, removed and merged. Each incident is a row, numbered in
+ * the order it was added, recording its epoch day, the incident and the hacker
+ * owning it in three growable parallel arrays. When incidents are kept in an
+ * IncidentStore, a row records the incident's store row instead, so the index
+ * holds no Incident objects. Rows are also listed in one bucket per day, in a
+ * sorted map, so a date window is read off the buckets between two keys.
+ *
+ * Rows never move when the directory changes: a removed hacker's rows lose
+ * their owner and are skipped from then on, and a merged hacker's rows are
+ * handed to the survivor. Once dead rows outnumber live ones they are dropped
+ * and the rest renumbered, which bumps generation().
+ *
+ * All methods are synchronized, so the index may be updated under
+ * CyberCrimeInvestigation's per-name locks while it is being queried.
+ */
+public class DateIndex {
+
+    // A growable list of row numbers
+    private static final class Rows {
+        int[] rows = new int[4];
+        int size = 0;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+
+    private final IncidentStore store;
+    private int[] days = new int[16];
+    private Incident[] incidents;       // Without a store
+    private int[] storeRows;            // With a store
+    private Hacker[] owners = new Hacker[16];   // null once the row is dead
+    private int numRows = 0;
+    private int numLive = 0;
+    private int generation = 0;
+
+    private final TreeMap<Integer, Rows> byDay = new TreeMap<>();
+    private final IdentityHashMap<Hacker, Rows> byOwner = new IdentityHashMap<>();
+
+    /**
+     * Indexes every incident of the given hackers, in one pass.
+     *
+     * @param hackers
+     */
+    public DateIndex(Iterable<Hacker> hackers) {
+        this(hackers, null);
+    }
+
+    /**
+     * Indexes every incident of the given hackers, in one pass.
+     *
+     * @param hackers
+     * @param store The store every hacker's incidents are in, or null if they are on the heap
+     */
+    public DateIndex(Iterable<Hacker> hackers, IncidentStore store) {
+        this.store = store;
+        if (store == null) {
+            incidents = new Incident[days.length];
+            for (Hacker hacker : hackers) {
+                hacker.forEachIncident(incident -> append(hacker, incident));
+            }
+        } else {
+            storeRows = new int[days.length];
+            for (Hacker hacker : hackers) {
+                hacker.forEachRow(row -> appendRow(hacker, row));
+            }
+        }
+    }
+
+    private void append(Hacker hacker, Incident incident) {
+        int row = newRow(hacker, incident.getEpochDay());
+        incidents[row] = incident;
+    }
+
+    private void appendRow(Hacker hacker, int storeRow) {
+        int row = newRow(hacker, store.epochDay(storeRow));
+        storeRows[row] = storeRow;
+    }
+
+    private int newRow(Hacker hacker, int day) {
+        if (numRows == days.length) {
+            int capacity = numRows * 2;
+            days = Arrays.copyOf(days, capacity);
+            owners = Arrays.copyOf(owners, capacity);
+            if (store == null) {
+                incidents = Arrays.copyOf(incidents, capacity);
+            } else {
+                storeRows = Arrays.copyOf(storeRows, capacity);
+            }
+        }
+        int row = numRows++;
+        days[row] = day;
+        owners[row] = hacker;
+        byDay.computeIfAbsent(day, d -> new Rows()).add(row);
+        byOwner.computeIfAbsent(hacker, owner -> new Rows()).add(row);
+        numLive++;
+        return row;
+    }
+
+    /**
+     * Indexes incidents just added to a hacker. With a store, they are read
+     * from the hacker's rows after the given one instead.
+     *
+     * @param hacker The hacker as stored in the directory
+     * @param added
+     * @param afterRow The hacker's last store row before they were added, or IncidentStore.NONE
+     */
+    public synchronized void add(Hacker hacker, Iterable<Incident> added, int afterRow) {
+        if (store == null) {
+            for (Incident incident : added) {
+                append(hacker, incident);
+            }
+        } else if (afterRow == IncidentStore.NONE) {
+            hacker.forEachRow(row -> appendRow(hacker, row));
+        } else {
+            for (int row = store.next(afterRow); row != IncidentStore.NONE; row = store.next(row)) {
+                appendRow(hacker, row);
+            }
+        }
+    }
+
+    /**
+     * Drops the rows of a hacker leaving the directory.
+     *
+     * @param hacker
+     */
+    public synchronized void remove(Hacker hacker) {
+        Rows rows = byOwner.remove(hacker);
+        if (rows == null) {
+            return;
+        }
+        for (int i = 0; i < rows.size; i++) {
+            owners[rows.rows[i]] = null;
+        }
+        numLive -= rows.size;
+        if (numRows - numLive > numLive) {
+            compact();
+        }
+    }
+
+    /**
+     * Hands every row of a merged hacker to the hacker it was merged into.
+     *
+     * @param keep The surviving hacker
+     * @param merged The hacker merged into it
+     */
+    public synchronized void merge(Hacker keep, Hacker merged) {
+        Rows from = byOwner.remove(merged);
+        if (from == null) {
+            return;
+        }
+        Rows to = byOwner.computeIfAbsent(keep, owner -> new Rows());
+        for (int i = 0; i < from.size; i++) {
+            owners[from.rows[i]] = keep;
+            to.add(from.rows[i]);
+        }
+    }
+
+    // Drops dead rows and renumbers the rest, keeping their order
+    private void compact() {
+        int[] renumbered = new int[numRows];
+        int live = 0;
+        for (int row = 0; row < numRows; row++) {
+            if (owners[row] != null) {
+                days[live] = days[row];
+                if (store == null) {
+                    incidents[live] = incidents[row];
+                } else {
+                    storeRows[live] = storeRows[row];
+                }
+                owners[live] = owners[row];
+                renumbered[row] = live++;
+            }
+        }
+        if (store == null) {
+            Arrays.fill(incidents, live, numRows, null);
+        }
+        Arrays.fill(owners, live, numRows, null);
+        numRows = live;
+        for (Rows rows : byOwner.values()) {
+            for (int i = 0; i < rows.size; i++) {
+                rows.rows[i] = renumbered[rows.rows[i]];
+            }
+            Arrays.sort(rows.rows, 0, rows.size);
+        }
+        byDay.clear();
+        for (int row = 0; row < numRows; row++) {
+            byDay.computeIfAbsent(days[row], day -> new Rows()).add(row);
+        }
+        generation++;
+    }
+
+    /**
+     * @param from First epoch day, inclusive
+     * @param to Last epoch day, inclusive
+     * @return Every incident in the window, in date order.
+     */
+    public synchronized ArrayList<Incident> incidentsBetween(int from, int to) {
+        ArrayList<Incident> result = new ArrayList<>();
+        if (from > to) {
+            return result;
+        }
+        for (Rows rows : byDay.subMap(from, true, to, true).values()) {
+            for (int i = 0; i < rows.size; i++) {
+                int row = rows.rows[i];
+                if (owners[row] != null) {
+                    result.add(incident(row));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param from First epoch day, inclusive
+     * @param to Last epoch day, inclusive
+     * @return Each hacker with an incident in the window, once, ordered by their first incident in it.
+     */
+    public synchronized ArrayList<Hacker> hackersBetween(int from, int to) {
+        ArrayList<Hacker> result = new ArrayList<>();
+        if (from > to) {
+            return result;
+        }
+        IdentityHashMap<Hacker, Boolean> seen = new IdentityHashMap<>();
+        for (Rows rows : byDay.subMap(from, true, to, true).values()) {
+            for (int i = 0; i < rows.size; i++) {
+                Hacker owner = owners[rows.rows[i]];
+                if (owner != null && seen.put(owner, Boolean.TRUE) == null) {
+                    result.add(owner);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ranks hackers by their number of incidents in the window, breaking
+     * ties by name like Hacker.compareTo. Every row in the window is counted,
+     * so this costs O(R + H log n) for R rows and H distinct hackers in the
+     * window, plus O(log D) to find its D days; WindowedMostWanted answers
+     * for a fixed trailing window without the scan.
+     *
+     * @param n
+     * @param from First epoch day, inclusive
+     * @param to Last epoch day, inclusive
+     * @return The top n hackers in the window, most incidents first.
+     */
+    public synchronized ArrayList<Hacker> mostWantedBetween(int n, int from, int to) {
+        IdentityHashMap<Hacker, Integer> counts = new IdentityHashMap<>();
+        if (from <= to) {
+            for (Rows rows : byDay.subMap(from, true, to, true).values()) {
+                for (int i = 0; i < rows.size; i++) {
+                    Hacker owner = owners[rows.rows[i]];
+                    if (owner != null) {
+                        counts.merge(owner, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        ArrayList<Hacker> mostWanted = new ArrayList<>();
+        if (n <= 0) {
+            return mostWanted;
+        }
+
+        // Least wanted on top, so the heap keeps only the top n seen so far
+        MaxPQ<Hacker> top = new MaxPQ<>(Math.min(n, counts.size()) + 2, (a, b) -> {
+            int res = counts.get(b) - counts.get(a);
+            return res != 0 ? res : b.getName().compareTo(a.getName());
+        });
+        for (Hacker hacker : counts.keySet()) {
+            top.insert(hacker);
+            if (top.size() > n) {
+                top.delMax();
+            }
+        }
+        while (!top.isEmpty()) {
+            mostWanted.add(top.delMax());
+        }
+        Collections.reverse(mostWanted);
+        return mostWanted;
+    }
+
+    /**
+     * @param from First epoch day, inclusive
+     * @param to Last epoch day, inclusive
+     * @return A new bitmap of the rows in the window, dead or alive.
+     */
+    synchronized BitSet rowsBetween(int from, int to) {
+        BitSet result = new BitSet(numRows);
+        if (from > to) {
+            return result;
+        }
+        for (Rows rows : byDay.subMap(from, true, to, true).values()) {
+            for (int i = 0; i < rows.size; i++) {
+                result.set(rows.rows[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param rows Row numbers
+     * @return The live rows among them, in date order.
+     */
+    synchronized int[] inDateOrder(BitSet rows) {
+        long[] keys = new long[rows.cardinality()];
+        int n = 0;
+        for (int row = rows.nextSetBit(0); row >= 0 && row < numRows; row = rows.nextSetBit(row + 1)) {
+            if (owners[row] != null) {
+                keys[n++] = ((long) days[row] << 32) | row;
+            }
+        }
+        Arrays.sort(keys, 0, n);
+        int[] ordered = new int[n];
+        for (int i = 0; i < n; i++) {
+            ordered[i] = (int) keys[i];
+        }
+        return ordered;
+    }
+
+    /**
+     * @return The incident in the given row, decoded from the store if there is one.
+     */
+    synchronized Incident incident(int row) {
+        return store == null ? incidents[row] : store.incident(storeRows[row]);
+    }
+
+    synchronized int osCode(int row) {
+        return store == null ? incidents[row].getOSCode() : store.osCode(storeRows[row]);
+    }
+
+    synchronized int webServerCode(int row) {
+        return store == null ? incidents[row].getWebServerCode() : store.webServerCode(storeRows[row]);
+    }
+
+    synchronized int locationCode(int row) {
+        return store == null ? incidents[row].getLocationCode() : store.locationCode(storeRows[row]);
+    }
+
+    /**
+     * @return The hacker owning the given row, or null if the row is dead.
+     */
+    synchronized Hacker owner(int row) {
+        return owners[row];
+    }
+
+    /**
+     * @return The number of rows, dead or alive; rows are numbered from 0.
+     */
+    synchronized int numRows() {
+        return numRows;
+    }
+
+    /**
+     * @return How many times rows have been renumbered.
+     */
+    synchronized int generation() {
+        return generation;
+    }
+
+    /**
+     * @return The number of indexed incidents.
+     */
+    public synchronized int size() {
+        return numLive;
+    }
+}
@@ -0,0 +1,191 @@
+package investigation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/*
+ * Writes hackers and their incidents straight to a Writer, one hacker at a
+ * time, so exporting a directory takes the same memory however large it is.
+ * Wrap the target in a BufferedWriter (CyberCrimeInvestigation.export does);
+ * the exporter itself writes many small pieces.
+ *
+ *   TEXT   the toString() layout: a hacker line, then a tab-indented line per incident
+ *   CSV    a header, then one row per incident with its hacker's name and aliases.
+ *          Aliases share one column, separated by ';', with any '\' or ';' in
+ *          an alias escaped as "\\" or "\;"
+ *   JSONL  one JSON object per hacker, with its incidents as an array
+ */
+public class DirectoryExporter {
+
+    public enum Format { TEXT, CSV, JSONL }
+
+    private static final String CSV_HEADER = "name,aliases,os,web_server,date,location,ip_hash,url_hash";
+
+    private final Writer out;
+    private final Format format;
+    private boolean started = false;
+
+    /**
+     * @param out
+     * @param format
+     */
+    public DirectoryExporter(Writer out, Format format) {
+        this.out = out;
+        this.format = format;
+    }
+
+    /**
+     * Writes every hacker in order.
+     * 
+     * @param hackers
+     * @throws IOException If writing fails
+     */
+    public void writeAll(Iterable<Hacker> hackers) throws IOException {
+        for (Hacker hacker : hackers) {
+            write(hacker);
+        }
+    }
+
+    /**
+     * Writes one hacker and all of its incidents.
+     * 
+     * @param hacker
+     * @throws IOException If writing fails
+     */
+    public void write(Hacker hacker) throws IOException {
+        if (!started && format == Format.CSV) {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        }
+        started = true;
+        switch (format) {
+            case TEXT: writeText(hacker); break;
+            case CSV: writeCsv(hacker); break;
+            default: writeJson(hacker); break;
+        }
+    }
+
+    private void writeText(Hacker hacker) throws IOException {
+        out.write(hacker.toString());
+        out.write('\n');
+        for (Incident incident : hacker.getIncidents()) {
+            out.write("\t" + incident.toString());
+            out.write('\n');
+        }
+    }
+
+    private void writeCsv(Hacker hacker) throws IOException {
+        StringBuilder aliases = new StringBuilder();
+        for (String alias : hacker.getAliases()) {
+            if (aliases.length() > 0) {
+                aliases.append(';');
+            }
+            for (int i = 0; i < alias.length(); i++) {
+                char c = alias.charAt(i);
+                if (c == '\\' || c == ';') {
+                    aliases.append('\\');
+                }
+                aliases.append(c);
+            }
+        }
+        for (Incident incident : hacker.getIncidents()) {
+            writeCsvField(hacker.getName());
+            out.write(',');
+            writeCsvField(aliases);
+            out.write(',');
+            writeCsvField(incident.getOS());
+            out.write(',');
+            writeCsvField(incident.getWebServer());
+            out.write(',');
+            out.write(incident.getDate());
+            out.write(',');
+            writeCsvField(incident.getLocation());
+            out.write(',');
+            out.write(incident.getIPHash());
+            out.write(',');
+            out.write(incident.getURLHash());
+            out.write('\n');
+        }
+    }
+
+    // Quotes a field only if it holds a comma, quote or line break (RFC 4180)
+    private void writeCsvField(CharSequence value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private void writeJson(Hacker hacker) throws IOException {
+        out.write("{\"name\":");
+        writeJsonString(hacker.getName());
+        out.write(",\"aliases\":[");
+        ArrayList<String> aliases = hacker.getAliases();
+        for (int i = 0; i < aliases.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            writeJsonString(aliases.get(i));
+        }
+        out.write("],\"numIncidents\":");
+        out.write(Integer.toString(hacker.numIncidents()));
+        out.write(",\"incidents\":[");
+        boolean first = true;
+        for (Incident incident : hacker.getIncidents()) {
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            out.write("{\"os\":");
+            writeJsonString(incident.getOS());
+            out.write(",\"webServer\":");
+            writeJsonString(incident.getWebServer());
+            out.write(",\"date\":\"");
+            out.write(incident.getDate());
+            out.write("\",\"location\":");
+            writeJsonString(incident.getLocation());
+            out.write(",\"ipHash\":\"");
+            out.write(incident.getIPHash());
+            out.write("\",\"urlHash\":\"");
+            out.write(incident.getURLHash());
+            out.write("\"}");
+        }
+        out.write("]}\n");
+    }
+
+    private void writeJsonString(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.write("\\\""); break;
+                case '\\': out.write("\\\\"); break;
+                case '\n': out.write("\\n"); break;
+                case '\r': out.write("\\r"); break;
+                case '\t': out.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,385 @@
+package investigation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * A compact binary snapshot of a hacker directory, so a restart can skip
+ * re-parsing the text input. The file is a header followed by columns:
+ *
+ *   magic, version, mutation log sequence number (0 unless written as a checkpoint)
+ *   modes: flags (de-duplication, Bloom filter, off-heap incidents), window
+ *          length and end day (0 days if off), approximate mode k, epsilon
+ *          and delta (k = 0 if off)
+ *   one dictionary per string Incident field: count, then each distinct value
+ *   number of hackers
+ *   names, alias lists, incident counts     (one entry per hacker)
+ *   former names: count, then each merged-away name and the name it resolves to
+ *   one code column per string field        (one int per incident, in hacker order)
+ *   date column                             (one epoch day int per incident)
+ *   ip hash and url hash columns            (two longs per incident, in hacker order)
+ *
+ * Every string is an int byte length followed by UTF-8 bytes. String incident
+ * fields are stored as codes into their dictionary, so repeated values are
+ * written once; the hex hashes are stored as their packed 128-bit values.
+ * Loading reads the file front to back and sizes the directory for the final
+ * hacker count before inserting anything.
+ */
+public class DirectorySnapshot {
+
+    private static final int MAGIC = 0x43434953; // "CCIS"
+    private static final int VERSION = 5;
+
+    // Mode flags
+    private static final int DEDUPLICATE = 1;
+    private static final int BLOOM_FILTER = 2;
+    private static final int OFF_HEAP = 4;
+
+    // String incident fields, in column order
+    private static final int OS = 0;
+    private static final int WEB_SERVER = 1;
+    private static final int LOCATION = 2;
+    private static final int FIELDS = 3;
+
+    private static final SymbolTable[] SYMBOLS = {Incident.OPERATING_SYSTEMS, Incident.WEB_SERVERS, Incident.LOCATIONS};
+
+    /**
+     * The incident columns of a snapshot being written, filled in one pass over
+     * the hackers. String fields are re-coded into dictionaries holding only
+     * the values used, in order of first use.
+     */
+    private static final class Columns {
+        final ArrayList<ArrayList<String>> dictionaries = new ArrayList<>();
+        private final int[][] dictionaryCodes = new int[FIELDS][];  // symbol code -> dictionary code + 1, or 0
+
+        int size = 0;
+        int[][] codes = new int[FIELDS][16];
+        int[] days = new int[16];
+        long[] ipHashes = new long[32];
+        long[] urlHashes = new long[32];
+
+        int[] counts = new int[16];
+        private int numCounts = 0;
+
+        Columns() {
+            for (int field = 0; field < FIELDS; field++) {
+                dictionaries.add(new ArrayList<>());
+                dictionaryCodes[field] = new int[16];
+            }
+        }
+
+        void add(Incident incident) {
+            add(incident.getOSCode(), incident.getWebServerCode(), incident.getLocationCode(), incident.getEpochDay(),
+                    incident.getIPHashHigh(), incident.getIPHashLow(), incident.getURLHashHigh(), incident.getURLHashLow());
+        }
+
+        void add(IncidentStore store, int row) {
+            add(store.osCode(row), store.webServerCode(row), store.locationCode(row), store.epochDay(row),
+                    store.ipHashHigh(row), store.ipHashLow(row), store.urlHashHigh(row), store.urlHashLow(row));
+        }
+
+        private void add(int os, int webServer, int location, int day, long ipHigh, long ipLow, long urlHigh, long urlLow) {
+            if (size == days.length) {
+                int capacity = size * 2;
+                for (int field = 0; field < FIELDS; field++) {
+                    codes[field] = Arrays.copyOf(codes[field], capacity);
+                }
+                days = Arrays.copyOf(days, capacity);
+                ipHashes = Arrays.copyOf(ipHashes, 2 * capacity);
+                urlHashes = Arrays.copyOf(urlHashes, 2 * capacity);
+            }
+            codes[OS][size] = code(OS, os);
+            codes[WEB_SERVER][size] = code(WEB_SERVER, webServer);
+            codes[LOCATION][size] = code(LOCATION, location);
+            days[size] = day;
+            ipHashes[2 * size] = ipHigh;
+            ipHashes[2 * size + 1] = ipLow;
+            urlHashes[2 * size] = urlHigh;
+            urlHashes[2 * size + 1] = urlLow;
+            size++;
+        }
+
+        private int code(int field, int symbol) {
+            int[] byCode = dictionaryCodes[field];
+            if (symbol >= byCode.length) {
+                byCode = Arrays.copyOf(byCode, Math.max(symbol + 1, byCode.length * 2));
+                dictionaryCodes[field] = byCode;
+            }
+            if (byCode[symbol] == 0) {
+                ArrayList<String> values = dictionaries.get(field);
+                values.add(SYMBOLS[field].symbol(symbol));
+                byCode[symbol] = values.size();
+            }
+            return byCode[symbol] - 1;
+        }
+
+        void addCount(int count) {
+            if (numCounts == counts.length) {
+                counts = Arrays.copyOf(counts, numCounts * 2);
+            }
+            counts[numCounts++] = count;
+        }
+    }
+
+    /**
+     * Writes every hacker in the investigation to the given file.
+     * 
+     * @param investigation
+     * @param outputFile
+     */
+    public static void save(CyberCrimeInvestigation investigation, String outputFile) {
+        save(investigation, outputFile, 0, false);
+    }
+
+    /**
+     * Writes a snapshot recording the last mutation log sequence number it holds.
+     * 
+     * @param investigation
+     * @param outputFile
+     * @param logSequence
+     * @param force Whether to wait until the file is on disk before returning
+     */
+    static void save(CyberCrimeInvestigation investigation, String outputFile, long logSequence, boolean force) {
+        // Read every incident once, straight from the store when off the heap
+        ArrayList<Hacker> hackers = new ArrayList<>(investigation.numHackers());
+        IncidentStore store = investigation.incidentStore();
+        Columns columns = new Columns();
+        for (Hacker hacker : investigation.hackers()) {
+            hackers.add(hacker);
+            int first = columns.size;
+            if (store == null || !hacker.forEachRow(row -> columns.add(store, row))) {
+                hacker.forEachIncident(columns::add);
+            }
+            columns.addCount(columns.size - first);
+        }
+
+        try (FileOutputStream file = new FileOutputStream(outputFile);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(logSequence);
+            writeModes(out, investigation);
+            for (ArrayList<String> values : columns.dictionaries) {
+                out.writeInt(values.size());
+                for (String value : values) {
+                    writeString(out, value);
+                }
+            }
+
+            out.writeInt(hackers.size());
+            for (Hacker hacker : hackers) {
+                writeString(out, hacker.getName());
+            }
+            for (Hacker hacker : hackers) {
+                out.writeInt(hacker.getAliases().size());
+                for (String alias : hacker.getAliases()) {
+                    writeString(out, alias);
+                }
+            }
+            for (int h = 0; h < hackers.size(); h++) {
+                out.writeInt(columns.counts[h]);
+            }
+            ArrayList<String[]> formerNames = investigation.formerNames();
+            out.writeInt(formerNames.size());
+            for (String[] pair : formerNames) {
+                writeString(out, pair[0]);
+                writeString(out, pair[1]);
+            }
+            for (int[] column : columns.codes) {
+                for (int i = 0; i < columns.size; i++) {
+                    out.writeInt(column[i]);
+                }
+            }
+            for (int i = 0; i < columns.size; i++) {
+                out.writeInt(columns.days[i]);
+            }
+            for (int i = 0; i < 2 * columns.size; i++) {
+                out.writeLong(columns.ipHashes[i]);
+            }
+            for (int i = 0; i < 2 * columns.size; i++) {
+                out.writeLong(columns.urlHashes[i]);
+            }
+            out.flush();
+            if (force) {
+                file.getFD().sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + outputFile, e);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by save() and adds its hackers to the investigation.
+     * 
+     * @param inputFile
+     * @param investigation
+     * @return The number of hackers read.
+     */
+    public static int load(String inputFile, CyberCrimeInvestigation investigation) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(inputFile), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException(inputFile + " is not a hacker directory snapshot");
+            }
+            int version = in.readInt();
+            readLogSequence(version, in);
+            int flags = in.readInt();
+            int windowDays = in.readInt();
+            int windowEnd = in.readInt();
+            int approximateK = in.readInt();
+            double epsilon = in.readDouble();
+            double delta = in.readDouble();
+
+            String[][] dictionaries = new String[FIELDS][];
+            for (int field = 0; field < FIELDS; field++) {
+                dictionaries[field] = new String[in.readInt()];
+                for (int i = 0; i < dictionaries[field].length; i++) {
+                    dictionaries[field][i] = readString(in);
+                }
+            }
+
+            Hacker[] hackers = new Hacker[in.readInt()];
+            for (int h = 0; h < hackers.length; h++) {
+                hackers[h] = new Hacker(readString(in));
+            }
+            for (Hacker hacker : hackers) {
+                for (int a = in.readInt(); a > 0; a--) {
+                    hacker.addAlias(readString(in));
+                }
+            }
+            int[] incidentCounts = new int[hackers.length];
+            int numIncidents = 0;
+            for (int h = 0; h < hackers.length; h++) {
+                incidentCounts[h] = in.readInt();
+                numIncidents += incidentCounts[h];
+            }
+            String[][] formerNames = new String[in.readInt()][];
+            for (int f = 0; f < formerNames.length; f++) {
+                formerNames[f] = new String[] {readString(in), readString(in)};
+            }
+            int[][] codes = new int[FIELDS][numIncidents];
+            for (int[] column : codes) {
+                for (int i = 0; i < numIncidents; i++) {
+                    column[i] = in.readInt();
+                }
+            }
+            int[] dates = new int[numIncidents];
+            for (int i = 0; i < numIncidents; i++) {
+                dates[i] = in.readInt();
+            }
+            long[] ipHashes = new long[numIncidents * 2];
+            for (int i = 0; i < ipHashes.length; i++) {
+                ipHashes[i] = in.readLong();
+            }
+            long[] urlHashes = new long[numIncidents * 2];
+            for (int i = 0; i < urlHashes.length; i++) {
+                urlHashes[i] = in.readLong();
+            }
+
+            int i = 0;
+            for (int h = 0; h < hackers.length; h++) {
+                for (int n = 0; n < incidentCounts[h]; n++, i++) {
+                    hackers[h].addIncident(new Incident(dictionaries[OS][codes[OS][i]],
+                            dictionaries[WEB_SERVER][codes[WEB_SERVER][i]], dates[i],
+                            dictionaries[LOCATION][codes[LOCATION][i]], ipHashes[2 * i], ipHashes[2 * i + 1],
+                            urlHashes[2 * i], urlHashes[2 * i + 1]));
+                }
+            }
+
+            // Modes that change how hackers are added go first, the rankings built from them last
+            if ((flags & DEDUPLICATE) != 0) {
+                investigation.enableDeduplication();
+            }
+            if ((flags & OFF_HEAP) != 0) {
+                investigation.enableOffHeapIncidents();
+            }
+            if ((flags & BLOOM_FILTER) != 0) {
+                investigation.enableBloomFilter();
+            }
+            investigation.ensureCapacity(investigation.numHackers() + hackers.length);
+            for (Hacker hacker : hackers) {
+                investigation.addHacker(hacker);
+            }
+            for (String[] pair : formerNames) {
+                investigation.restoreFormerName(pair[1], pair[0]);
+            }
+            if (windowDays > 0) {
+                investigation.enableWindowedRanking(windowDays);
+                if (windowEnd != Integer.MIN_VALUE) {
+                    investigation.advanceWindowTo(windowEnd);
+                }
+            }
+            if (approximateK > 0) {
+                investigation.enableApproximateMode(approximateK, epsilon, delta);
+            }
+            return hackers.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read snapshot " + inputFile, e);
+        }
+    }
+
+    /**
+     * @param inputFile
+     * @return The last mutation log sequence number held by the snapshot.
+     */
+    public static long logSequence(String inputFile) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(inputFile))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException(inputFile + " is not a hacker directory snapshot");
+            }
+            return readLogSequence(in.readInt(), in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read snapshot " + inputFile, e);
+        }
+    }
+
+    // Reads the rest of the header. Only the current version is read: older
+    // layouts never left development, so there are no files to migrate.
+    private static long readLogSequence(int version, DataInputStream in) throws IOException {
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version " + version);
+        }
+        return in.readLong();
+    }
+
+    private static void writeModes(DataOutputStream out, CyberCrimeInvestigation investigation) throws IOException {
+        int flags = 0;
+        if (investigation.isDeduplicating()) {
+            flags |= DEDUPLICATE;
+        }
+        if (investigation.isBloomFilterEnabled()) {
+            flags |= BLOOM_FILTER;
+        }
+        if (investigation.isOffHeap()) {
+            flags |= OFF_HEAP;
+        }
+        out.writeInt(flags);
+        WindowedMostWanted window = investigation.windowedRanking();
+        out.writeInt(window == null ? 0 : window.days());
+        out.writeInt(window == null ? Integer.MIN_VALUE : window.today());
+        MostWantedSketch sketch = investigation.approximateSketch();
+        out.writeInt(sketch == null ? 0 : sketch.k());
+        out.writeDouble(sketch == null ? 0 : sketch.epsilon());
+        out.writeDouble(sketch == null ? 0 : sketch.delta());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -9,7 +9,7 @@ import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 
@@ -57,6 +57,13 @@ public class Driver {
     private JComboBox<String> locationBox;
 
     public Driver() {
+        this("chained");
+    }
+
+    /**
+     * @param directoryType The hacker directory to run on: "chained", "probing", "incremental" or "concurrent"
+     */
+    public Driver(String directoryType) {
         display = new JFrame(); 
         display.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
@@ -64,7 +71,7 @@ public class Driver {
         mainPanel.setLayout(new BorderLayout()); 
  
         runStudentCode(() -> {
-            cyberCrimeInvestigation = new CyberCrimeInvestigation();
+            cyberCrimeInvestigation = new CyberCrimeInvestigation(directoryType);
         });
  
         JPanel inputPanel = createInputPanel();
@@ -96,7 +103,7 @@ public class Driver {
         }
  
         locationBox.removeAllItems(); 
-        for (String s : getLocations(cyberCrimeInvestigation.getHackerDirectory())) {
+        for (String s : cyberCrimeInvestigation.getLocations()) {
             locationBox.addItem(s);
         }
 
@@ -219,7 +226,7 @@ public class Driver {
         JPanel locationPanel = new JPanel();
         locationPanel.setLayout(new BoxLayout(locationPanel, BoxLayout.X_AXIS));
         locationBox = new JComboBox<>();
-        for (String s : getLocations(cyberCrimeInvestigation.getHackerDirectory())) {
+        for (String s : cyberCrimeInvestigation.getLocations()) {
             locationBox.addItem(s);
         }
 
@@ -293,24 +300,6 @@ public class Driver {
         return false;
     }
 
-    private ArrayList<String> getLocations(HNode[] ht) {
-        ArrayList<String> locs = new ArrayList<>();
-        for (HNode h : ht) {
-            while (h != null) {
-                if (h.getHacker() != null) {
-                    for (Incident i : h.getHacker().getIncidents()) {
-                        if (!locs.contains(i.getLocation())) {
-                            locs.add(i.getLocation());
-                        }
-                    }
-                }
-                h = h.getNext();
-            }
-        }
-        Collections.sort(locs);
-        return locs;
-    }
-
     private JPanel createInputPanel() { 
         JPanel inputPanel = new JPanel();
         inputPanel.setBackground(Color.BLACK);
@@ -400,7 +389,8 @@ public class Driver {
     }
 
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new Driver());
+        String directoryType = args.length > 0 ? args[0] : "chained";
+        SwingUtilities.invokeLater(() -> new Driver(directoryType));
     }
 
 
@@ -559,7 +549,7 @@ public class Driver {
             "Incidents: " + hacker.numIncidents());
 
 
-            ArrayList<Incident> incidents = hacker.getIncidents();
+            List<Incident> incidents = hacker.getIncidents();
             incidentArea.setText("");
             for (Incident inc : incidents) {
                 incidentArea.append("- Date: " + inc.getDate() + "\n" +
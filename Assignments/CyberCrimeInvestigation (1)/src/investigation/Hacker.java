@@ -1,49 +1,393 @@
 package investigation;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
+/*
+ * Every method that reads or changes the incidents holds the hacker's lock, so
+ * a hacker can be shared between threads.
+ */
 public class Hacker implements Comparable<Hacker>{
 
     private String name;
     private final ArrayList<String> aliases = new ArrayList<>(); 
     private ArrayList<Incident> incidents;  
+
+    // Incident lists spliced in by absorb(), in order after incidents. They are
+    // walked in place, never copied back into incidents.
+    private final ArrayList<ArrayList<Incident>> spliced = new ArrayList<>();
+    private int splicedCount = 0;
+    private boolean tailOwned = false;
+
+    // Every incident held, when duplicate incidents are being rejected: as a
+    // HashSet on the heap, or as rows once off it. Both null otherwise.
+    private HashSet<Incident> seen = null;
+    private IncidentStore.RowSet seenRows = null;
+
+    // Once moved off the heap, incidents are a chain of rows in store instead
+    private IncidentStore store = null;
+    private int firstRow = IncidentStore.NONE;
+    private int lastRow = IncidentStore.NONE;
+    private int numRows = 0;
+
+    // Distinct URL hashes among the incidents, sketched. Built by the first
+    // numDistinctURLs() and kept up to date after that; null until then.
+    static final int URL_SKETCH_PRECISION = 10;
+    private HyperLogLog urls = null;
  
     public Hacker(String name){
         this.name = name; 
         incidents = new ArrayList<>();
     }
 
+    /**
+     * Moves all of other's incidents after this hacker's, without copying them,
+     * leaving other with none. Costs O(number of lists other holds), not
+     * O(number of incidents). Locks this hacker and then other, so callers must
+     * not absorb two hackers into each other at the same time.
+     * 
+     * When duplicates are rejected, or incidents move between stores, each one
+     * is copied instead, and only those actually added are returned.
+     * 
+     * @param other A hacker being merged into this one
+     * @return The incidents copied from other, or null if all of them were moved.
+     */
+    public synchronized ArrayList<Incident> absorb(Hacker other) {
+        synchronized (other) {
+            return absorbLocked(other);
+        }
+    }
+
+    private ArrayList<Incident> absorbLocked(Hacker other) {
+        if (urls != null && other.urls != null) {
+            urls.merge(other.urls);
+        } else {
+            urls = null; // Sketched again if asked for
+        }
+        other.urls = null;
+        if (!deduplicating() && store != null && other.store == store) {
+            // Both are row chains in the same store: link them
+            if (other.firstRow != IncidentStore.NONE) {
+                if (firstRow == IncidentStore.NONE) {
+                    firstRow = other.firstRow;
+                } else {
+                    store.setNext(lastRow, other.firstRow);
+                }
+                lastRow = other.lastRow;
+                numRows += other.numRows;
+            }
+            other.firstRow = IncidentStore.NONE;
+            other.lastRow = IncidentStore.NONE;
+            other.numRows = 0;
+            return null;
+        }
+        if (deduplicating() || store != null || other.store != null) {
+            // Each incident has to be checked or copied, so there is nothing to gain from splicing
+            ArrayList<Incident> added = new ArrayList<>(other.numIncidents());
+            other.forEachIncident(incident -> {
+                if (addIncident(incident)) {
+                    added.add(incident);
+                }
+            });
+            other.incidents = new ArrayList<>();
+            other.spliced.clear();
+            other.splicedCount = 0;
+            other.tailOwned = false;
+            other.seen = other.seen == null ? null : new HashSet<>();
+            other.seenRows = other.seenRows == null ? null : new IncidentStore.RowSet(other.store, 0);
+            other.firstRow = IncidentStore.NONE;
+            other.lastRow = IncidentStore.NONE;
+            other.numRows = 0;
+            return added;
+        }
+        if (!other.incidents.isEmpty()) {
+            spliced.add(other.incidents);
+            splicedCount += other.incidents.size();
+        }
+        for (ArrayList<Incident> list : other.spliced) {
+            spliced.add(list);
+            splicedCount += list.size();
+        }
+        tailOwned = false;
+
+        other.incidents = new ArrayList<>();
+        other.spliced.clear();
+        other.splicedCount = 0;
+        other.tailOwned = false;
+        return null;
+    }
+
+    /**
+     * Starts rejecting duplicate incidents (by Incident.equals), and drops any
+     * duplicates already held, keeping the first of each.
+     */
+    public synchronized void enableDeduplication() {
+        if (deduplicating()) {
+            return;
+        }
+        if (store != null) {
+            // Unlink duplicate rows from the chain
+            seenRows = new IncidentStore.RowSet(store, numRows);
+            int previous = IncidentStore.NONE;
+            int kept = 0;
+            for (int row = firstRow; row != IncidentStore.NONE; row = store.next(row)) {
+                if (!seenRows.containsRow(row)) {
+                    seenRows.add(row);
+                    if (previous != IncidentStore.NONE) {
+                        store.setNext(previous, row);
+                    }
+                    previous = row;
+                    kept++;
+                }
+            }
+            if (previous != IncidentStore.NONE) {
+                store.setNext(previous, IncidentStore.NONE);
+            }
+            lastRow = previous;
+            numRows = kept;
+            return;
+        }
+        HashSet<Incident> held = new HashSet<>(numIncidents() * 2);
+        ArrayList<Incident> unique = new ArrayList<>(numIncidents());
+        forEachIncident(incident -> {
+            if (held.add(incident)) {
+                unique.add(incident);
+            }
+        });
+        seen = held;
+        incidents = unique;
+        spliced.clear();
+        splicedCount = 0;
+        tailOwned = false;
+    }
+
+    public synchronized boolean isDeduplicating() {
+        return deduplicating();
+    }
+
+    private boolean deduplicating() {
+        return seen != null || seenRows != null;
+    }
+
+    /**
+     * Moves this hacker's incidents into an off-heap store, where all later
+     * incidents go too. getIncidents() then decodes its copy from the store.
+     * 
+     * @param target
+     */
+    public synchronized void moveIncidentsTo(IncidentStore target) {
+        if (store != null) {
+            return;
+        }
+        store = target;
+        for (Incident incident : incidents) {
+            appendRow(incident);
+        }
+        for (ArrayList<Incident> list : spliced) {
+            for (Incident incident : list) {
+                appendRow(incident);
+            }
+        }
+        incidents = new ArrayList<>(0);
+        spliced.clear();
+        splicedCount = 0;
+        tailOwned = false;
+        if (seen != null) {
+            // The rows are already unique, so they only need listing
+            seenRows = new IncidentStore.RowSet(store, numRows);
+            for (int row = firstRow; row != IncidentStore.NONE; row = store.next(row)) {
+                seenRows.add(row);
+            }
+            seen = null;
+        }
+    }
+
+    private void appendRow(Incident incident) {
+        int row = store.append(incident);
+        if (firstRow == IncidentStore.NONE) {
+            firstRow = row;
+        } else {
+            store.setNext(lastRow, row);
+        }
+        lastRow = row;
+        numRows++;
+    }
+
+    /**
+     * Passes the store row of each incident to action, in the order they were
+     * added, when the incidents are off the heap.
+     * 
+     * @param action
+     * @return False, without calling action, if the incidents are on the heap.
+     */
+    synchronized boolean forEachRow(IntConsumer action) {
+        if (store == null) {
+            return false;
+        }
+        for (int row = firstRow; row != IncidentStore.NONE; row = store.next(row)) {
+            action.accept(row);
+        }
+        return true;
+    }
+
+    /**
+     * @return The store row of the newest incident, or IncidentStore.NONE if
+     * there is none or the incidents are on the heap. Rows added later follow
+     * it in the chain.
+     */
+    synchronized int lastRow() {
+        return lastRow;
+    }
+
+    /**
+     * @return Whether the incidents are kept in an off-heap IncidentStore.
+     */
+    public synchronized boolean isOffHeap() {
+        return store != null;
+    }
+
+    /**
+     * Passes each incident to action, in the order they were added, without
+     * copying them. The hacker stays locked until every incident is seen.
+     * 
+     * @param action
+     */
+    public synchronized void forEachIncident(Consumer<? super Incident> action) {
+        if (store != null) {
+            for (int row = firstRow; row != IncidentStore.NONE; row = store.next(row)) {
+                action.accept(store.incident(row));
+            }
+            return;
+        }
+        incidents.forEach(action);
+        for (ArrayList<Incident> list : spliced) {
+            list.forEach(action);
+        }
+    }
+
 
     @Override
     public String toString(){
-        String suspect = "{Suspect: " + name;
+        StringBuilder suspect = new StringBuilder("{Suspect: ").append(name);
         if (aliases.size() > 0) {
             if (aliases.size() == 1) { 
-                suspect += ", Alias: " + aliases.get(0);
+                suspect.append(", Alias: ").append(aliases.get(0));
             } else { 
-                suspect += ", Aliases: {}";
+                suspect.append(", Aliases: {}");
                 boolean first = true;
                 for (String s : aliases) {
                     if (!first) {
-                        suspect += ", ";
+                        suspect.append(", ");
                     }
                     first = false;
-                    suspect += s;
+                    suspect.append(s);
                 } 
             }
         } 
-        suspect += ", Num Incidents: " + this.numIncidents();
-        suspect += "}";
-        return suspect;
+        suspect.append(", Num Incidents: ").append(this.numIncidents());
+        suspect.append("}");
+        return suspect.toString();
     }
 
     public String getName(){return name;}
     public void addAlias(String alias) {aliases.add(alias);}
     public ArrayList<String> getAliases() {return aliases;}  
     public void setName(String name){this.name = name;} 
-    public ArrayList<Incident> getIncidents(){return this.incidents;}
-    public void addIncident(Incident toAdd){incidents.add(toAdd);} 
-    public int numIncidents(){return incidents.size();} 
+
+    /**
+     * @return A read-only copy of the incidents, in the order they were added.
+     * Trying to change it throws UnsupportedOperationException; use addIncident
+     * to change the hacker, and forEachIncident to read them without a copy.
+     */
+    public synchronized List<Incident> getIncidents(){
+        ArrayList<Incident> copy = new ArrayList<>(numIncidents());
+        forEachIncident(copy::add);
+        return Collections.unmodifiableList(copy);
+    }
+    public synchronized int numIncidents(){return store != null ? numRows : incidents.size() + splicedCount;} 
+
+    /**
+     * @return The estimated number of distinct URL hashes among this hacker's
+     * incidents: exact for small counts, within a few percent otherwise.
+     */
+    public synchronized long numDistinctURLs() {
+        if (urls == null) {
+            HyperLogLog sketch = new HyperLogLog(URL_SKETCH_PRECISION);
+            if (!forEachRow(row -> sketch.add(store.urlHashHigh(row), store.urlHashLow(row)))) {
+                forEachIncident(incident -> sketch.add(incident.getURLHashHigh(), incident.getURLHashLow()));
+            }
+            urls = sketch;
+        }
+        return urls.estimate();
+    }
+
+    /**
+     * @return False if the incident was rejected as a duplicate.
+     */
+    public synchronized boolean addIncident(Incident toAdd){
+        if (seen != null && !seen.add(toAdd)) {
+            return false;
+        }
+        if (seenRows != null && seenRows.contains(toAdd)) {
+            return false;
+        }
+        if (urls != null) {
+            urls.add(toAdd.getURLHashHigh(), toAdd.getURLHashLow());
+        }
+        if (store != null) {
+            appendRow(toAdd);
+            if (seenRows != null) {
+                seenRows.add(lastRow);
+            }
+            return true;
+        }
+        if (spliced.isEmpty()) {
+            incidents.add(toAdd);
+            return true;
+        }
+        // Spliced lists may be shared, so new incidents go in a list of our own
+        if (!tailOwned) {
+            spliced.add(new ArrayList<>());
+            tailOwned = true;
+        }
+        spliced.get(spliced.size() - 1).add(toAdd);
+        splicedCount++;
+        return true;
+    }
+
+    /**
+     * @return The incidents added, which leaves out rejected duplicates; toAdd
+     * itself if none could be rejected.
+     */
+    public synchronized Collection<Incident> addIncidents(Collection<Incident> toAdd){
+        if (spliced.isEmpty() && !deduplicating() && store == null) {
+            incidents.addAll(toAdd);
+            if (urls != null) {
+                for (Incident incident : toAdd) {
+                    urls.add(incident.getURLHashHigh(), incident.getURLHashLow());
+                }
+            }
+            return toAdd;
+        }
+        if (!deduplicating()) {
+            for (Incident incident : toAdd) {
+                addIncident(incident);
+            }
+            return toAdd;
+        }
+        ArrayList<Incident> added = new ArrayList<>(toAdd.size());
+        for (Incident incident : toAdd) {
+            if (addIncident(incident)) {
+                added.add(incident);
+            }
+        }
+        return added;
+    }
  
     @Override
     public int hashCode(){
@@ -0,0 +1,99 @@
+package investigation;
+
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+ * A hash table of Hacker objects keyed by hacker name. CyberCrimeInvestigation
+ * delegates all storage to one of these, so the table layout can be swapped
+ * (chained HNode buckets, open addressing, ...) without changing its methods.
+ */
+public interface HackerDirectory extends Iterable<Hacker> {
+
+    /**
+     * Adds a hacker to the directory. If a hacker with the same name already
+     * exists, the given Hacker's incidents are appended to the existing one instead.
+     *
+     * @param toAdd
+     * @return The Hacker stored in the directory after the call.
+     */
+    Hacker add(Hacker toAdd);
+
+    /**
+     * @param name
+     * @return The hacker with the given name, or null if not found.
+     */
+    Hacker search(String name);
+
+    /**
+     * @param name
+     * @return The removed hacker, or null if not found.
+     */
+    Hacker remove(String name);
+
+    /**
+     * @return The number of hackers in the directory.
+     */
+    int size();
+
+    /**
+     * @return The current number of buckets (or slots) in the table.
+     */
+    int capacity();
+
+    /**
+     * Grows the table, if needed, so that it can hold the given number of
+     * hackers without resizing again.
+     *
+     * @param numHackers
+     */
+    void ensureCapacity(int numHackers);
+
+    /**
+     * Returns the directory as an array of HNode chains, indexed the same way
+     * the original chained table was, for code that walks buckets directly.
+     */
+    HNode[] toChains();
+
+    /**
+     * Splits the directory by bucket range for parallel scans. The default
+     * walks the chains returned by toChains().
+     */
+    @Override
+    default Spliterator<Hacker> spliterator() {
+        return new BucketSpliterator(toChains(), size());
+    }
+
+    /**
+     * @return Every hacker in the directory as a parallel stream, split across the table.
+     */
+    default Stream<Hacker> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Creates an empty directory by name, e.g. from a command line option.
+     *
+     * @param type "chained", "probing", "incremental" or "concurrent"
+     * @return A new directory of that type.
+     */
+    static HackerDirectory create(String type) {
+        switch (type) {
+            case "chained": return new ChainedHackerDirectory();
+            case "probing": return new ProbingHackerDirectory();
+            case "incremental": return new IncrementalHackerDirectory();
+            case "concurrent": return new ConcurrentHackerDirectory();
+            default: throw new IllegalArgumentException("Unknown hacker directory type: " + type);
+        }
+    }
+
+    /**
+     * Bucket index used by every directory for a hacker name.
+     */
+    static int indexFor(String name, int length) {
+        int index = Math.abs(name.hashCode()) % length;
+        if (index < 0) index += length;
+        return index;
+    }
+}
@@ -0,0 +1,73 @@
+package investigation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.concurrent.SubmissionPublisher;
+
+/*
+ * Reads hacker records in the 7-line input format from a character stream,
+ * such as a pipe or socket, and publishes them one Hacker per record. The
+ * publisher's bounded buffer provides the backpressure: when subscribers fall
+ * behind, submit() blocks the reading thread.
+ */
+public class HackerFeed {
+
+    private HackerFeed() {
+    }
+
+    /**
+     * Reads one record.
+     * 
+     * @param in
+     * @return The hacker, with its single incident, or null at end of stream.
+     * @throws IOException If reading fails
+     * @throws IllegalArgumentException If the stream ends in the middle of a record
+     */
+    public static Hacker readHacker(BufferedReader in) throws IOException {
+        String name = in.readLine();
+        while (name != null && name.isEmpty()) {
+            name = in.readLine();
+        }
+        if (name == null) {
+            return null;
+        }
+        String[] fields = new String[BulkLoader.LINES_PER_RECORD - 1];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = in.readLine();
+            if (fields[i] == null) {
+                throw new IllegalArgumentException("Stream ended in the middle of the record for " + name);
+            }
+        }
+        Hacker hacker = new Hacker(name);
+        hacker.addIncident(new Incident(fields[2], fields[3], fields[4], fields[1], fields[0], fields[5]));
+        return hacker;
+    }
+
+    /**
+     * Publishes every record in the source, then closes the publisher. Runs on
+     * the calling thread until the source ends.
+     * 
+     * @param source
+     * @param publisher
+     * @return The number of records published.
+     */
+    public static long publish(Reader source, SubmissionPublisher<Hacker> publisher) {
+        long records = 0;
+        try (BufferedReader in = new BufferedReader(source, 1 << 16)) {
+            for (Hacker hacker = readHacker(in); hacker != null; hacker = readHacker(in)) {
+                publisher.submit(hacker);
+                records++;
+            }
+            publisher.close();
+        } catch (IOException e) {
+            publisher.closeExceptionally(e);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            publisher.closeExceptionally(e);
+            throw e;
+        }
+        return records;
+    }
+}
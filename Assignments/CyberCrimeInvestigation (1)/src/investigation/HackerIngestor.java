@@ -0,0 +1,203 @@
+package investigation;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Pushes hackers from any Flow.Publisher into an investigation as they arrive.
+ * The ingestor requests at most batchSize records at a time, so a fast source
+ * is held back (backpressure) instead of queueing without bound. Each batch is
+ * aggregated by hacker name and applied with one addHacker call per name
+ * before more records are requested.
+ *
+ * A batch is also applied once maxDelayMillis have passed since its first
+ * record, so a slow feed that never fills a batch still reaches the directory.
+ * Every applied record is requested again, keeping batchSize records in flight.
+ *
+ * The publisher calls onNext, onError and onComplete one at a time, as Flow
+ * requires, but the delayed flush runs on a shared timer thread, so the batch
+ * is guarded by the ingestor's lock. An ingestor subscribes to one publisher
+ * only. Progress counters may be read from any thread while ingestion runs.
+ */
+public class HackerIngestor implements Flow.Subscriber<Hacker> {
+
+    static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "hacker-ingestor-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final CyberCrimeInvestigation investigation;
+    private final int batchSize;
+    private final long maxDelayMillis;
+
+    // Guarded by this
+    private final LinkedHashMap<String, Hacker> batch = new LinkedHashMap<>();
+    private int pending = 0;
+    private ScheduledFuture<?> delayedFlush = null;
+    private boolean finished = false;
+
+    private volatile Flow.Subscription subscription;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final CompletableFuture<Long> done = new CompletableFuture<>();
+
+    /**
+     * @param investigation The investigation to add hackers to
+     * @param batchSize Records requested, and applied, at a time
+     */
+    public HackerIngestor(CyberCrimeInvestigation investigation, int batchSize) {
+        this(investigation, batchSize, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * @param investigation The investigation to add hackers to
+     * @param batchSize Records requested, and applied, at a time
+     * @param maxDelayMillis Longest a received record waits before it is applied
+     */
+    public HackerIngestor(CyberCrimeInvestigation investigation, int batchSize, long maxDelayMillis) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (maxDelayMillis < 1) {
+            throw new IllegalArgumentException("Maximum delay must be positive: " + maxDelayMillis);
+        }
+        this.investigation = investigation;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public synchronized void onNext(Hacker hacker) {
+        if (finished) {
+            return;
+        }
+        received.incrementAndGet();
+        Hacker existing = batch.putIfAbsent(hacker.getName(), hacker);
+        if (existing != null) {
+            existing.addIncidents(hacker.getIncidents());
+        }
+        if (++pending == batchSize) {
+            subscription.request(flush());
+        } else if (pending == 1) {
+            delayedFlush = TIMER.schedule(this::flushDelayed, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable error) {
+        if (!finished) {
+            flush();
+            finished = true;
+        }
+        done.completeExceptionally(error);
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        if (!finished) {
+            flush();
+            finished = true;
+        }
+        done.complete(applied.get());
+    }
+
+    private synchronized void flushDelayed() {
+        if (!finished && pending > 0) {
+            subscription.request(flush());
+        }
+    }
+
+    /**
+     * Applies the batch.
+     * 
+     * @return The number of records applied.
+     */
+    private int flush() {
+        if (delayedFlush != null) {
+            delayedFlush.cancel(false);
+            delayedFlush = null;
+        }
+        int flushed = pending;
+        if (flushed == 0) {
+            return 0;
+        }
+        for (Hacker hacker : batch.values()) {
+            investigation.addHacker(hacker);
+        }
+        applied.addAndGet(flushed);
+        batches.incrementAndGet();
+        batch.clear();
+        pending = 0;
+        return flushed;
+    }
+
+    /**
+     * Stops requesting records. Records already received but not yet applied are dropped.
+     */
+    public void cancel() {
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+        synchronized (this) {
+            finished = true;
+            if (delayedFlush != null) {
+                delayedFlush.cancel(false);
+                delayedFlush = null;
+            }
+            batch.clear();
+            pending = 0;
+        }
+        done.cancel(false);
+    }
+
+    /**
+     * @return The number of records received so far.
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return The number of records added to the investigation so far.
+     */
+    public long getApplied() {
+        return applied.get();
+    }
+
+    /**
+     * @return The number of batches applied so far.
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return Completes with the number of records applied once the feed ends,
+     * or exceptionally if the feed fails.
+     */
+    public CompletableFuture<Long> completion() {
+        return done;
+    }
+}
@@ -0,0 +1,96 @@
+package investigation;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Helpers for 128-bit hashes written as 32 hex digits (MD5 style), such as the
+ * ip and url hashes of an Incident. A hash is held as two longs: the first 16
+ * digits in high, the last 16 in low.
+ */
+public class HexHash {
+
+    public static final int DIGITS = 32;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private HexHash() {
+    }
+
+    /**
+     * @param hex 32 hex digits, either case
+     * @return The value of the first 16 digits.
+     */
+    public static long high(String hex) {
+        checkLength(hex);
+        return parse(hex, 0);
+    }
+
+    /**
+     * @param hex 32 hex digits, either case
+     * @return The value of the last 16 digits.
+     */
+    public static long low(String hex) {
+        checkLength(hex);
+        return parse(hex, 16);
+    }
+
+    private static void checkLength(String hex) {
+        if (hex == null || hex.length() != DIGITS) {
+            throw new IllegalArgumentException("Expected a " + DIGITS + " digit hex hash: " + hex);
+        }
+    }
+
+    private static long parse(String hex, int from) {
+        long value = 0;
+        for (int i = from; i < from + 16; i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a hex hash: " + hex);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses 16 hex digits stored as ASCII bytes, such as half of a hash in a
+     * mapped input file, without building a String.
+     * 
+     * @param bytes
+     * @param from Offset of the first digit
+     * @return The value of the 16 digits.
+     */
+    public static long parse(ByteBuffer bytes, int from) {
+        long value = 0;
+        for (int i = from; i < from + 16; i++) {
+            int digit = Character.digit(bytes.get(i) & 0xff, 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a hex hash at byte offset " + from);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return The 32 lowercase hex digits of the hash.
+     */
+    public static String toHex(long high, long low) {
+        char[] digits = new char[DIGITS];
+        for (int i = 15; i >= 0; i--) {
+            digits[i] = HEX[(int) (high & 0xf)];
+            digits[i + 16] = HEX[(int) (low & 0xf)];
+            high >>>= 4;
+            low >>>= 4;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * The input is already a well mixed hash, so folding it down is enough.
+     */
+    public static int hashCode(long high, long low) {
+        long folded = high ^ low;
+        return (int) (folded ^ (folded >>> 32));
+    }
+}
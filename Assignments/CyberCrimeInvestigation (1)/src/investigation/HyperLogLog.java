@@ -0,0 +1,160 @@
+package investigation;
+
+import java.util.Arrays;
+
+/*
+ * A HyperLogLog sketch estimating how many distinct 128-bit hashes (incident
+ * IP or URL hashes) have been added, in fixed memory. With precision p it
+ * keeps 2^p one-byte registers and has a standard error of about 1.04 / sqrt(2^p).
+ * Sketches of the same precision merge by taking the larger of each register,
+ * which gives the sketch of the union.
+ *
+ * A new sketch starts sparse: it keeps the exact 64-bit hashes it has seen,
+ * and so counts exactly, until there are more than SPARSE_LIMIT of them; only
+ * then are the registers allocated. Most hackers have few incidents, so their
+ * sketches never grow past a few hundred bytes.
+ *
+ * The estimate is cached until the next change, so repeated queries are O(1).
+ */
+public class HyperLogLog {
+
+    private static final int SPARSE_LIMIT = 32;
+
+    private final int precision;
+    private long[] sparse = new long[4];   // Distinct hashes while sparse, null once dense
+    private int sparseSize = 0;
+    private byte[] registers = null;
+    private long estimate = 0;
+    private boolean estimateValid = true;
+
+    /**
+     * @param precision Between 4 and 16; 2^precision registers are used once dense
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16: " + precision);
+        }
+        this.precision = precision;
+    }
+
+    // Incident hashes are already uniform, but mix both halves so any bit pattern spreads
+    private static long mix(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Adds a 128-bit hash, given as its two halves.
+     *
+     * @param high
+     * @param low
+     */
+    public void add(long high, long low) {
+        addMixed(mix(high, low));
+    }
+
+    private void addMixed(long hash) {
+        if (registers == null) {
+            for (int i = 0; i < sparseSize; i++) {
+                if (sparse[i] == hash) {
+                    return;
+                }
+            }
+            if (sparseSize < SPARSE_LIMIT) {
+                if (sparseSize == sparse.length) {
+                    sparse = Arrays.copyOf(sparse, sparse.length * 2);
+                }
+                sparse[sparseSize++] = hash;
+                estimate = sparseSize;
+                return;
+            }
+            toDense();
+        }
+        int index = (int) (hash >>> (64 - precision));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+            estimateValid = false;
+        }
+    }
+
+    private void toDense() {
+        registers = new byte[1 << precision];
+        long[] hashes = sparse;
+        int size = sparseSize;
+        sparse = null;
+        sparseSize = 0;
+        for (int i = 0; i < size; i++) {
+            addMixed(hashes[i]);
+        }
+        estimateValid = false;
+    }
+
+    /**
+     * Folds another sketch into this one, so this one estimates the union.
+     *
+     * @param other A sketch of the same precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches of precision " + precision + " and " + other.precision);
+        }
+        if (other.registers == null) {
+            for (int i = 0; i < other.sparseSize; i++) {
+                addMixed(other.sparse[i]);
+            }
+            return;
+        }
+        if (registers == null) {
+            toDense();
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        estimateValid = false;
+    }
+
+    /**
+     * @return The estimated number of distinct hashes added; exact while the sketch is sparse.
+     */
+    public long estimate() {
+        if (!estimateValid) {
+            estimate = denseEstimate();
+            estimateValid = true;
+        }
+        return estimate;
+    }
+
+    private long denseEstimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double raw = alpha * m * m / sum;
+        if (raw <= 2.5 * m && zeros > 0) {
+            // Small range correction: linear counting is more accurate here
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+        return Math.round(raw);
+    }
+
+    /**
+     * @return The standard error of the estimate once the sketch is dense.
+     */
+    public double standardError() {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+}
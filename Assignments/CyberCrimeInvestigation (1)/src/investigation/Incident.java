@@ -1,69 +1,202 @@
 package investigation;
 
+import java.time.LocalDate;
+
 public class Incident {
 
-    private String operatingSys;
-    private String webServer;
-    private String date;
-    private String urlHash; 
-    private String ipAddressHash;
-    private String geoLocation;
+    // Operating systems, web servers and locations come from small vocabularies,
+    // so incidents store codes into these shared tables instead of their own Strings
+    public static final SymbolTable OPERATING_SYSTEMS = new SymbolTable();
+    public static final SymbolTable WEB_SERVERS = new SymbolTable();
+    public static final SymbolTable LOCATIONS = new SymbolTable();
+
+    private int operatingSys;
+    private int webServer;
+    private int date; // Days since 1970-01-01
+    private int geoLocation;
+
+    // The 32 digit hex hashes, packed into two longs each (see HexHash)
+    private long urlHashHigh;
+    private long urlHashLow;
+    private long ipHashHigh;
+    private long ipHashLow;
 
     public Incident(String operatingSys, String webServer, String date, String location, String ipHash, String urlHash){
+        this.operatingSys = OPERATING_SYSTEMS.intern(operatingSys);
+        this.webServer = WEB_SERVERS.intern(webServer);
+        this.date = toEpochDay(date);
+        this.geoLocation = LOCATIONS.intern(location);
+        this.urlHashHigh = HexHash.high(urlHash);
+        this.urlHashLow = HexHash.low(urlHash);
+        this.ipHashHigh = HexHash.high(ipHash);
+        this.ipHashLow = HexHash.low(ipHash);
+    }
+
+    /**
+     * Builds an incident from an already encoded date and packed hashes.
+     */
+    Incident(String operatingSys, String webServer, int epochDay, String location,
+            long ipHashHigh, long ipHashLow, long urlHashHigh, long urlHashLow) {
+        this.operatingSys = OPERATING_SYSTEMS.intern(operatingSys);
+        this.webServer = WEB_SERVERS.intern(webServer);
+        this.date = epochDay;
+        this.geoLocation = LOCATIONS.intern(location);
+        this.urlHashHigh = urlHashHigh;
+        this.urlHashLow = urlHashLow;
+        this.ipHashHigh = ipHashHigh;
+        this.ipHashLow = ipHashLow;
+    }
+
+    /**
+     * Builds an incident from dictionary codes that are already interned.
+     */
+    Incident(int operatingSys, int webServer, int epochDay, int location,
+            long ipHashHigh, long ipHashLow, long urlHashHigh, long urlHashLow) {
         this.operatingSys = operatingSys;
         this.webServer = webServer;
-        this.date = date;
-        this.urlHash = urlHash;
+        this.date = epochDay;
         this.geoLocation = location;
-        this.ipAddressHash = ipHash;
+        this.urlHashHigh = urlHashHigh;
+        this.urlHashLow = urlHashLow;
+        this.ipHashHigh = ipHashHigh;
+        this.ipHashLow = ipHashLow;
     }
 
     public String getOS() {
-        return this.operatingSys;
+        return OPERATING_SYSTEMS.symbol(this.operatingSys);
     }
 
     public String getWebServer() {
-        return this.webServer;
+        return WEB_SERVERS.symbol(this.webServer);
     }
 
     public String getURLHash() {
-        return this.urlHash;
+        return HexHash.toHex(this.urlHashHigh, this.urlHashLow);
     }
 
     public String getDate() {
+        return LocalDate.ofEpochDay(this.date).toString();
+    }
+
+    /**
+     * @return The date of the incident as days since 1970-01-01.
+     */
+    public int getEpochDay() {
         return this.date;
     }
 
+    /**
+     * Converts an ISO date such as "2002-11-18" to days since 1970-01-01.
+     * 
+     * @param date
+     */
+    public static int toEpochDay(String date) {
+        if (date.length() == 10 && date.charAt(4) == '-' && date.charAt(7) == '-') {
+            int year = digits(date, 0, 4);
+            int month = digits(date, 5, 7);
+            int day = digits(date, 8, 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return (int) LocalDate.of(year, month, day).toEpochDay();
+            }
+        }
+        return (int) LocalDate.parse(date).toEpochDay();
+    }
+
+    /**
+     * @return The decimal value of date[from, to), or -1 if it has a non-digit.
+     */
+    private static int digits(String date, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = date.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
     public String getLocation() {
+        return LOCATIONS.symbol(this.geoLocation);
+    }
+
+    public int getOSCode() {
+        return this.operatingSys;
+    }
+
+    public int getWebServerCode() {
+        return this.webServer;
+    }
+
+    public int getLocationCode() {
         return this.geoLocation;
     }
 
     public String getIPHash() {
-        return this.ipAddressHash;
+        return HexHash.toHex(this.ipHashHigh, this.ipHashLow);
+    }
+
+    public long getIPHashHigh() {
+        return this.ipHashHigh;
+    }
+
+    public long getIPHashLow() {
+        return this.ipHashLow;
+    }
+
+    public long getURLHashHigh() {
+        return this.urlHashHigh;
+    }
+
+    public long getURLHashLow() {
+        return this.urlHashLow;
+    }
+
+    /**
+     * @return True if both incidents came from the same ip hash.
+     */
+    public boolean sameIP(Incident other) {
+        return this.ipHashHigh == other.ipHashHigh && this.ipHashLow == other.ipHashLow;
+    }
+
+    /**
+     * @return True if both incidents targeted the same url hash.
+     */
+    public boolean sameURL(Incident other) {
+        return this.urlHashHigh == other.urlHashHigh && this.urlHashLow == other.urlHashLow;
     }
 
     @Override
     public boolean equals(Object o) {
         if (o instanceof Incident i) {
-            if (this.date.equals(i.getDate())) {
-                if (this.geoLocation.equals(i.getLocation())) {
-                    if (this.ipAddressHash.equals(i.getIPHash())) {
-                        if (this.operatingSys.equals(i.getOS())) {
-                            if (this.urlHash.equals(i.getURLHash())) {
-                                if (this.webServer.equals(i.getWebServer())) {
-                                    return true;
-                                }
-                            }
-                        }
-                    }
+            // Cheap int comparisons first
+            if (this.date == i.date && this.geoLocation == i.geoLocation
+                    && this.operatingSys == i.operatingSys && this.webServer == i.webServer) {
+                if (this.sameIP(i) && this.sameURL(i)) {
+                    return true;
                 }
             }
         }
         return false;
     }
 
+    /**
+     * Consistent with equals: covers all six fields.
+     */
+    @Override
+    public int hashCode() {
+        int h = this.date;
+        h = 31 * h + this.geoLocation;
+        h = 31 * h + this.operatingSys;
+        h = 31 * h + this.webServer;
+        h = 31 * h + HexHash.hashCode(this.ipHashHigh, this.ipHashLow);
+        h = 31 * h + HexHash.hashCode(this.urlHashHigh, this.urlHashLow);
+        return h;
+    }
+
     @Override
     public String toString(){
-        return "{OS: " + this.operatingSys + ", " + "Web Server: " + this.webServer + ", "+ "URL Hash: " + this.urlHash+ ", IP Hash: " + this.ipAddressHash+ ", Location: " + this.geoLocation+"}";    
+        return "{OS: " + this.getOS() + ", " + "Web Server: " + this.getWebServer() + ", "+ "URL Hash: " + this.getURLHash()+ ", IP Hash: " + this.getIPHash()+ ", Location: " + this.getLocation()+"}";    
     }
 }
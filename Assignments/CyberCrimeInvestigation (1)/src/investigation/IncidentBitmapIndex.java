@@ -0,0 +1,177 @@
+package investigation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/*
+ * Bitmap indexes over the incidents of a DateIndex, one bitmap per operating
+ * system, web server and location code, with bit i standing for row i of the
+ * DateIndex. A date window is taken from the DateIndex's day buckets instead of
+ * a bitmap of its own, and dead rows are only dropped from the final results.
+ *
+ * Values held by at least 1/32 of the rows keep a plain BitSet. Rarer values
+ * keep a sorted array of their rows instead, which is smaller than a bitmap at
+ * that density (the array/bitmap container split of Roaring bitmaps), and are
+ * expanded into a bitmap only when a query needs them. An array is promoted to
+ * a BitSet once its value reaches that density.
+ *
+ * Rows are only ever appended to the DateIndex, so catchUp() indexes just the
+ * new ones. Only when the DateIndex renumbers its rows does
+ * CyberCrimeInvestigation build a new bitmap index.
+ */
+public class IncidentBitmapIndex {
+
+    static final int OS = 0;
+    static final int WEB_SERVER = 1;
+    static final int LOCATION = 2;
+    private static final int FIELDS = 3;
+
+    private static final int SPARSE_DENSITY = 32;
+
+    private final DateIndex rows;
+
+    // For each field, indexed by code: a BitSet if the value is common, else
+    // an int[] of rows, and how many rows hold the value
+    private final Object[][] bitmaps = new Object[FIELDS][];
+    private final int[][] counts = new int[FIELDS][];
+
+    // Rows indexed so far, and the DateIndex generation they were numbered in
+    private int size = 0;
+    private final int generation;
+
+    /**
+     * Call while holding the lock of rows.
+     * 
+     * @param rows The incidents to index
+     */
+    public IncidentBitmapIndex(DateIndex rows) {
+        this.rows = rows;
+        generation = rows.generation();
+        for (int field = 0; field < FIELDS; field++) {
+            bitmaps[field] = new Object[8];
+            counts[field] = new int[8];
+        }
+        catchUp();
+    }
+
+    /**
+     * Indexes the rows appended to the DateIndex since the last call. Call
+     * while holding the lock of the DateIndex.
+     */
+    void catchUp() {
+        int end = rows.numRows();
+        for (int row = size; row < end; row++) {
+            set(OS, rows.osCode(row), row);
+            set(WEB_SERVER, rows.webServerCode(row), row);
+            set(LOCATION, rows.locationCode(row), row);
+        }
+        size = end;
+    }
+
+    private void set(int field, int code, int row) {
+        if (code >= bitmaps[field].length) {
+            int capacity = Math.max(code + 1, bitmaps[field].length * 2);
+            bitmaps[field] = Arrays.copyOf(bitmaps[field], capacity);
+            counts[field] = Arrays.copyOf(counts[field], capacity);
+        }
+        Object bitmap = bitmaps[field][code];
+        int count = counts[field][code]++;
+        if (bitmap instanceof BitSet) {
+            ((BitSet) bitmap).set(row);
+            return;
+        }
+        int[] sparse = bitmap == null ? new int[4] : (int[]) bitmap;
+        if ((long) (count + 1) * SPARSE_DENSITY >= row + 1) {
+            // Common enough for a bitmap
+            BitSet dense = new BitSet(row + 1);
+            for (int i = 0; i < count; i++) {
+                dense.set(sparse[i]);
+            }
+            dense.set(row);
+            bitmaps[field][code] = dense;
+            return;
+        }
+        if (count == sparse.length) {
+            sparse = Arrays.copyOf(sparse, count * 2);
+        }
+        sparse[count] = row;
+        bitmaps[field][code] = sparse;
+    }
+
+    /**
+     * @param field OS, WEB_SERVER or LOCATION
+     * @param code A code from that field's SymbolTable, or -1
+     * @return A new bitmap of the rows holding the value.
+     */
+    BitSet rowsWith(int field, int code) {
+        BitSet result = new BitSet(size());
+        Object[] byCode = bitmaps[field];
+        if (code < 0 || code >= byCode.length || byCode[code] == null) {
+            return result;
+        }
+        Object bitmap = byCode[code];
+        if (bitmap instanceof BitSet) {
+            result.or((BitSet) bitmap);
+        } else {
+            int[] sparse = (int[]) bitmap;
+            for (int i = 0; i < counts[field][code]; i++) {
+                result.set(sparse[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param from First epoch day, inclusive
+     * @param to Last epoch day, inclusive
+     * @return A new bitmap of the rows in the window.
+     */
+    BitSet rowsBetween(int from, int to) {
+        BitSet result = rows.rowsBetween(from, to);
+        result.clear(size, Math.max(size, result.length()));
+        return result;
+    }
+
+    /**
+     * @param matches Rows matching a query
+     * @return The live rows among them, in date order.
+     */
+    int[] inDateOrder(BitSet matches) {
+        return rows.inDateOrder(matches);
+    }
+
+    /**
+     * @return The DateIndex this indexes.
+     */
+    DateIndex rows() {
+        return rows;
+    }
+
+    /**
+     * @return Whether the DateIndex still numbers its rows as when this was built.
+     */
+    boolean isCurrent() {
+        return rows.generation() == generation;
+    }
+
+    /**
+     * @return The incident in the given row.
+     */
+    Incident incident(int row) {
+        return rows.incident(row);
+    }
+
+    /**
+     * @return The hacker owning the incident in the given row, or null if it is dead.
+     */
+    Hacker owner(int row) {
+        return rows.owner(row);
+    }
+
+    /**
+     * @return The number of rows, dead or alive.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,241 @@
+package investigation;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+
+/*
+ * A filter over incident attributes, built from single-attribute conditions
+ * combined with and(), or() and not(), e.g.
+ *
+ *   IncidentQuery.os("Linux").and(IncidentQuery.webServer("Apache"),
+ *           IncidentQuery.location("Canada"), IncidentQuery.between("2014-01-01", "2014-06-30"))
+ *
+ * A query is evaluated against an IncidentBitmapIndex to a bitmap of matching
+ * rows. AND and OR are word-at-a-time BitSet operations, and a NOT inside an
+ * AND is applied with andNot() instead of building its complement.
+ */
+public abstract class IncidentQuery {
+
+    /**
+     * @param index
+     * @return A new bitmap of the index rows matching the query.
+     */
+    abstract BitSet evaluate(IncidentBitmapIndex index);
+
+    /**
+     * @return Incidents on the given operating system.
+     */
+    public static IncidentQuery os(String os) {
+        return new Value(IncidentBitmapIndex.OS, Incident.OPERATING_SYSTEMS, os);
+    }
+
+    /**
+     * @return Incidents against the given web server.
+     */
+    public static IncidentQuery webServer(String webServer) {
+        return new Value(IncidentBitmapIndex.WEB_SERVER, Incident.WEB_SERVERS, webServer);
+    }
+
+    /**
+     * @return Incidents from the given location.
+     */
+    public static IncidentQuery location(String location) {
+        return new Value(IncidentBitmapIndex.LOCATION, Incident.LOCATIONS, location);
+    }
+
+    /**
+     * @param from First date, inclusive, as yyyy-MM-dd
+     * @param to Last date, inclusive, as yyyy-MM-dd
+     * @return Incidents in the date window.
+     */
+    public static IncidentQuery between(String from, String to) {
+        return new Between(Incident.toEpochDay(from), Incident.toEpochDay(to));
+    }
+
+    /**
+     * @return Incidents matching this query and every one of the others.
+     */
+    public IncidentQuery and(IncidentQuery... others) {
+        return new And(combine(this, others));
+    }
+
+    /**
+     * @return Incidents matching this query or any of the others.
+     */
+    public IncidentQuery or(IncidentQuery... others) {
+        return new Or(combine(this, others));
+    }
+
+    /**
+     * @return Incidents not matching this query.
+     */
+    public IncidentQuery not() {
+        return new Not(this);
+    }
+
+    private static IncidentQuery[] combine(IncidentQuery first, IncidentQuery[] others) {
+        IncidentQuery[] all = new IncidentQuery[others.length + 1];
+        all[0] = first;
+        System.arraycopy(others, 0, all, 1, others.length);
+        return all;
+    }
+
+    /**
+     * @param index
+     * @return Every matching incident, in date order.
+     */
+    ArrayList<Incident> incidents(IncidentBitmapIndex index) {
+        int[] rows = index.inDateOrder(evaluate(index));
+        ArrayList<Incident> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(index.incident(row));
+        }
+        return result;
+    }
+
+    /**
+     * @param index
+     * @return Each hacker with a matching incident, once, ordered by their first match.
+     */
+    ArrayList<Hacker> hackers(IncidentBitmapIndex index) {
+        ArrayList<Hacker> result = new ArrayList<>();
+        IdentityHashMap<Hacker, Boolean> seen = new IdentityHashMap<>();
+        for (int row : index.inDateOrder(evaluate(index))) {
+            Hacker owner = index.owner(row);
+            if (seen.put(owner, Boolean.TRUE) == null) {
+                result.add(owner);
+            }
+        }
+        return result;
+    }
+
+    private static class Value extends IncidentQuery {
+        private final int field;
+        private final SymbolTable symbols;
+        private final String value;
+
+        Value(int field, SymbolTable symbols, String value) {
+            this.field = field;
+            this.symbols = symbols;
+            this.value = value;
+        }
+
+        @Override
+        BitSet evaluate(IncidentBitmapIndex index) {
+            return index.rowsWith(field, symbols.lookup(value));
+        }
+
+        @Override
+        public String toString() {
+            String[] names = {"os", "webServer", "location"};
+            return names[field] + "=" + value;
+        }
+    }
+
+    private static class Between extends IncidentQuery {
+        private final int from;
+        private final int to;
+
+        Between(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        BitSet evaluate(IncidentBitmapIndex index) {
+            return index.rowsBetween(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return "date in [" + LocalDate.ofEpochDay(from) + ", " + LocalDate.ofEpochDay(to) + "]";
+        }
+    }
+
+    private static class And extends IncidentQuery {
+        private final IncidentQuery[] terms;
+
+        And(IncidentQuery[] terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        BitSet evaluate(IncidentBitmapIndex index) {
+            BitSet result = null;
+            for (IncidentQuery term : terms) {
+                if (term instanceof Not) {
+                    continue;
+                }
+                BitSet rows = term.evaluate(index);
+                if (result == null) {
+                    result = rows;
+                } else {
+                    result.and(rows);
+                }
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+            if (result == null) {
+                result = new BitSet(index.size());
+                result.set(0, index.size());
+            }
+            for (IncidentQuery term : terms) {
+                if (term instanceof Not) {
+                    result.andNot(((Not) term).term.evaluate(index));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + String.join(" AND ", Arrays.stream(terms).map(Object::toString).toArray(String[]::new)) + ")";
+        }
+    }
+
+    private static class Or extends IncidentQuery {
+        private final IncidentQuery[] terms;
+
+        Or(IncidentQuery[] terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        BitSet evaluate(IncidentBitmapIndex index) {
+            BitSet result = terms[0].evaluate(index);
+            for (int i = 1; i < terms.length; i++) {
+                result.or(terms[i].evaluate(index));
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + String.join(" OR ", Arrays.stream(terms).map(Object::toString).toArray(String[]::new)) + ")";
+        }
+    }
+
+    private static class Not extends IncidentQuery {
+        private final IncidentQuery term;
+
+        Not(IncidentQuery term) {
+            this.term = term;
+        }
+
+        @Override
+        BitSet evaluate(IncidentBitmapIndex index) {
+            BitSet result = term.evaluate(index);
+            result.flip(0, index.size());
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + term;
+        }
+    }
+}
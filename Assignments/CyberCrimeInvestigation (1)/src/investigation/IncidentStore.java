@@ -0,0 +1,262 @@
+package investigation;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * Incidents kept off the Java heap, in direct ByteBuffers the garbage collector
+ * does not scan. Rows are fixed width and laid out by column: each chunk of
+ * CHUNK_ROWS rows is one direct buffer holding, one after another, the OS,
+ * web server and location dictionary codes, the epoch day, the four hash
+ * halves and a next-row pointer. A hacker's incidents are a chain of rows
+ * linked through that pointer, so adding to a hacker or splicing two hackers
+ * together never moves rows.
+ *
+ * incident() decodes a row into a short-lived Incident, and each column can
+ * also be read on its own; the store itself holds no objects per incident.
+ * Rows are never freed: the space of removed hackers is reclaimed only by
+ * reloading, e.g. from a snapshot.
+ */
+public class IncidentStore {
+
+    static final int NONE = -1;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_ROWS = 1 << CHUNK_BITS;
+
+    // Column start offsets within a chunk
+    private static final int OS = 0;
+    private static final int WEB_SERVER = OS + 4 * CHUNK_ROWS;
+    private static final int LOCATION = WEB_SERVER + 4 * CHUNK_ROWS;
+    private static final int DATE = LOCATION + 4 * CHUNK_ROWS;
+    private static final int NEXT = DATE + 4 * CHUNK_ROWS;
+    private static final int IP_HIGH = NEXT + 4 * CHUNK_ROWS;
+    private static final int IP_LOW = IP_HIGH + 8 * CHUNK_ROWS;
+    private static final int URL_HIGH = IP_LOW + 8 * CHUNK_ROWS;
+    private static final int URL_LOW = URL_HIGH + 8 * CHUNK_ROWS;
+    private static final int CHUNK_BYTES = URL_LOW + 8 * CHUNK_ROWS;
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private volatile int size = 0;
+
+    private ByteBuffer chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    private static int offset(int column, int row, int width) {
+        return column + (row & (CHUNK_ROWS - 1)) * width;
+    }
+
+    /**
+     * Writes an incident to a new row, with no next row.
+     * 
+     * @param incident
+     * @return The row number.
+     */
+    public synchronized int append(Incident incident) {
+        int row = size;
+        if ((row >>> CHUNK_BITS) == chunks.length) {
+            ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+            grown[chunks.length] = ByteBuffer.allocateDirect(CHUNK_BYTES);
+            chunks = grown;
+        }
+        ByteBuffer chunk = chunk(row);
+        chunk.putInt(offset(OS, row, 4), incident.getOSCode());
+        chunk.putInt(offset(WEB_SERVER, row, 4), incident.getWebServerCode());
+        chunk.putInt(offset(LOCATION, row, 4), incident.getLocationCode());
+        chunk.putInt(offset(DATE, row, 4), incident.getEpochDay());
+        chunk.putInt(offset(NEXT, row, 4), NONE);
+        chunk.putLong(offset(IP_HIGH, row, 8), incident.getIPHashHigh());
+        chunk.putLong(offset(IP_LOW, row, 8), incident.getIPHashLow());
+        chunk.putLong(offset(URL_HIGH, row, 8), incident.getURLHashHigh());
+        chunk.putLong(offset(URL_LOW, row, 8), incident.getURLHashLow());
+        size = row + 1;
+        return row;
+    }
+
+    /**
+     * @return The row after the given one in its chain, or NONE.
+     */
+    public int next(int row) {
+        return chunk(row).getInt(offset(NEXT, row, 4));
+    }
+
+    /**
+     * Links row to next in a chain.
+     */
+    public void setNext(int row, int next) {
+        chunk(row).putInt(offset(NEXT, row, 4), next);
+    }
+
+    public int osCode(int row) {
+        return chunk(row).getInt(offset(OS, row, 4));
+    }
+
+    public int webServerCode(int row) {
+        return chunk(row).getInt(offset(WEB_SERVER, row, 4));
+    }
+
+    public long ipHashHigh(int row) {
+        return chunk(row).getLong(offset(IP_HIGH, row, 8));
+    }
+
+    public long ipHashLow(int row) {
+        return chunk(row).getLong(offset(IP_LOW, row, 8));
+    }
+
+    public long urlHashHigh(int row) {
+        return chunk(row).getLong(offset(URL_HIGH, row, 8));
+    }
+
+    public long urlHashLow(int row) {
+        return chunk(row).getLong(offset(URL_LOW, row, 8));
+    }
+
+    /**
+     * @return The epoch day of the row, read without decoding the rest of it.
+     */
+    public int epochDay(int row) {
+        return chunk(row).getInt(offset(DATE, row, 4));
+    }
+
+    /**
+     * @return The location code of the row, read without decoding the rest of it.
+     */
+    public int locationCode(int row) {
+        return chunk(row).getInt(offset(LOCATION, row, 4));
+    }
+
+    /**
+     * @param row
+     * @return A new Incident holding the row's values.
+     */
+    public Incident incident(int row) {
+        ByteBuffer chunk = chunk(row);
+        return new Incident(chunk.getInt(offset(OS, row, 4)), chunk.getInt(offset(WEB_SERVER, row, 4)),
+                chunk.getInt(offset(DATE, row, 4)), chunk.getInt(offset(LOCATION, row, 4)),
+                chunk.getLong(offset(IP_HIGH, row, 8)), chunk.getLong(offset(IP_LOW, row, 8)),
+                chunk.getLong(offset(URL_HIGH, row, 8)), chunk.getLong(offset(URL_LOW, row, 8)));
+    }
+
+    /**
+     * @return True if the row holds the incident's values, as Incident.equals.
+     */
+    public boolean matches(int row, Incident incident) {
+        return epochDay(row) == incident.getEpochDay() && locationCode(row) == incident.getLocationCode()
+                && osCode(row) == incident.getOSCode() && webServerCode(row) == incident.getWebServerCode()
+                && ipHashHigh(row) == incident.getIPHashHigh() && ipHashLow(row) == incident.getIPHashLow()
+                && urlHashHigh(row) == incident.getURLHashHigh() && urlHashLow(row) == incident.getURLHashLow();
+    }
+
+    /**
+     * @return True if both rows hold the same values.
+     */
+    public boolean matches(int row, int other) {
+        return epochDay(row) == epochDay(other) && locationCode(row) == locationCode(other)
+                && osCode(row) == osCode(other) && webServerCode(row) == webServerCode(other)
+                && ipHashHigh(row) == ipHashHigh(other) && ipHashLow(row) == ipHashLow(other)
+                && urlHashHigh(row) == urlHashHigh(other) && urlHashLow(row) == urlHashLow(other);
+    }
+
+    /**
+     * @return The hashCode() of the row's Incident, without decoding it.
+     */
+    public int hashCode(int row) {
+        int h = epochDay(row);
+        h = 31 * h + locationCode(row);
+        h = 31 * h + osCode(row);
+        h = 31 * h + webServerCode(row);
+        h = 31 * h + HexHash.hashCode(ipHashHigh(row), ipHashLow(row));
+        h = 31 * h + HexHash.hashCode(urlHashHigh(row), urlHashLow(row));
+        return h;
+    }
+
+    /**
+     * A set of rows of one store that compares them by their values, like a
+     * HashSet of their Incidents, while holding only the row numbers: an open
+     * addressing table with linear probing.
+     */
+    static final class RowSet {
+        private final IncidentStore store;
+        private int[] slots;
+        private int size = 0;
+
+        RowSet(IncidentStore store, int expected) {
+            this.store = store;
+            int capacity = 16;
+            while (capacity < expected * 2) {
+                capacity *= 2;
+            }
+            slots = new int[capacity];
+            Arrays.fill(slots, NONE);
+        }
+
+        private int slot(int hash) {
+            return (hash ^ (hash >>> 16)) & (slots.length - 1);
+        }
+
+        /**
+         * @return True if a row in the set holds the incident's values.
+         */
+        boolean contains(Incident incident) {
+            for (int i = slot(incident.hashCode()); slots[i] != NONE; i = (i + 1) & (slots.length - 1)) {
+                if (store.matches(slots[i], incident)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return True if a row in the set holds the same values as the given row.
+         */
+        boolean containsRow(int row) {
+            for (int i = slot(store.hashCode(row)); slots[i] != NONE; i = (i + 1) & (slots.length - 1)) {
+                if (store.matches(slots[i], row)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Adds a row not already contained.
+         */
+        void add(int row) {
+            if ((size + 1) * 2 > slots.length) {
+                int[] old = slots;
+                slots = new int[old.length * 2];
+                Arrays.fill(slots, NONE);
+                for (int held : old) {
+                    if (held != NONE) {
+                        insert(held);
+                    }
+                }
+            }
+            insert(row);
+            size++;
+        }
+
+        private void insert(int row) {
+            int i = slot(store.hashCode(row));
+            while (slots[i] != NONE) {
+                i = (i + 1) & (slots.length - 1);
+            }
+            slots[i] = row;
+        }
+    }
+
+    /**
+     * @return The number of rows written.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The off-heap memory allocated, in bytes.
+     */
+    public long allocatedBytes() {
+        return (long) chunks.length * CHUNK_BYTES;
+    }
+}
@@ -0,0 +1,247 @@
+package investigation;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * A chained hacker directory that resizes incrementally. When the table fills
+ * to half its length a doubled table is allocated, but the old one is kept:
+ * every add, search and remove then moves at most MIGRATE_STEP old buckets into
+ * the new table. No single call ever rehashes the whole directory, so insert
+ * latency stays flat while the table grows.
+ *
+ * While a migration is in progress, old buckets below migrateIndex are empty and
+ * every other hacker lives in exactly one of the two tables.
+ */
+public class IncrementalHackerDirectory implements HackerDirectory {
+
+    // Enough that a migration always completes before the new table fills
+    private static final int MIGRATE_STEP = 4;
+
+    private HNode[] hackerDirectory;
+    private HNode[] oldDirectory = null;
+    private int migrateIndex = 0;
+    private int numHackers = 0;
+
+    public IncrementalHackerDirectory() {
+        hackerDirectory = new HNode[10];
+    }
+
+    /**
+     * @return True if old buckets are still waiting to be moved.
+     */
+    public boolean isMigrating() {
+        return oldDirectory != null;
+    }
+
+    /**
+     * Moves up to the given number of old buckets into the current table.
+     */
+    private void migrate(int buckets) {
+        if (oldDirectory == null) {
+            return;
+        }
+        // Not migrateIndex + buckets, which overflows for Integer.MAX_VALUE
+        int end = migrateIndex + Math.min(buckets, oldDirectory.length - migrateIndex);
+        for (; migrateIndex < end; migrateIndex++) {
+            HNode current = oldDirectory[migrateIndex];
+            oldDirectory[migrateIndex] = null;
+            while (current != null) {
+                HNode next = current.getNext();
+                int index = HackerDirectory.indexFor(current.getHacker().getName(), hackerDirectory.length);
+                current.setNext(hackerDirectory[index]);
+                hackerDirectory[index] = current;
+                current = next;
+            }
+        }
+        if (migrateIndex == oldDirectory.length) {
+            oldDirectory = null;
+            migrateIndex = 0;
+        }
+    }
+
+    /**
+     * Starts a resize: the current table becomes the old table and a doubled
+     * table takes its place. Hackers are moved over by later calls.
+     */
+    private void resize() {
+        migrate(Integer.MAX_VALUE);
+        oldDirectory = hackerDirectory;
+        migrateIndex = 0;
+        hackerDirectory = new HNode[oldDirectory.length * 2];
+    }
+
+    /**
+     * Pre-sizing is an explicit request, so it finishes any migration and
+     * rehashes straight into a table of the final size.
+     */
+    public void ensureCapacity(int numHackers) {
+        int length = hackerDirectory.length;
+        while (numHackers >= length / 2) {
+            length *= 2;
+        }
+        if (length == hackerDirectory.length) {
+            return;
+        }
+        migrate(Integer.MAX_VALUE);
+        oldDirectory = hackerDirectory;
+        migrateIndex = 0;
+        hackerDirectory = new HNode[length];
+        migrate(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The old bucket that may still hold the given name, or -1 if it has been migrated.
+     */
+    private int oldIndex(String name) {
+        if (oldDirectory == null) {
+            return -1;
+        }
+        int index = HackerDirectory.indexFor(name, oldDirectory.length);
+        return index >= migrateIndex ? index : -1;
+    }
+
+    private static HNode find(HNode current, String name) {
+        while (current != null) {
+            if (current.getHacker().getName().equals(name)) {
+                return current;
+            }
+            current = current.getNext();
+        }
+        return null;
+    }
+
+    public Hacker add(Hacker toAdd) {
+        migrate(MIGRATE_STEP);
+
+        String name = toAdd.getName();
+        int index = HackerDirectory.indexFor(name, hackerDirectory.length);
+        HNode existing = find(hackerDirectory[index], name);
+        if (existing == null) {
+            int old = oldIndex(name);
+            if (old >= 0) {
+                existing = find(oldDirectory[old], name);
+            }
+        }
+        if (existing != null) {
+            existing.getHacker().addIncidents(toAdd.getIncidents());
+            return existing.getHacker();
+        }
+
+        HNode newNode = new HNode(toAdd);
+        newNode.setNext(hackerDirectory[index]);
+        hackerDirectory[index] = newNode;
+        numHackers++;
+
+        if (numHackers >= hackerDirectory.length / 2) {
+            resize();
+        }
+        return toAdd;
+    }
+
+    public Hacker search(String toSearch) {
+        migrate(MIGRATE_STEP);
+
+        HNode found = find(hackerDirectory[HackerDirectory.indexFor(toSearch, hackerDirectory.length)], toSearch);
+        if (found == null) {
+            int old = oldIndex(toSearch);
+            if (old >= 0) {
+                found = find(oldDirectory[old], toSearch);
+            }
+        }
+        return found == null ? null : found.getHacker();
+    }
+
+    /**
+     * Unlinks the given name from one bucket of a table.
+     */
+    private Hacker unlink(HNode[] table, int index, String name) {
+        HNode current = table[index];
+        HNode previous = null;
+        while (current != null) {
+            if (current.getHacker().getName().equals(name)) {
+                if (previous == null) {
+                    table[index] = current.getNext();
+                } else {
+                    previous.setNext(current.getNext());
+                }
+                numHackers--;
+                return current.getHacker();
+            }
+            previous = current;
+            current = current.getNext();
+        }
+        return null;
+    }
+
+    public Hacker remove(String toRemove) {
+        migrate(MIGRATE_STEP);
+
+        Hacker removed = unlink(hackerDirectory, HackerDirectory.indexFor(toRemove, hackerDirectory.length), toRemove);
+        if (removed == null) {
+            int old = oldIndex(toRemove);
+            if (old >= 0) {
+                removed = unlink(oldDirectory, old, toRemove);
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return numHackers;
+    }
+
+    public int capacity() {
+        return hackerDirectory.length;
+    }
+
+    /**
+     * Callers of the chain view index it directly, so any pending migration is
+     * finished first to leave a single consistent table.
+     */
+    public HNode[] toChains() {
+        migrate(Integer.MAX_VALUE);
+        return hackerDirectory;
+    }
+
+    /**
+     * Finishes any pending migration first, since the searches, adds and
+     * removes that a caller may make while iterating would otherwise move
+     * hackers between the two tables under the iterator. As with the other
+     * directories, adding or removing hackers during iteration is not supported.
+     */
+    public Iterator<Hacker> iterator() {
+        migrate(Integer.MAX_VALUE);
+        return new Iterator<Hacker>() {
+            private final HNode[] table = hackerDirectory;
+            private int bucket = 0;
+            private HNode next = advance(null);
+
+            private HNode advance(HNode current) {
+                if (current != null && current.getNext() != null) {
+                    return current.getNext();
+                }
+                while (bucket < table.length) {
+                    HNode head = table[bucket++];
+                    if (head != null) {
+                        return head;
+                    }
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public Hacker next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                HNode current = next;
+                next = advance(current);
+                return current.getHacker();
+            }
+        };
+    }
+}
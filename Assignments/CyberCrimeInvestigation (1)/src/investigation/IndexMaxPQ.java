@@ -0,0 +1,422 @@
+package investigation;
+
+/******************************************************************************
+ *  Compilation:  javac IndexMaxPQ.java
+ *  Dependencies: none
+ *
+ *  Maximum-oriented indexed priority queue implementation using a binary heap.
+ *  Companion to MaxPQ for keys whose priority changes after insertion: each
+ *  key is tied to an integer handle, so it can be found, re-prioritized or
+ *  deleted without rebuilding the heap. The handle range grows as needed.
+ *
+ ******************************************************************************/
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *  The {@code IndexMaxPQ} class represents an indexed priority queue of generic keys.
+ *  It supports the usual <em>insert</em> and <em>delete-the-maximum</em>
+ *  operations, along with <em>delete</em> and <em>change-the-key</em>
+ *  methods. In order to let the client refer to items on the priority queue,
+ *  an integer between {@code 0} and the current capacity is associated with
+ *  each key&mdash;the client uses this integer to specify which key to delete
+ *  or change.
+ *  It also supports methods for peeking at a maximum key,
+ *  testing if the priority queue is empty, and iterating through
+ *  the keys.
+ *  <p>
+ *  This implementation uses a <em>binary heap</em> along with an
+ *  array to associate keys with integers in the given range.
+ *  The <em>insert</em>, <em>delete-the-maximum</em>, <em>delete</em>,
+ *  <em>change-key</em>, <em>decrease-key</em>, and <em>increase-key</em>
+ *  operations take &Theta;(log <em>n</em>) time in the worst case
+ *  (amortized when an insert grows the handle range),
+ *  where <em>n</em> is the number of elements in the priority queue.
+ *  The <em>contains</em>, <em>max-index</em>, <em>max-key</em>,
+ *  <em>key-of</em>, <em>size</em>, and <em>is-empty</em> operations take
+ *  &Theta;(1) time in the worst case.
+ *  Construction from an array of keys takes time proportional to its length.
+ *  <p>
+ *  For additional documentation, see
+ *  <a href="https://algs4.cs.princeton.edu/24pq">Section 2.4</a> of
+ *  <i>Algorithms, 4th Edition</i> by Robert Sedgewick and Kevin Wayne.
+ *
+ *  @param <Key> the generic type of key on this priority queue
+ */
+public class IndexMaxPQ<Key> implements Iterable<Integer> {
+    private int n;                       // number of elements on PQ
+    private int[] pq;                    // binary heap using 1-based indexing
+    private int[] qp;                    // inverse: qp[pq[i]] = pq[qp[i]] = i, -1 if absent
+    private Key[] keys;                  // keys[i] = priority of i
+    private Comparator<Key> comparator;  // optional comparator
+    private int modCount = 0;            // changes to the heap, checked by iterators
+
+    /**
+     * Initializes an empty indexed priority queue with handles between
+     * {@code 0} and {@code maxN - 1}; the range grows if a larger handle is inserted.
+     *
+     * @param  maxN the initial number of handles
+     * @throws IllegalArgumentException if {@code maxN < 0}
+     */
+    public IndexMaxPQ(int maxN) {
+        this(maxN, null);
+    }
+
+    /**
+     * Initializes an empty indexed priority queue using the given comparator.
+     *
+     * @param  maxN the initial number of handles
+     * @param  comparator the order in which to compare the keys
+     * @throws IllegalArgumentException if {@code maxN < 0}
+     */
+    public IndexMaxPQ(int maxN, Comparator<Key> comparator) {
+        if (maxN < 0) throw new IllegalArgumentException("Number of handles must be non-negative: " + maxN);
+        this.comparator = comparator;
+        n = 0;
+        @SuppressWarnings("unchecked")
+        Key[] array = (Key[]) new Object[maxN];
+        keys = array;
+        pq = new int[maxN + 1];
+        qp = new int[maxN];
+        Arrays.fill(qp, -1);
+    }
+
+    /**
+     * Initializes an indexed priority queue holding {@code keys[i]} with handle {@code i}
+     * for every non-null entry. Takes time proportional to the number of keys,
+     * using sink-based heap construction.
+     *
+     * @param  keys the array of keys, indexed by handle
+     */
+    public IndexMaxPQ(Key[] keys) {
+        this(keys, null);
+    }
+
+    /**
+     * Initializes an indexed priority queue from an array of keys, using the given comparator.
+     *
+     * @param  keys the array of keys, indexed by handle
+     * @param  comparator the order in which to compare the keys
+     */
+    public IndexMaxPQ(Key[] keys, Comparator<Key> comparator) {
+        this(keys.length, comparator);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) continue;
+            this.keys[i] = keys[i];
+            n++;
+            qp[i] = n;
+            pq[n] = i;
+        }
+        for (int k = n/2; k >= 1; k--)
+            sink(k);
+        assert isMaxHeap();
+    }
+
+    /**
+     * Returns true if this priority queue is empty.
+     *
+     * @return {@code true} if this priority queue is empty;
+     *         {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * Is {@code i} a handle on this priority queue?
+     *
+     * @param  i a handle
+     * @return {@code true} if {@code i} is a handle on this priority queue;
+     *         {@code false} otherwise
+     * @throws IllegalArgumentException if {@code i < 0}
+     */
+    public boolean contains(int i) {
+        validateIndex(i);
+        return i < qp.length && qp[i] != -1;
+    }
+
+    /**
+     * Returns the number of keys on this priority queue.
+     *
+     * @return the number of keys on this priority queue
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Associate key with handle i.
+     *
+     * @param  i a handle
+     * @param  key the key to associate with handle {@code i}
+     * @throws IllegalArgumentException if {@code i < 0}
+     * @throws IllegalArgumentException if handle {@code i} is already in the priority queue
+     */
+    public void insert(int i, Key key) {
+        validateIndex(i);
+        if (i >= qp.length) resize(Math.max(i + 1, 2 * qp.length));
+        if (contains(i)) throw new IllegalArgumentException("index is already in the priority queue");
+        modCount++;
+        n++;
+        qp[i] = n;
+        pq[n] = i;
+        keys[i] = key;
+        swim(n);
+    }
+
+    /**
+     * Returns a handle associated with a maximum key.
+     *
+     * @return a handle associated with a maximum key
+     * @throws NoSuchElementException if this priority queue is empty
+     */
+    public int maxIndex() {
+        if (n == 0) throw new NoSuchElementException("Priority queue underflow");
+        return pq[1];
+    }
+
+    /**
+     * Returns a maximum key.
+     *
+     * @return a maximum key
+     * @throws NoSuchElementException if this priority queue is empty
+     */
+    public Key maxKey() {
+        if (n == 0) throw new NoSuchElementException("Priority queue underflow");
+        return keys[pq[1]];
+    }
+
+    /**
+     * Removes a maximum key and returns its associated handle.
+     *
+     * @return a handle associated with a maximum key
+     * @throws NoSuchElementException if this priority queue is empty
+     */
+    public int delMax() {
+        if (n == 0) throw new NoSuchElementException("Priority queue underflow");
+        modCount++;
+        int max = pq[1];
+        exch(1, n--);
+        sink(1);
+
+        assert pq[n+1] == max;
+        qp[max] = -1;        // delete
+        keys[max] = null;    // to help with garbage collection
+        pq[n+1] = -1;        // not needed
+        return max;
+    }
+
+    /**
+     * Returns the key associated with handle {@code i}.
+     *
+     * @param  i a handle
+     * @return the key associated with handle {@code i}
+     * @throws IllegalArgumentException if {@code i < 0}
+     * @throws NoSuchElementException if handle {@code i} is not in the priority queue
+     */
+    public Key keyOf(int i) {
+        validateIndex(i);
+        if (!contains(i)) throw new NoSuchElementException("index is not in the priority queue");
+        else return keys[i];
+    }
+
+    /**
+     * Change the key associated with handle {@code i} to the specified value.
+     *
+     * @param  i a handle
+     * @param  key change the key associated with handle {@code i} to this key
+     * @throws IllegalArgumentException if {@code i < 0}
+     * @throws NoSuchElementException if handle {@code i} is not in the priority queue
+     */
+    public void changeKey(int i, Key key) {
+        validateIndex(i);
+        if (!contains(i)) throw new NoSuchElementException("index is not in the priority queue");
+        modCount++;
+        keys[i] = key;
+        swim(qp[i]);
+        sink(qp[i]);
+    }
+
+    /**
+     * Increase the key associated with handle {@code i} to the specified value.
+     *
+     * @param  i a handle
+     * @param  key increase the key associated with handle {@code i} to this key
+     * @throws IllegalArgumentException if {@code i < 0}
+     * @throws IllegalArgumentException if {@code key <= keyOf(i)}
+     * @throws NoSuchElementException if handle {@code i} is not in the priority queue
+     */
+    public void increaseKey(int i, Key key) {
+        validateIndex(i);
+        if (!contains(i)) throw new NoSuchElementException("index is not in the priority queue");
+        if (compare(keys[i], key) == 0)
+            throw new IllegalArgumentException("Calling increaseKey() with a key equal to the key in the priority queue");
+        if (compare(keys[i], key) > 0)
+            throw new IllegalArgumentException("Calling increaseKey() with a key that is strictly less than the key in the priority queue");
+
+        modCount++;
+        keys[i] = key;
+        swim(qp[i]);
+    }
+
+    /**
+     * Decrease the key associated with handle {@code i} to the specified value.
+     *
+     * @param  i a handle
+     * @param  key decrease the key associated with handle {@code i} to this key
+     * @throws IllegalArgumentException if {@code i < 0}
+     * @throws IllegalArgumentException if {@code key >= keyOf(i)}
+     * @throws NoSuchElementException if handle {@code i} is not in the priority queue
+     */
+    public void decreaseKey(int i, Key key) {
+        validateIndex(i);
+        if (!contains(i)) throw new NoSuchElementException("index is not in the priority queue");
+        if (compare(keys[i], key) == 0)
+            throw new IllegalArgumentException("Calling decreaseKey() with a key equal to the key in the priority queue");
+        if (compare(keys[i], key) < 0)
+            throw new IllegalArgumentException("Calling decreaseKey() with a key that is strictly greater than the key in the priority queue");
+
+        modCount++;
+        keys[i] = key;
+        sink(qp[i]);
+    }
+
+    /**
+     * Remove the key associated with handle {@code i}.
+     *
+     * @param  i a handle
+     * @throws IllegalArgumentException if {@code i < 0}
+     * @throws NoSuchElementException if handle {@code i} is not in the priority queue
+     */
+    public void delete(int i) {
+        validateIndex(i);
+        if (!contains(i)) throw new NoSuchElementException("index is not in the priority queue");
+        modCount++;
+        int index = qp[i];
+        exch(index, n--);
+        if (index <= n) {
+            swim(index);
+            sink(index);
+        }
+        keys[i] = null;
+        qp[i] = -1;
+    }
+
+    // throw an IllegalArgumentException if i is an invalid handle
+    private void validateIndex(int i) {
+        if (i < 0) throw new IllegalArgumentException("index is negative: " + i);
+    }
+
+    // grow the handle range to hold handles 0 to capacity - 1
+    private void resize(int capacity) {
+        int old = qp.length;
+        keys = Arrays.copyOf(keys, capacity);
+        pq = Arrays.copyOf(pq, capacity + 1);
+        qp = Arrays.copyOf(qp, capacity);
+        Arrays.fill(qp, old, capacity, -1);
+    }
+
+   /***************************************************************************
+    * General helper functions.
+    ***************************************************************************/
+    private int compare(Key a, Key b) {
+        if (comparator == null) {
+            @SuppressWarnings("unchecked")
+            Comparable<Key> comparable = (Comparable<Key>) a;
+            return comparable.compareTo(b);
+        }
+        else {
+            return comparator.compare(a, b);
+        }
+    }
+
+    private boolean less(int i, int j) {
+        return compare(keys[pq[i]], keys[pq[j]]) < 0;
+    }
+
+    private void exch(int i, int j) {
+        int swap = pq[i];
+        pq[i] = pq[j];
+        pq[j] = swap;
+        qp[pq[i]] = i;
+        qp[pq[j]] = j;
+    }
+
+    // is pq[1..n] a max heap?
+    private boolean isMaxHeap() {
+        for (int k = 2; k <= n; k++) {
+            if (less(k/2, k)) return false;
+        }
+        return true;
+    }
+
+
+   /***************************************************************************
+    * Heap helper functions.
+    ***************************************************************************/
+    private void swim(int k) {
+        while (k > 1 && less(k/2, k)) {
+            exch(k, k/2);
+            k = k/2;
+        }
+    }
+
+    private void sink(int k) {
+        while (2*k <= n) {
+            int j = 2*k;
+            if (j < n && less(j, j+1)) j++;
+            if (!less(k, j)) break;
+            exch(k, j);
+            k = j;
+        }
+    }
+
+
+   /***************************************************************************
+    * Iterators.
+    ***************************************************************************/
+
+    /**
+     * Returns an iterator that iterates over the handles on the
+     * priority queue in descending order of their keys.
+     * The iterator doesn't implement {@code remove()} since it's optional.
+     * Stopping after the first k handles costs O(k log k), independent of size().
+     * <p>
+     * Unlike algs4's IndexMaxPQ, which iterates over a copy, this iterator
+     * reads the live heap, so that taking the top k stays cheap. It is fail-fast:
+     * changing the queue while iterating makes the next call to {@code next()}
+     * throw a {@code ConcurrentModificationException}.
+     *
+     * @return an iterator that iterates over the handles in descending order
+     */
+    public Iterator<Integer> iterator() {
+        return new HeapIterator();
+    }
+
+    private class HeapIterator implements Iterator<Integer> {
+        // frontier of heap positions, ordered by the key stored there
+        private MaxPQ<Integer> frontier;
+        private final int expectedModCount = modCount;
+
+        public HeapIterator() {
+            frontier = new MaxPQ<Integer>((a, b) -> compare(keys[pq[a]], keys[pq[b]]));
+            if (n > 0) frontier.insert(1);
+        }
+
+        public boolean hasNext()  { return !frontier.isEmpty();                 }
+        public void remove()      { throw new UnsupportedOperationException();  }
+
+        public Integer next() {
+            if (modCount != expectedModCount) throw new ConcurrentModificationException();
+            if (!hasNext()) throw new NoSuchElementException();
+            int k = frontier.delMax();
+            if (2*k <= n)     frontier.insert(2*k);
+            if (2*k + 1 <= n) frontier.insert(2*k + 1);
+            return pq[k];
+        }
+    }
+}
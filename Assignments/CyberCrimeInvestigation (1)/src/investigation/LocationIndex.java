@@ -0,0 +1,135 @@
+package investigation;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * An inverted index from incident location to the hackers with an incident
+ * there. Locations are addressed by their Incident.LOCATIONS code, and each
+ * one keeps its hackers by name in insertion order. CyberCrimeInvestigation
+ * updates it on every add, remove and merge, so a location query only
+ * touches the hackers it returns.
+ *
+ * The set of locations of each hacker is kept too, so removing or merging a
+ * hacker costs O(its distinct locations) rather than O(its incidents).
+ *
+ * Each location also sketches the distinct IP hashes of the incidents indexed
+ * there with a HyperLogLog. A sketch cannot forget, so removing a hacker does
+ * not lower the count: it is the number of distinct IPs ever seen there.
+ *
+ * Each location is locked on its own, so threads indexing hackers at
+ * different locations do not wait for each other. A hacker's set of
+ * locations is only changed under the caller's lock for that hacker, which
+ * add, remove and merge must hold.
+ */
+public class LocationIndex {
+
+    // The hackers at one location and its IP sketch, guarded by the Location's monitor
+    private static final class Location {
+        final LinkedHashMap<String, Hacker> hackers = new LinkedHashMap<>();
+        final HyperLogLog ips = new HyperLogLog(IP_SKETCH_PRECISION);
+    }
+
+    private final ConcurrentHashMap<Integer, Location> byLocation = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, BitSet> locationsOf = new ConcurrentHashMap<>();
+
+    static final int IP_SKETCH_PRECISION = 14;
+
+    private Location location(int locationCode) {
+        return byLocation.computeIfAbsent(locationCode, k -> new Location());
+    }
+
+    /**
+     * Records that the hacker has the given incidents.
+     * 
+     * @param hacker The hacker as stored in the directory
+     * @param incidents
+     */
+    public void add(Hacker hacker, Iterable<Incident> incidents) {
+        BitSet locations = locationsOf.computeIfAbsent(hacker.getName(), k -> new BitSet());
+        for (Incident incident : incidents) {
+            int code = incident.getLocationCode();
+            Location at = location(code);
+            synchronized (at) {
+                at.ips.add(incident.getIPHashHigh(), incident.getIPHashLow());
+                if (!locations.get(code)) {
+                    locations.set(code);
+                    at.hackers.put(hacker.getName(), hacker);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets a hacker that is leaving the directory.
+     * 
+     * @param hacker
+     */
+    public void remove(Hacker hacker) {
+        BitSet locations = locationsOf.remove(hacker.getName());
+        if (locations == null) {
+            return;
+        }
+        for (int code = locations.nextSetBit(0); code >= 0; code = locations.nextSetBit(code + 1)) {
+            Location at = byLocation.get(code);
+            synchronized (at) {
+                at.hackers.remove(hacker.getName());
+            }
+        }
+    }
+
+    /**
+     * Moves every location of a merged hacker to the hacker it was merged into.
+     * Call it holding the locks of both hackers.
+     * 
+     * @param keep The surviving hacker
+     * @param merged The hacker merged into it
+     */
+    public void merge(Hacker keep, Hacker merged) {
+        BitSet moved = locationsOf.remove(merged.getName());
+        if (moved == null) {
+            return;
+        }
+        BitSet locations = locationsOf.computeIfAbsent(keep.getName(), k -> new BitSet());
+        for (int code = moved.nextSetBit(0); code >= 0; code = moved.nextSetBit(code + 1)) {
+            Location at = byLocation.get(code);
+            synchronized (at) {
+                at.hackers.remove(merged.getName());
+                if (!locations.get(code)) {
+                    locations.set(code);
+                    at.hackers.put(keep.getName(), keep);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param locationCode
+     * @return The hackers with an incident at the location, in the order they were indexed.
+     */
+    public ArrayList<Hacker> get(int locationCode) {
+        Location at = byLocation.get(locationCode);
+        if (at == null) {
+            return new ArrayList<>();
+        }
+        synchronized (at) {
+            return new ArrayList<>(at.hackers.values());
+        }
+    }
+
+    /**
+     * @param locationCode
+     * @return The estimated number of distinct IP hashes seen at the location.
+     */
+    public long distinctIPs(int locationCode) {
+        Location at = byLocation.get(locationCode);
+        if (at == null) {
+            return 0;
+        }
+        synchronized (at) {
+            return at.ips.estimate();
+        }
+    }
+}
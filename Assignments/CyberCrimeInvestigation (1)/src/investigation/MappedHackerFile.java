@@ -0,0 +1,252 @@
+package investigation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * A read-only, memory-mapped view of a hacker input file. Opening the file
+ * only scans its bytes for '\n' and records where each line starts; nothing is
+ * decoded. Records are turned into Incidents only when they are asked for,
+ * straight from the mapped bytes: hashes are parsed into their packed longs
+ * and dates into epoch days in place, and only the three dictionary fields
+ * (OS, web server, location) become Strings, to be interned.
+ *
+ * Files larger than one mapping are split into regions that each end on a
+ * record boundary, so no record ever spans two buffers. Reads are absolute, so
+ * any number of threads may read records concurrently.
+ */
+public class MappedHackerFile {
+
+    // Line order within a record
+    static final int NAME = 0;
+    static final int IP_HASH = 1;
+    static final int LOCATION = 2;
+    static final int OS = 3;
+    static final int WEB_SERVER = 4;
+    static final int DATE = 5;
+    static final int URL_HASH = 6;
+
+    private static final int LINES = BulkLoader.LINES_PER_RECORD;
+    private static final long MAX_REGION = 1 << 30;
+
+    private static final class Region {
+        final MappedByteBuffer buffer;
+        // LINES starts per record, plus one past the end of the last line
+        final int[] lineStarts;
+        final int firstRecord;
+        final int numRecords;
+
+        Region(MappedByteBuffer buffer, int[] lineStarts, int firstRecord, int numRecords) {
+            this.buffer = buffer;
+            this.lineStarts = lineStarts;
+            this.firstRecord = firstRecord;
+            this.numRecords = numRecords;
+        }
+    }
+
+    private final Region[] regions;
+    private final int numRecords;
+
+    /**
+     * Maps the given file and indexes its lines.
+     * 
+     * @param inputFile The name of the file to read hacker data from.
+     */
+    public MappedHackerFile(String inputFile) {
+        ArrayList<Region> mapped = new ArrayList<>();
+        int records = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(MAX_REGION, size - position);
+                boolean last = position + length == size;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                Region region = index(buffer, records, last);
+                if (region.numRecords == 0) {
+                    if (last) {
+                        break;
+                    }
+                    throw new IllegalArgumentException("Record larger than " + MAX_REGION + " bytes at offset " + position);
+                }
+                mapped.add(region);
+                records += region.numRecords;
+                position += region.lineStarts[region.numRecords * LINES];
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + inputFile, e);
+        }
+        regions = mapped.toArray(new Region[0]);
+        numRecords = records;
+    }
+
+    /**
+     * Finds line boundaries in one mapped buffer, keeping only whole records.
+     * The last region may end without a trailing newline, and may end with blank lines.
+     */
+    private static Region index(MappedByteBuffer buffer, int firstRecord, boolean last) {
+        int limit = buffer.limit();
+        int[] starts = new int[LINES * 64 + 1];
+        int lines = 0;
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                if (lines + 1 == starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                }
+                starts[lines++] = lineStart;
+                lineStart = i + 1;
+            }
+        }
+        if (last && lineStart < limit) {
+            if (lines + 1 == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length + 1);
+            }
+            starts[lines++] = lineStart;
+            lineStart = limit + 1;
+        }
+
+        int records = lines / LINES;
+        int end = records * LINES;
+        starts[end] = end == lines ? lineStart : starts[end];
+        if (last) {
+            for (int i = starts[end]; i < limit; i++) {
+                byte b = buffer.get(i);
+                if (b != '\n' && b != '\r' && b != ' ' && b != '\t') {
+                    throw new IllegalArgumentException("Input ends with a partial record");
+                }
+            }
+        }
+        return new Region(buffer, starts, firstRecord, records);
+    }
+
+    /**
+     * @return The number of whole records in the file.
+     */
+    public int numRecords() {
+        return numRecords;
+    }
+
+    private Region regionOf(int record) {
+        if (record < 0 || record >= numRecords) {
+            throw new IndexOutOfBoundsException("Record " + record + " of " + numRecords);
+        }
+        int lo = 0;
+        int hi = regions.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (regions[mid].firstRecord <= record) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return regions[lo];
+    }
+
+    /**
+     * Decodes one line of a record.
+     * 
+     * @param record Record number, from 0
+     * @param line Line within the record, NAME through URL_HASH
+     */
+    String field(int record, int line) {
+        Region region = regionOf(record);
+        return text(region, (record - region.firstRecord) * LINES + line);
+    }
+
+    // Line index i of a region spans lineStart(region, i) to lineEnd(region, i), without its line break
+    private static int lineStart(Region region, int index) {
+        return region.lineStarts[index];
+    }
+
+    private static int lineEnd(Region region, int index) {
+        int start = region.lineStarts[index];
+        int end = region.lineStarts[index + 1] - 1;
+        if (end > start && region.buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    private static String text(Region region, int index) {
+        int start = lineStart(region, index);
+        byte[] bytes = new byte[lineEnd(region, index) - start];
+        region.buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a 32 digit hex hash line into its two halves.
+     */
+    private static long hashHalf(Region region, int index, boolean high) {
+        int start = lineStart(region, index);
+        if (lineEnd(region, index) - start != HexHash.DIGITS) {
+            throw new IllegalArgumentException("Expected a " + HexHash.DIGITS + " digit hex hash: " + text(region, index));
+        }
+        return HexHash.parse(region.buffer, high ? start : start + HexHash.DIGITS / 2);
+    }
+
+    /**
+     * Parses a yyyy-MM-dd date line straight to an epoch day, falling back to
+     * Incident.toEpochDay for any other layout.
+     */
+    private static int epochDay(Region region, int index) {
+        int start = lineStart(region, index);
+        ByteBuffer buffer = region.buffer;
+        if (lineEnd(region, index) - start == 10 && buffer.get(start + 4) == '-' && buffer.get(start + 7) == '-') {
+            int year = digits(buffer, start, start + 4);
+            int month = digits(buffer, start + 5, start + 7);
+            int day = digits(buffer, start + 8, start + 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return (int) LocalDate.of(year, month, day).toEpochDay();
+            }
+        }
+        return Incident.toEpochDay(text(region, index));
+    }
+
+    // The decimal value of bytes [from, to), or -1 if one is not a digit
+    private static int digits(ByteBuffer buffer, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * @param record Record number, from 0
+     * @return The hacker name of the record.
+     */
+    public String name(int record) {
+        return field(record, NAME);
+    }
+
+    /**
+     * Materializes the incident described by a record.
+     * 
+     * @param record Record number, from 0
+     */
+    public Incident incident(int record) {
+        Region region = regionOf(record);
+        int base = (record - region.firstRecord) * LINES;
+        return new Incident(Incident.OPERATING_SYSTEMS.intern(text(region, base + OS)),
+                Incident.WEB_SERVERS.intern(text(region, base + WEB_SERVER)), epochDay(region, base + DATE),
+                Incident.LOCATIONS.intern(text(region, base + LOCATION)),
+                hashHalf(region, base + IP_HASH, true), hashHalf(region, base + IP_HASH, false),
+                hashHalf(region, base + URL_HASH, true), hashHalf(region, base + URL_HASH, false));
+    }
+}
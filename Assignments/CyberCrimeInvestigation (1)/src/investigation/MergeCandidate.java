@@ -0,0 +1,55 @@
+package investigation;
+
+/*
+ * A pair of hackers that share IP or URL hashes, as found by a
+ * CorrelationEngine, with the evidence for merging them. Each shared
+ * indicator adds 1 / (k - 1) to the score, where k is the number of hackers
+ * sharing it, so an IP seen by only these two counts fully and one seen by
+ * many counts little.
+ */
+public class MergeCandidate implements Comparable<MergeCandidate> {
+
+    private final Hacker hacker1;
+    private final Hacker hacker2;
+    int sharedIPs = 0;
+    int sharedURLs = 0;
+    double score = 0;
+
+    MergeCandidate(Hacker hacker1, Hacker hacker2) {
+        this.hacker1 = hacker1;
+        this.hacker2 = hacker2;
+    }
+
+    void add(MergeCandidate other) {
+        sharedIPs += other.sharedIPs;
+        sharedURLs += other.sharedURLs;
+        score += other.score;
+    }
+
+    public Hacker getHacker1() {return hacker1;}
+    public Hacker getHacker2() {return hacker2;}
+    public int getSharedIPs() {return sharedIPs;}
+    public int getSharedURLs() {return sharedURLs;}
+    public double getScore() {return score;}
+
+    /**
+     * Higher scores first, then by hacker names, so the order is deterministic.
+     */
+    @Override
+    public int compareTo(MergeCandidate other) {
+        int res = Double.compare(other.score, score);
+        if (res == 0) {
+            res = hacker1.getName().compareTo(other.hacker1.getName());
+        }
+        if (res == 0) {
+            res = hacker2.getName().compareTo(other.hacker2.getName());
+        }
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        return "{" + hacker1.getName() + " ~ " + hacker2.getName() + ", Shared IPs: " + sharedIPs
+                + ", Shared URLs: " + sharedURLs + ", Score: " + String.format("%.2f", score) + "}";
+    }
+}
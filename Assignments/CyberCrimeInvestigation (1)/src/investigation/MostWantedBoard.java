@@ -0,0 +1,104 @@
+package investigation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/*
+ * A live most-wanted leaderboard. Hackers are kept in a sorted tree keyed by
+ * (number of incidents, name), the same order as Hacker.compareTo, and are
+ * re-keyed whenever their incident count changes. Reading the top n is a walk
+ * down from the largest key, so it costs O(log H + n) instead of rebuilding a
+ * heap of every hacker.
+ *
+ * Keys are immutable copies of the ranking fields, so a hacker gaining
+ * incidents never corrupts the tree; update() must be called after it does.
+ * Callers keep the board in step with the directory by updating and removing a
+ * hacker under the same lock as its directory change.
+ *
+ * The board takes no lock of its own: both maps are concurrent, and the
+ * caller's lock already orders the changes to any one hacker, so hackers under
+ * different locks are re-ranked in parallel. top() reads the tree without
+ * blocking them, and may miss a hacker that is being moved meanwhile. A name
+ * removed and added again lower down during the walk would be met twice, so
+ * top() lists each name once.
+ */
+public class MostWantedBoard {
+
+    private static final class Rank implements Comparable<Rank> {
+        final int numIncidents;
+        final String name;
+
+        Rank(Hacker hacker) {
+            this.numIncidents = hacker.numIncidents();
+            this.name = hacker.getName();
+        }
+
+        public int compareTo(Rank b) {
+            int res = Integer.compare(this.numIncidents, b.numIncidents);
+            return res != 0 ? res : this.name.compareTo(b.name);
+        }
+    }
+
+    private final ConcurrentSkipListMap<Rank, Hacker> ranking = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Rank> ranks = new ConcurrentHashMap<>();
+
+    /**
+     * Inserts the hacker, or moves it to match its current number of incidents.
+     * Call it holding the hacker's lock.
+     * 
+     * @param hacker
+     */
+    public void update(Hacker hacker) {
+        Rank old = ranks.get(hacker.getName());
+        if (old != null) {
+            if (old.numIncidents == hacker.numIncidents()) {
+                ranking.put(old, hacker);
+                return;
+            }
+            // Removed first, so top() never meets the hacker at both ranks
+            ranking.remove(old);
+        }
+        Rank rank = new Rank(hacker);
+        ranks.put(rank.name, rank);
+        ranking.put(rank, hacker);
+    }
+
+    /**
+     * @param hacker A hacker leaving the directory, whose lock is held
+     */
+    public void remove(Hacker hacker) {
+        Rank old = ranks.get(hacker.getName());
+        if (old != null && ranking.get(old) == hacker) {
+            ranks.remove(hacker.getName());
+            ranking.remove(old);
+        }
+    }
+
+    /**
+     * @param n
+     * @return The top n hackers, most incidents first.
+     */
+    public ArrayList<Hacker> top(int n) {
+        // ranks.size() is O(1), unlike the skip list's
+        ArrayList<Hacker> mostWanted = new ArrayList<>(Math.max(0, Math.min(n, ranks.size())));
+        HashSet<String> listed = new HashSet<>();
+        Iterator<Hacker> it = ranking.descendingMap().values().iterator();
+        while (mostWanted.size() < n && it.hasNext()) {
+            Hacker hacker = it.next();
+            if (listed.add(hacker.getName())) {
+                mostWanted.add(hacker);
+            }
+        }
+        return mostWanted;
+    }
+
+    /**
+     * @return The number of ranked hackers.
+     */
+    public int size() {
+        return ranks.size();
+    }
+}
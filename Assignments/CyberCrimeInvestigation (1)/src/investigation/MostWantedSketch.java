@@ -0,0 +1,196 @@
+package investigation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/*
+ * Approximate most-wanted tracking over an unbounded stream of incidents, in
+ * memory fixed up front. A Count-Min sketch estimates every hacker's incident
+ * count, and the k hackers with the highest estimates are kept by name in a
+ * min-heap (an IndexMaxPQ ordered smallest first), whose root is the one to
+ * evict when a new hacker's estimate overtakes it.
+ *
+ * With width ceil(e / epsilon) and depth ceil(ln(1 / delta)), an estimate never
+ * undercounts and exceeds the true count by more than epsilon * total incidents
+ * with probability at most delta. Counters use conservative update: only the
+ * rows at the current minimum are raised, which tightens estimates further.
+ */
+public class MostWantedSketch {
+
+    private final int width;
+    private final int depth;
+    private final long[] counts;
+    private long total = 0;
+
+    private final int k;
+    private final double epsilon;
+    private final double delta;
+    private final IndexMaxPQ<Long> heap;          // Smallest estimate at the root
+    private final HashMap<String, Integer> slotOf = new HashMap<>();
+    private final String[] names;
+
+    /**
+     * @param k Number of hackers to track
+     * @param epsilon Error bound, as a fraction of all incidents counted
+     * @param delta Probability of exceeding the error bound
+     */
+    public MostWantedSketch(int k, double epsilon, double delta) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        // Written so that NaN fails too
+        if (!(epsilon > 0 && epsilon < 1 && delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("epsilon and delta must be between 0 and 1");
+        }
+        double columns = Math.ceil(Math.E / epsilon);
+        if (columns > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("epsilon is too small: " + epsilon);
+        }
+        width = (int) columns;
+        depth = (int) Math.ceil(Math.log(1 / delta));
+        int cells;
+        try {
+            cells = Math.multiplyExact(width, depth);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("A sketch with epsilon " + epsilon + " and delta " + delta
+                    + " needs more than " + Integer.MAX_VALUE + " counters", e);
+        }
+        counts = new long[cells];
+        this.k = k;
+        this.epsilon = epsilon;
+        this.delta = delta;
+        heap = new IndexMaxPQ<>(k, Comparator.<Long>reverseOrder());
+        names = new String[k];
+    }
+
+    // 64-bit FNV-1a over the name's chars, finished with a mixer
+    private static long hash(String name) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // Row r uses the hash h1 + r * h2 (double hashing), reduced to a column
+    private int cell(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * width + Math.floorMod(h1 + row * h2, width);
+    }
+
+    private long minCount(long hash) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[cell(hash, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * Counts incidents for a hacker.
+     * 
+     * @param name
+     * @param incidents Number of incidents to count
+     * @return The hacker's new estimated count.
+     */
+    public synchronized long add(String name, int incidents) {
+        long h = hash(name);
+        long updated = minCount(h) + incidents;
+        for (int row = 0; row < depth; row++) {
+            int cell = cell(h, row);
+            counts[cell] = Math.max(counts[cell], updated);
+        }
+        total += incidents;
+        track(name, updated);
+        return updated;
+    }
+
+    private void track(String name, long estimate) {
+        Integer slot = slotOf.get(name);
+        if (slot != null) {
+            heap.changeKey(slot, estimate);
+            return;
+        }
+        if (heap.size() < k) {
+            slot = heap.size();
+        } else if (estimate > heap.maxKey()) {
+            slot = heap.delMax();
+            slotOf.remove(names[slot]);
+        } else {
+            return;
+        }
+        names[slot] = name;
+        slotOf.put(name, slot);
+        heap.insert(slot, estimate);
+    }
+
+    /**
+     * @param name
+     * @return The estimated number of incidents counted for the hacker, never less than the true number.
+     */
+    public synchronized long estimate(String name) {
+        return minCount(hash(name));
+    }
+
+    /**
+     * @param n At most k
+     * @return The n tracked hackers with the highest estimates, mapped to
+     * their estimates, highest first and by name on ties.
+     */
+    public synchronized LinkedHashMap<String, Long> top(int n) {
+        ArrayList<String> tracked = new ArrayList<>(slotOf.keySet());
+        Collections.sort(tracked, (a, b) -> {
+            int res = Long.compare(heap.keyOf(slotOf.get(b)), heap.keyOf(slotOf.get(a)));
+            return res != 0 ? res : a.compareTo(b);
+        });
+        LinkedHashMap<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < n && i < tracked.size(); i++) {
+            String name = tracked.get(i);
+            result.put(name, heap.keyOf(slotOf.get(name)));
+        }
+        return result;
+    }
+
+    /**
+     * @return The total number of incidents counted.
+     */
+    public synchronized long total() {
+        return total;
+    }
+
+    /**
+     * @return The most any estimate should exceed the true count by, with probability 1 - delta.
+     */
+    public synchronized double errorBound() {
+        return Math.E / width * total;
+    }
+
+    /**
+     * @return The number of hackers tracked.
+     */
+    public int k() {
+        return k;
+    }
+
+    /**
+     * @return The epsilon the sketch was built with.
+     */
+    public double epsilon() {
+        return epsilon;
+    }
+
+    /**
+     * @return The delta the sketch was built with.
+     */
+    public double delta() {
+        return delta;
+    }
+}
@@ -0,0 +1,445 @@
+package investigation;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/*
+ * An append-only write-ahead log of directory mutations (addHacker, remove and
+ * mergeHackers), so a restart can recover everything since the last checkpoint.
+ * Turning on a mode that changes what later mutations do (de-duplication, the
+ * Bloom filter, off-heap incidents, windowed ranking, approximate mode) is
+ * logged too, in order, so replay applies each mutation under the same modes.
+ * The file is a header followed by frames:
+ *
+ *   magic, version
+ *   per frame: payload length, CRC32 of sequence and payload, sequence number, payload
+ *
+ * Sequence numbers increase by one per mutation and carry on across checkpoints;
+ * a checkpoint snapshot records the last sequence it contains, and recovery
+ * replays only later frames. A frame cut short or failing its CRC marks the end
+ * of the log, and is cut off when the log is reopened.
+ *
+ * append() only copies the frame into a memory buffer. A background thread
+ * group-commits the buffer: it writes and forces everything appended in the
+ * last FLUSH_INTERVAL_MILLIS with a single write and fsync. A crash can
+ * therefore lose at most that interval of mutations; sync() waits until
+ * everything appended so far is on disk.
+ */
+public class MutationLog implements AutoCloseable {
+
+    private static final int MAGIC = 0x43434957; // "CCIW"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int FRAME_HEADER_BYTES = 16;
+
+    static final long FLUSH_INTERVAL_MILLIS = 2;
+
+    // Mutation types, the first byte of every payload
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte MERGE = 3;
+    private static final byte DEDUPLICATE = 4;
+    private static final byte BLOOM_FILTER = 5;
+    private static final byte OFF_HEAP = 6;
+    private static final byte WINDOW = 7;
+    private static final byte ADVANCE_WINDOW = 8;
+    private static final byte APPROXIMATE = 9;
+
+    private final String file;
+    private final FileChannel channel;
+    private final Thread flusher;
+
+    // Guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private long lastSequence;
+    private long durableSequence;
+    private boolean syncRequested = false;
+    private boolean closed = false;
+    private IOException failure;
+
+    private int replayed = 0;
+
+    private MutationLog(String file, FileChannel channel, long lastSequence) {
+        this.file = file;
+        this.channel = channel;
+        this.lastSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        flusher = new Thread(this::flushLoop, "mutation-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Opens a log for appending, first replaying into the investigation every
+     * mutation after the given checkpoint. The file is created if missing.
+     *
+     * @param file
+     * @param checkpointSequence The last sequence number already in the investigation
+     * @param investigation Must not have a mutation log attached while replaying
+     * @return The open log.
+     */
+    public static MutationLog open(String file, long checkpointSequence, CyberCrimeInvestigation investigation) {
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long lastSequence = checkpointSequence;
+            int replayed = 0;
+            if (channel.size() == 0) {
+                writeHeader(channel);
+            } else {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        Channels.newInputStream(channel.position(0)), 1 << 16));
+                if (in.readInt() != MAGIC) {
+                    throw new IllegalArgumentException(file + " is not a mutation log");
+                }
+                int version = in.readInt();
+                if (version != VERSION) {
+                    throw new IllegalArgumentException("Unsupported mutation log version " + version);
+                }
+                long validLength = HEADER_BYTES;
+                CRC32 crc = new CRC32();
+                while (true) {
+                    byte[] payload;
+                    long sequence;
+                    try {
+                        int length = in.readInt();
+                        int checksum = in.readInt();
+                        sequence = in.readLong();
+                        if (length <= 0 || validLength + FRAME_HEADER_BYTES + length > channel.size()) {
+                            break;
+                        }
+                        payload = new byte[length];
+                        in.readFully(payload);
+                        crc.reset();
+                        crc.update(ByteBuffer.allocate(8).putLong(0, sequence).array());
+                        crc.update(payload);
+                        if ((int) crc.getValue() != checksum) {
+                            break;
+                        }
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    validLength += FRAME_HEADER_BYTES + payload.length;
+                    if (sequence > checkpointSequence) {
+                        apply(payload, investigation);
+                        replayed++;
+                    }
+                    lastSequence = Math.max(lastSequence, sequence);
+                }
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+            channel.position(channel.size());
+            MutationLog log = new MutationLog(file, channel, lastSequence);
+            log.replayed = replayed;
+            return log;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open mutation log " + file, e);
+        }
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    private static void apply(byte[] payload, CyberCrimeInvestigation investigation) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        switch (type) {
+            case ADD:
+                Hacker hacker = new Hacker(in.readUTF());
+                for (int n = in.readInt(); n > 0; n--) {
+                    hacker.addIncident(new Incident(in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(),
+                            in.readLong(), in.readLong(), in.readLong(), in.readLong()));
+                }
+                investigation.addHacker(hacker);
+                break;
+            case REMOVE:
+                investigation.remove(in.readUTF());
+                break;
+            case MERGE:
+                investigation.mergeHackers(in.readUTF(), in.readUTF());
+                break;
+            case DEDUPLICATE:
+                investigation.enableDeduplication();
+                break;
+            case BLOOM_FILTER:
+                investigation.enableBloomFilter();
+                break;
+            case OFF_HEAP:
+                investigation.enableOffHeapIncidents();
+                break;
+            case WINDOW:
+                investigation.enableWindowedRanking(in.readInt());
+                break;
+            case ADVANCE_WINDOW:
+                investigation.advanceWindowTo(in.readInt());
+                break;
+            case APPROXIMATE:
+                investigation.enableApproximateMode(in.readInt(), in.readDouble(), in.readDouble());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mutation type " + type);
+        }
+    }
+
+    /**
+     * Encodes an addHacker call.
+     *
+     * @param name
+     * @param incidents The incidents being added
+     * @return The payload to append.
+     */
+    static byte[] encodeAdd(String name, Collection<Incident> incidents) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + 64 * incidents.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(ADD);
+            out.writeUTF(name);
+            out.writeInt(incidents.size());
+            for (Incident incident : incidents) {
+                out.writeUTF(incident.getOS());
+                out.writeUTF(incident.getWebServer());
+                out.writeInt(incident.getEpochDay());
+                out.writeUTF(incident.getLocation());
+                out.writeLong(incident.getIPHashHigh());
+                out.writeLong(incident.getIPHashLow());
+                out.writeLong(incident.getURLHashHigh());
+                out.writeLong(incident.getURLHashLow());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Cannot happen writing to memory
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes a remove call.
+     */
+    static byte[] encodeRemove(String name) {
+        return encodeNames(REMOVE, name);
+    }
+
+    /**
+     * Encodes a mergeHackers call.
+     */
+    static byte[] encodeMerge(String hacker1, String hacker2) {
+        return encodeNames(MERGE, hacker1, hacker2);
+    }
+
+    /**
+     * Encodes enableDeduplication, enableBloomFilter or enableOffHeapIncidents.
+     * 
+     * @param mode "deduplicate", "bloom" or "offHeap"
+     */
+    static byte[] encodeMode(String mode) {
+        switch (mode) {
+            case "deduplicate": return new byte[] {DEDUPLICATE};
+            case "bloom": return new byte[] {BLOOM_FILTER};
+            case "offHeap": return new byte[] {OFF_HEAP};
+            default: throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    /**
+     * Encodes an enableWindowedRanking call.
+     */
+    static byte[] encodeWindow(int days) {
+        return ByteBuffer.allocate(5).put(WINDOW).putInt(days).array();
+    }
+
+    /**
+     * Encodes an advanceWindowTo call.
+     */
+    static byte[] encodeAdvanceWindow(int epochDay) {
+        return ByteBuffer.allocate(5).put(ADVANCE_WINDOW).putInt(epochDay).array();
+    }
+
+    /**
+     * Encodes an enableApproximateMode call.
+     */
+    static byte[] encodeApproximate(int k, double epsilon, double delta) {
+        return ByteBuffer.allocate(21).put(APPROXIMATE).putInt(k).putDouble(epsilon).putDouble(delta).array();
+    }
+
+    private static byte[] encodeNames(byte type, String... names) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * names.length);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(type);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Appends an encoded mutation. Returns once the frame is buffered; it
+     * reaches the disk with the next group commit.
+     *
+     * @param payload
+     * @return The sequence number given to the mutation.
+     */
+    public synchronized long append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Mutation log " + file + " is closed");
+        }
+        long sequence = ++lastSequence;
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(0, sequence).array());
+        crc.update(payload);
+        int needed = FRAME_HEADER_BYTES + payload.length;
+        if (pending.remaining() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.putInt(payload.length).putInt((int) crc.getValue()).putLong(sequence).put(payload);
+        return sequence;
+    }
+
+    private void flushLoop() {
+        ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+        while (true) {
+            long sequence;
+            synchronized (this) {
+                if (!closed && !syncRequested) {
+                    try {
+                        wait(FLUSH_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (pending.position() == 0) {
+                    syncRequested = false;
+                    notifyAll();
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                ByteBuffer full = pending;
+                pending = writing.clear();
+                writing = full;
+                sequence = lastSequence;
+            }
+            writing.flip();
+            IOException error = null;
+            try {
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                notifyAll();
+                if (error != null) {
+                    failure = error;
+                    closed = true;
+                    return;
+                }
+                durableSequence = sequence;
+            }
+        }
+    }
+
+    /**
+     * Waits until every mutation appended so far is on disk.
+     */
+    public synchronized void sync() {
+        long target = lastSequence;
+        while (durableSequence < target && failure == null && flusher.isAlive()) {
+            syncRequested = true;
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Could not write mutation log " + file, failure);
+        }
+    }
+
+    /**
+     * Drops every frame from the log once a checkpoint holding all of them is
+     * safely on disk. No mutation may be appended while this runs.
+     */
+    synchronized void truncate() {
+        sync();
+        try {
+            channel.truncate(HEADER_BYTES);
+            channel.position(HEADER_BYTES);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not truncate mutation log " + file, e);
+        }
+    }
+
+    /**
+     * @return The sequence number of the last mutation appended.
+     */
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return The number of mutations replayed when the log was opened.
+     */
+    public int replayed() {
+        return replayed;
+    }
+
+    /**
+     * Writes out everything appended so far and closes the file. The file is
+     * closed even if the flusher already stopped on a write error, which is
+     * then rethrown.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                throw new UncheckedIOException("Could not close mutation log " + file, e);
+            }
+            failure.addSuppressed(e);
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Could not write mutation log " + file, failure);
+        }
+    }
+}
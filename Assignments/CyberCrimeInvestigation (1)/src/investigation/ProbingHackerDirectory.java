@@ -0,0 +1,254 @@
+package investigation;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/*
+ * An open addressing (linear probing) hacker directory. Hackers live directly in
+ * a flat array with their hash codes cached in a parallel int[], so a lookup
+ * compares ints along a contiguous run of slots and only calls String.equals on
+ * a hash match. No HNode is allocated per hacker.
+ *
+ * Removal uses backward-shift deletion, so there are no tombstones and probe
+ * runs stay as short as the load factor allows.
+ */
+public class ProbingHackerDirectory implements HackerDirectory {
+
+    private Hacker[] slots;
+    private int[] hashes;
+    private int mask;
+    private int numHackers = 0;
+
+    public ProbingHackerDirectory() {
+        this(16);
+    }
+
+    /**
+     * @param expectedHackers Number of hackers the table should hold without resizing.
+     */
+    public ProbingHackerDirectory(int expectedHackers) {
+        int capacity = 16;
+        while (capacity / 2 <= expectedHackers) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        slots = new Hacker[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Spreads the high bits of String.hashCode() into the low bits used by the mask.
+     */
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return The slot holding the given name, or -1 if it is not in the table.
+     */
+    private int find(String name, int h) {
+        for (int i = h & mask; slots[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && slots[i].getName().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public Hacker add(Hacker toAdd) {
+        int h = hash(toAdd.getName());
+        int i = h & mask;
+        while (slots[i] != null) {
+            if (hashes[i] == h && slots[i].getName().equals(toAdd.getName())) {
+                slots[i].addIncidents(toAdd.getIncidents());
+                return slots[i];
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = toAdd;
+        hashes[i] = h;
+        numHackers++;
+
+        if (numHackers >= slots.length / 2) {
+            resize();
+        }
+        return toAdd;
+    }
+
+    /**
+     * Doubles the table. Cached hashes are reused, so names are never rehashed.
+     */
+    private void resize() {
+        resize(slots.length * 2);
+    }
+
+    private void resize(int capacity) {
+        Hacker[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        allocate(capacity);
+
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (slots[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = oldSlots[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    public Hacker search(String toSearch) {
+        int i = find(toSearch, hash(toSearch));
+        return i < 0 ? null : slots[i];
+    }
+
+    public Hacker remove(String toRemove) {
+        int i = find(toRemove, hash(toRemove));
+        if (i < 0) {
+            return null;
+        }
+        Hacker removed = slots[i];
+
+        // Shift later members of the probe run back into the hole
+        int hole = i;
+        for (int j = (i + 1) & mask; slots[j] != null; j = (j + 1) & mask) {
+            int home = hashes[j] & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                slots[hole] = slots[j];
+                hashes[hole] = hashes[j];
+                hole = j;
+            }
+        }
+        slots[hole] = null;
+        hashes[hole] = 0;
+
+        numHackers--;
+        return removed;
+    }
+
+    public int size() {
+        return numHackers;
+    }
+
+    public void ensureCapacity(int numHackers) {
+        int capacity = slots.length;
+        while (capacity / 2 <= numHackers) {
+            capacity <<= 1;
+        }
+        if (capacity != slots.length) {
+            resize(capacity);
+        }
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public HNode[] toChains() {
+        HNode[] chains = new HNode[slots.length];
+        for (Hacker hacker : slots) {
+            if (hacker != null) {
+                int index = HackerDirectory.indexFor(hacker.getName(), chains.length);
+                HNode node = new HNode(hacker);
+                node.setNext(chains[index]);
+                chains[index] = node;
+            }
+        }
+        return chains;
+    }
+
+    public Iterator<Hacker> iterator() {
+        return new Iterator<Hacker>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < slots.length && slots[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            public boolean hasNext() {
+                return next < slots.length;
+            }
+
+            public Hacker next() {
+                if (next >= slots.length) {
+                    throw new NoSuchElementException();
+                }
+                Hacker hacker = slots[next];
+                next = advance(next + 1);
+                return hacker;
+            }
+        };
+    }
+
+    /**
+     * Splits the slot array by range, skipping empty slots.
+     */
+    @Override
+    public Spliterator<Hacker> spliterator() {
+        return new SlotSpliterator(slots, 0, slots.length, numHackers);
+    }
+
+    private static class SlotSpliterator implements Spliterator<Hacker> {
+        private final Hacker[] slots;
+        private int next;
+        private final int fence;
+        private long estimate;
+
+        SlotSpliterator(Hacker[] slots, int next, int fence, long estimate) {
+            this.slots = slots;
+            this.next = next;
+            this.fence = fence;
+            this.estimate = estimate;
+        }
+
+        public boolean tryAdvance(Consumer<? super Hacker> action) {
+            while (next < fence) {
+                Hacker hacker = slots[next++];
+                if (hacker != null) {
+                    action.accept(hacker);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void forEachRemaining(Consumer<? super Hacker> action) {
+            for (; next < fence; next++) {
+                if (slots[next] != null) {
+                    action.accept(slots[next]);
+                }
+            }
+        }
+
+        public Spliterator<Hacker> trySplit() {
+            int mid = (next + fence) >>> 1;
+            if (mid <= next) {
+                return null;
+            }
+            estimate >>>= 1;
+            SlotSpliterator prefix = new SlotSpliterator(slots, next, mid, estimate);
+            next = mid;
+            return prefix;
+        }
+
+        public long estimateSize() {
+            return estimate;
+        }
+
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package investigation;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Maps the strings of a small vocabulary (operating systems, web servers,
+ * locations, ...) to dense int codes, starting at 0. Each distinct string is
+ * stored once, and code lookups are a plain array read. Safe to share between
+ * threads: lookups never block, and only the first sighting of a new symbol
+ * takes a lock.
+ */
+public class SymbolTable {
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[16];
+    private int size = 0;
+
+    /**
+     * @param symbol
+     * @return The code for the symbol, assigning the next free code if it is new.
+     */
+    public int intern(String symbol) {
+        Integer code = codes.get(symbol);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(symbol);
+            if (code != null) {
+                return code;
+            }
+            String[] current = symbols;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = symbol;
+            symbols = current;
+            codes.put(symbol, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @param symbol
+     * @return The code for the symbol, or -1 if it has never been interned.
+     */
+    public int lookup(String symbol) {
+        Integer code = codes.get(symbol);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @param code A code returned by intern()
+     * @return The symbol with the given code.
+     */
+    public String symbol(int code) {
+        return symbols[code];
+    }
+
+    /**
+     * @return The number of distinct symbols.
+     */
+    public int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,280 @@
+package investigation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/*
+ * A most-wanted ranking over the last windowDays days only. The window ends at
+ * the newest incident date seen, or a later day it is advanced to.
+ *
+ * Each hacker has a ring of windowDays day buckets (slot = day mod windowDays)
+ * counting its incidents per day, plus their running total. Every bucket that
+ * is started is also put on the expiry list of its day, so when the window
+ * slides past a day only the buckets on that day's list are visited: each
+ * bucket is counted once and expired once, and incident lists are never
+ * re-read. Totals are ranked in an IndexMaxPQ keyed by (count, name), the
+ * order Hacker.compareTo uses, and the top n are read off its heap in order.
+ */
+public class WindowedMostWanted {
+
+    private static final int NO_DAY = Integer.MIN_VALUE;
+
+    private static final class Rank implements Comparable<Rank> {
+        final int count;
+        final String name;
+
+        Rank(int count, String name) {
+            this.count = count;
+            this.name = name;
+        }
+
+        public int compareTo(Rank b) {
+            int res = Integer.compare(this.count, b.count);
+            return res != 0 ? res : this.name.compareTo(b.name);
+        }
+    }
+
+    private final int windowDays;
+    private int today = NO_DAY;   // Last day in the window
+
+    // Hackers are numbered by a handle, reused once a hacker leaves
+    private final HashMap<String, Integer> handles = new HashMap<>();
+    private Hacker[] hackers = new Hacker[16];
+    private int[] totals = new int[16];
+    private int numHandles = 0;
+    private int[] freeHandles = new int[16];
+    private int numFree = 0;
+
+    // Bucket (handle, slot) is at handle * windowDays + slot
+    private int[] bucketDays;
+    private int[] bucketCounts;
+
+    // Handles whose bucket in each slot was started, for that slot's current day
+    private final int[][] expiring;
+    private final int[] numExpiring;
+
+    private final IndexMaxPQ<Rank> ranking = new IndexMaxPQ<>(16);
+
+    /**
+     * @param windowDays Length of the window, e.g. 7 or 30
+     */
+    public WindowedMostWanted(int windowDays) {
+        if (windowDays < 1) {
+            throw new IllegalArgumentException("Window must be at least one day: " + windowDays);
+        }
+        this.windowDays = windowDays;
+        bucketDays = new int[16 * windowDays];
+        bucketCounts = new int[16 * windowDays];
+        Arrays.fill(bucketDays, NO_DAY);
+        expiring = new int[windowDays][4];
+        numExpiring = new int[windowDays];
+    }
+
+    private int handleOf(Hacker hacker) {
+        Integer handle = handles.get(hacker.getName());
+        if (handle == null) {
+            if (numFree > 0) {
+                handle = freeHandles[--numFree];
+            } else {
+                if (numHandles == hackers.length) {
+                    int capacity = numHandles * 2;
+                    hackers = Arrays.copyOf(hackers, capacity);
+                    totals = Arrays.copyOf(totals, capacity);
+                    bucketDays = Arrays.copyOf(bucketDays, capacity * windowDays);
+                    bucketCounts = Arrays.copyOf(bucketCounts, capacity * windowDays);
+                    Arrays.fill(bucketDays, numHandles * windowDays, bucketDays.length, NO_DAY);
+                }
+                handle = numHandles++;
+            }
+            handles.put(hacker.getName(), handle);
+        }
+        hackers[handle] = hacker;
+        return handle;
+    }
+
+    /**
+     * Counts the incidents of a hacker. Incidents dated after the window move
+     * it forward; those dated before it are ignored.
+     *
+     * @param hacker The hacker as stored in the directory
+     * @param incidents The incidents being added
+     */
+    public synchronized void add(Hacker hacker, Iterable<Incident> incidents) {
+        int handle = handleOf(hacker);
+        for (Incident incident : incidents) {
+            int day = incident.getEpochDay();
+            if (today == NO_DAY || day > today) {
+                advance(day);
+            }
+            if (day <= today - windowDays) {
+                continue;
+            }
+            int slot = Math.floorMod(day, windowDays);
+            int bucket = handle * windowDays + slot;
+            if (bucketDays[bucket] != day) {
+                bucketDays[bucket] = day;
+                bucketCounts[bucket] = 0;
+                expireLater(slot, handle);
+            }
+            bucketCounts[bucket]++;
+            totals[handle]++;
+        }
+        rank(handle);
+    }
+
+    private void expireLater(int slot, int handle) {
+        if (numExpiring[slot] == expiring[slot].length) {
+            expiring[slot] = Arrays.copyOf(expiring[slot], numExpiring[slot] * 2);
+        }
+        expiring[slot][numExpiring[slot]++] = handle;
+    }
+
+    /**
+     * Moves the end of the window forward to the given day, expiring the days
+     * that fall out of it. Moving it backwards does nothing.
+     *
+     * @param day An epoch day
+     */
+    public synchronized void advanceTo(int day) {
+        if (today == NO_DAY || day > today) {
+            advance(day);
+        }
+    }
+
+    private void advance(int day) {
+        if (today != NO_DAY) {
+            // Days today - windowDays + 1 .. day - windowDays leave the window
+            int last = Math.min(today, day - windowDays);
+            for (int d = today - windowDays + 1; d <= last; d++) {
+                expire(d);
+            }
+        }
+        today = day;
+    }
+
+    private void expire(int day) {
+        int slot = Math.floorMod(day, windowDays);
+        for (int i = 0; i < numExpiring[slot]; i++) {
+            int handle = expiring[slot][i];
+            int bucket = handle * windowDays + slot;
+            // A bucket may be listed again after its hacker left and the handle was reused
+            if (bucketDays[bucket] == day) {
+                totals[handle] -= bucketCounts[bucket];
+                bucketDays[bucket] = NO_DAY;
+                bucketCounts[bucket] = 0;
+                rank(handle);
+            }
+        }
+        numExpiring[slot] = 0;
+    }
+
+    private void rank(int handle) {
+        if (totals[handle] > 0) {
+            Rank rank = new Rank(totals[handle], hackers[handle].getName());
+            if (ranking.contains(handle)) {
+                ranking.changeKey(handle, rank);
+            } else {
+                ranking.insert(handle, rank);
+            }
+        } else if (ranking.contains(handle)) {
+            ranking.delete(handle);
+        }
+    }
+
+    /**
+     * Forgets a hacker that is leaving the directory.
+     *
+     * @param hacker
+     */
+    public synchronized void remove(Hacker hacker) {
+        Integer handle = handles.remove(hacker.getName());
+        if (handle == null) {
+            return;
+        }
+        release(handle);
+    }
+
+    private void release(int handle) {
+        if (ranking.contains(handle)) {
+            ranking.delete(handle);
+        }
+        Arrays.fill(bucketDays, handle * windowDays, (handle + 1) * windowDays, NO_DAY);
+        Arrays.fill(bucketCounts, handle * windowDays, (handle + 1) * windowDays, 0);
+        totals[handle] = 0;
+        hackers[handle] = null;
+        if (numFree == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, numFree * 2);
+        }
+        freeHandles[numFree++] = handle;
+    }
+
+    /**
+     * Moves a merged hacker's window counts to the hacker it was merged into,
+     * in O(windowDays).
+     *
+     * @param keep The surviving hacker
+     * @param merged The hacker merged into it
+     */
+    public synchronized void merge(Hacker keep, Hacker merged) {
+        Integer from = handles.remove(merged.getName());
+        if (from == null) {
+            return;
+        }
+        int to = handleOf(keep);
+        for (int slot = 0; slot < windowDays; slot++) {
+            int source = from * windowDays + slot;
+            int day = bucketDays[source];
+            if (day == NO_DAY) {
+                continue;
+            }
+            int target = to * windowDays + slot;
+            if (bucketDays[target] != day) {
+                bucketDays[target] = day;
+                bucketCounts[target] = 0;
+                expireLater(slot, to);
+            }
+            bucketCounts[target] += bucketCounts[source];
+            totals[to] += bucketCounts[source];
+        }
+        release(from);
+        rank(to);
+    }
+
+    /**
+     * @param n
+     * @return The n hackers with the most incidents in the window, most first.
+     */
+    public synchronized ArrayList<Hacker> top(int n) {
+        ArrayList<Hacker> top = new ArrayList<>();
+        Iterator<Integer> handlesByRank = ranking.iterator();
+        while (top.size() < n && handlesByRank.hasNext()) {
+            top.add(hackers[handlesByRank.next()]);
+        }
+        return top;
+    }
+
+    /**
+     * @param hacker
+     * @return The hacker's number of incidents in the window.
+     */
+    public synchronized int count(Hacker hacker) {
+        Integer handle = handles.get(hacker.getName());
+        return handle == null ? 0 : totals[handle];
+    }
+
+    /**
+     * @return The length of the window in days.
+     */
+    public int days() {
+        return windowDays;
+    }
+
+    /**
+     * @return The last epoch day in the window, or Integer.MIN_VALUE before any incident.
+     */
+    public synchronized int today() {
+        return today;
+    }
+}
@@ -0,0 +1,180 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class BloomFilterTest {
+   /*
+    * Checks the Bloom filter never hides a stored hacker or alias, through
+    * adds, merges, removes and the rebuilds as the directory grows, and that
+    * the false positive rate it reports matches the rate measured on names
+    * that were never added.
+    */
+
+   private static Hacker hacker(String name) {
+      Hacker hacker = new Hacker(name);
+      String hash = String.format("%032x", name.hashCode());
+      hacker.addIncident(new Incident("Linux", "Apache", "2014-01-01", "Mars", hash, hash));
+      return hacker;
+   }
+
+   // Fraction of never-added names the filter claims it might contain
+   private static double measuredRate(BloomFilter filter, int names) {
+      int positives = 0;
+      for (int i = 0; i < names; i++) {
+         if (filter.mightContain("Stranger" + i)) {
+            positives++;
+         }
+      }
+      return positives / (double) names;
+   }
+
+   @Test
+   public void testAddedNamesAreFound() {
+      BloomFilter filter = new BloomFilter(1000, 0.01);
+      for (int i = 0; i < 1000; i++) {
+         filter.add("Hacker" + i);
+      }
+      for (int i = 0; i < 1000; i++) {
+         assertTrue(filter.mightContain("Hacker" + i));
+      }
+      // A name whose bits were all set already is not counted, as with a false positive
+      int added = filter.numNames();
+      assertTrue(added > 990 && added <= 1000);
+      filter.add("Hacker0");
+      assertEquals(added, filter.numNames());
+   }
+
+   @Test
+   public void testDefinitelyAbsent() {
+      BloomFilter filter = new BloomFilter(100, 0.01);
+      for (int i = 0; i < 100; i++) {
+         assertFalse(filter.mightContain("Hacker" + i));
+      }
+      filter.add("Hacker0");
+      assertTrue(filter.mightContain("Hacker0"));
+      // "Aa" and "BB" share a String.hashCode(), but not the filter's hash
+      filter.add("Aa");
+      assertFalse(filter.mightContain("BB"));
+
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      investigation.initializeTable("hackerTest.in");
+      investigation.enableBloomFilter();
+      assertNull(investigation.search("Nobody"));
+      assertNotNull(investigation.search("Hacker6879"));
+   }
+
+   @Test
+   public void testReportedRateMatchesMeasured() {
+      BloomFilter filter = new BloomFilter(10000, 0.01);
+      for (int i = 0; i < 10000; i++) {
+         filter.add("Hacker" + i);
+      }
+      double reported = filter.falsePositiveRate();
+      assertEquals(0.01, reported, 0.002);
+      assertEquals(reported, measuredRate(filter, 100000), 0.003);
+
+      // Half full, the rate is far lower
+      BloomFilter half = new BloomFilter(20000, 0.01);
+      for (int i = 0; i < 10000; i++) {
+         half.add("Hacker" + i);
+      }
+      assertTrue(half.falsePositiveRate() < 0.001);
+      assertEquals(half.falsePositiveRate(), measuredRate(half, 100000), 0.001);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsBadRate() {
+      new BloomFilter(100, 1);
+   }
+
+   @Test
+   public void testNoFalseNegativesAfterAddMergeRemove() {
+      for (String type : new String[] { "chained", "probing", "incremental", "concurrent" }) {
+         CyberCrimeInvestigation investigation = new CyberCrimeInvestigation(type);
+         investigation.enableBloomFilter();
+         assertEquals(0, investigation.getBloomFalsePositiveRate(), 0);
+         // Grows the directory through several resizes, each rebuilding the filter
+         for (int i = 0; i < 5000; i++) {
+            investigation.addHacker(hacker("Hacker" + i));
+         }
+         for (int i = 0; i < 5000; i += 10) {
+            assertTrue(investigation.mergeHackers("Hacker" + i, "Hacker" + (i + 1)));
+         }
+         for (int i = 2; i < 5000; i += 10) {
+            assertNotNull(investigation.remove("Hacker" + i));
+         }
+         // Re-added after removal, and added after the merges
+         for (int i = 2; i < 5000; i += 20) {
+            investigation.addHacker(hacker("Hacker" + i));
+         }
+         for (int i = 5000; i < 6000; i++) {
+            investigation.addHacker(hacker("Hacker" + i));
+         }
+
+         for (int i = 0; i < 6000; i++) {
+            String name = "Hacker" + i;
+            boolean removed = i < 5000 && i % 10 == 2 && i % 20 != 2;
+            assertEquals(type + " " + name, removed, investigation.search(name) == null);
+         }
+         // Merged-away names resolve to the hacker they were merged into
+         for (int i = 0; i < 5000; i += 10) {
+            assertSame(investigation.search("Hacker" + i), investigation.search("Hacker" + (i + 1)));
+         }
+         assertNull(investigation.search("Stranger"));
+         assertTrue(type, investigation.getBloomFalsePositiveRate() < 0.01);
+      }
+   }
+
+   @Test
+   public void testRebuiltWhenDirectoryResizes() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      investigation.enableBloomFilter();
+      // Sized for the empty directory, the filter would be long full by now
+      for (int i = 0; i < 20000; i++) {
+         investigation.addHacker(hacker("Hacker" + i));
+      }
+      // Rebuilt at each resize, it is never more than about half full
+      assertTrue(investigation.getBloomFalsePositiveRate() < 0.001);
+   }
+
+   @Test
+   public void testConcurrentAddsAreNeverHidden() throws InterruptedException {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation("concurrent");
+      investigation.enableBloomFilter();
+      ConcurrentLinkedQueue<String> hidden = new ConcurrentLinkedQueue<>();
+      ArrayList<Thread> threads = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+         int thread = t;
+         threads.add(new Thread(() -> {
+            for (int i = 0; i < 5000; i++) {
+               String name = "Hacker" + thread + "_" + i;
+               investigation.addHacker(hacker(name));
+               // Searched right away, possibly while another thread rebuilds the filter
+               if (investigation.search(name) == null) {
+                  hidden.add(name);
+               }
+            }
+         }));
+      }
+      for (Thread thread : threads) {
+         thread.start();
+      }
+      for (Thread thread : threads) {
+         thread.join();
+      }
+      assertTrue(hidden.toString(), hidden.isEmpty());
+      for (int t = 0; t < 4; t++) {
+         for (int i = 0; i < 5000; i++) {
+            assertNotNull(investigation.search("Hacker" + t + "_" + i));
+         }
+      }
+      assertEquals(20000, investigation.numHackers());
+   }
+}
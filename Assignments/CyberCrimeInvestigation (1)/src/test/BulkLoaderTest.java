@@ -0,0 +1,103 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import investigation.*;
+
+public class BulkLoaderTest {
+   /*
+    * Checks that loading a file in parallel shards gives the same hackers,
+    * with their incidents in the same order, as initializeTable reading it
+    * one record at a time.
+    */
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static void assertSameAsInitializeTable(String inputFile, String bulkFile) {
+      CyberCrimeInvestigation expected = new CyberCrimeInvestigation();
+      expected.initializeTable(inputFile);
+      CyberCrimeInvestigation loaded = new CyberCrimeInvestigation();
+      loaded.bulkLoadTable(bulkFile);
+      SnapshotTest.assertSameDirectory(expected, loaded);
+   }
+
+   // Writes the lines of an input file to a temporary file, joined by the given line break
+   private String rewrite(String inputFile, String lineBreak, String ending) throws IOException {
+      List<String> lines = Files.readAllLines(Paths.get(inputFile), StandardCharsets.UTF_8);
+      File file = folder.newFile();
+      Files.write(file.toPath(), (String.join(lineBreak, lines) + ending).getBytes(StandardCharsets.UTF_8));
+      return file.getPath();
+   }
+
+   @Test
+   public void testSameAsInitializeTable() {
+      for (String inputFile : new String[] { "hackerTest.in", "hacker1.in", "hacker4.in" }) {
+         assertSameAsInitializeTable(inputFile, inputFile);
+      }
+   }
+
+   @Test
+   public void testCountsRecords() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      // hacker4.in has no line break after its last record
+      assertEquals(3861, new BulkLoader().load("hacker4.in", investigation));
+      assertEquals(7, new BulkLoader(new ForkJoinPool(1)).load("hackerTest.in", investigation));
+   }
+
+   @Test
+   public void testCrlfAndTrailingBlankLines() throws IOException {
+      CyberCrimeInvestigation expected = new CyberCrimeInvestigation();
+      expected.initializeTable("hacker1.in");
+      for (String ending : new String[] { "", "\r\n", "\r\n\r\n\r\n", "\r\n \t\r\n" }) {
+         CyberCrimeInvestigation loaded = new CyberCrimeInvestigation();
+         loaded.bulkLoadTable(rewrite("hacker1.in", "\r\n", ending));
+         SnapshotTest.assertSameDirectory(expected, loaded);
+      }
+      assertSameAsInitializeTable("hacker1.in", rewrite("hacker1.in", "\n", "\n\n\n"));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testTruncatedLastRecord() throws IOException {
+      List<String> lines = Files.readAllLines(Paths.get("hackerTest.in"), StandardCharsets.UTF_8);
+      File file = folder.newFile();
+      // The last record loses its date and URL hash
+      Files.write(file.toPath(), lines.subList(0, lines.size() - 2), StandardCharsets.UTF_8);
+      new CyberCrimeInvestigation().bulkLoadTable(file.getPath());
+   }
+
+   @Test
+   public void testHackersSpanningShards() throws IOException {
+      // Every 5th record is one hacker's, so its incidents fall in every shard
+      StringBuilder sb = new StringBuilder();
+      for (int record = 0; record < 10000; record++) {
+         String name = record % 5 == 0 ? "Everywhere" : "Hacker" + record % 997;
+         String hash = String.format("%032x", record);
+         String date = String.format("20%02d-%02d-%02d", 10 + record % 10, 1 + record % 12, 1 + record % 28);
+         sb.append(name).append('\n').append(hash).append("\nMars\nLinux\nApache\n")
+               .append(date).append('\n').append(hash).append('\n');
+      }
+      File file = folder.newFile();
+      Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+      assertSameAsInitializeTable(file.getPath(), file.getPath());
+
+      CyberCrimeInvestigation loaded = new CyberCrimeInvestigation();
+      assertEquals(10000, new BulkLoader(new ForkJoinPool(4)).load(file.getPath(), loaded));
+      List<Incident> incidents = loaded.search("Everywhere").getIncidents();
+      assertEquals(2000, incidents.size());
+      for (int i = 0; i < incidents.size(); i++) {
+         assertEquals(String.format("%032x", i * 5), incidents.get(i).getIPHash());
+      }
+   }
+}
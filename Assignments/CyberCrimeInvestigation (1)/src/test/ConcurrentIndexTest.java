@@ -0,0 +1,110 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class ConcurrentIndexTest {
+   /*
+    * Adds, removes and merges hackers from several threads while another
+    * reads the most wanted board and the location index, then checks both
+    * against a recount of the directory.
+    */
+
+   private static final String[] LOCATIONS = { "Mars", "Venus", "Europa", "Titan" };
+
+   private static Incident incident(Random random) {
+      String hash = String.format("%032x", random.nextInt(1000));
+      return new Incident("Linux", "Apache", "2014-01-01", LOCATIONS[random.nextInt(LOCATIONS.length)], hash, hash);
+   }
+
+   private static ArrayList<String> names(Iterable<Hacker> hackers) {
+      ArrayList<String> names = new ArrayList<>();
+      for (Hacker hacker : hackers) {
+         names.add(hacker.getName());
+      }
+      return names;
+   }
+
+   @Test
+   public void testIndexesMatchDirectory() throws InterruptedException {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation("concurrent");
+      ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+      ArrayList<Thread> writers = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+         Random random = new Random(t);
+         writers.add(new Thread(() -> {
+            try {
+               for (int step = 0; step < 5000; step++) {
+                  // Threads share names, so they also change the same hackers
+                  String name = "Hacker" + random.nextInt(200);
+                  int op = random.nextInt(20);
+                  if (op < 16) {
+                     Hacker hacker = new Hacker(name);
+                     hacker.addIncident(incident(random));
+                     investigation.addHacker(hacker);
+                  } else if (op < 18) {
+                     investigation.remove(name);
+                  } else {
+                     investigation.mergeHackers(name, "Hacker" + random.nextInt(200));
+                  }
+               }
+            } catch (Throwable e) {
+               errors.add(e);
+            }
+         }));
+      }
+      Thread reader = new Thread(() -> {
+         try {
+            while (writers.get(0).isAlive()) {
+               // A hacker being re-ranked may be missed, but never listed twice
+               ArrayList<String> top = names(investigation.getNMostWanted(20));
+               assertEquals(top.toString(), top.size(), new TreeSet<>(top).size());
+               for (String location : LOCATIONS) {
+                  investigation.getHackersByLocation(location);
+               }
+            }
+         } catch (Throwable e) {
+            errors.add(e);
+         }
+      });
+      for (Thread writer : writers) {
+         writer.start();
+      }
+      reader.start();
+      for (Thread writer : writers) {
+         writer.join();
+      }
+      reader.join();
+      assertTrue(errors.toString(), errors.isEmpty());
+
+      ArrayList<Hacker> expected = new ArrayList<>();
+      for (Hacker hacker : investigation.hackers()) {
+         expected.add(hacker);
+      }
+      Collections.sort(expected, Collections.reverseOrder());
+      assertEquals(names(expected), names(investigation.getNMostWanted(Integer.MAX_VALUE)));
+
+      for (String location : LOCATIONS) {
+         TreeSet<String> at = new TreeSet<>();
+         for (Hacker hacker : expected) {
+            for (Incident incident : hacker.getIncidents()) {
+               if (incident.getLocation().equals(location)) {
+                  at.add(hacker.getName());
+               }
+            }
+         }
+         ArrayList<String> indexed = names(investigation.getHackersByLocation(location));
+         assertEquals(indexed.size(), new TreeSet<>(indexed).size());
+         assertEquals(location, at, new TreeSet<>(indexed));
+      }
+   }
+}
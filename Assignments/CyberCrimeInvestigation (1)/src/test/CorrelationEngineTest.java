@@ -0,0 +1,182 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class CorrelationEngineTest {
+   /*
+    * Runs the correlation engine on hackers built to share chosen IPs and
+    * URLs, and checks the merge candidates' scores and counts and the
+    * components against what those keys should give.
+    */
+
+   // Every other IP and URL is this hacker's own, so shares only the given ones
+   private static int unique = 1000000;
+
+   private static String hash(int n) {
+      return String.format("%032x", n);
+   }
+
+   private static void addIncident(Hacker hacker, int ip, int url) {
+      hacker.addIncident(new Incident("Linux", "Apache", "2014-01-01", "Mars", hash(ip), hash(url)));
+   }
+
+   private static Hacker hacker(String name, int[] ips, int[] urls) {
+      Hacker hacker = new Hacker(name);
+      for (int ip : ips) {
+         addIncident(hacker, ip, unique++);
+      }
+      for (int url : urls) {
+         addIncident(hacker, unique++, url);
+      }
+      addIncident(hacker, unique++, unique++);
+      return hacker;
+   }
+
+   private static String pair(MergeCandidate candidate) {
+      String a = candidate.getHacker1().getName();
+      String b = candidate.getHacker2().getName();
+      return a.compareTo(b) < 0 ? a + "+" + b : b + "+" + a;
+   }
+
+   private static HashMap<String, MergeCandidate> byPair(List<MergeCandidate> candidates) {
+      HashMap<String, MergeCandidate> pairs = new HashMap<>();
+      for (MergeCandidate candidate : candidates) {
+         assertNull(pairs.put(pair(candidate), candidate));
+      }
+      return pairs;
+   }
+
+   private static HashSet<String> names(List<Hacker> hackers) {
+      HashSet<String> names = new HashSet<>();
+      for (Hacker hacker : hackers) {
+         names.add(hacker.getName());
+      }
+      return names;
+   }
+
+   private static ArrayList<Hacker> hackers() {
+      ArrayList<Hacker> hackers = new ArrayList<>();
+      // A and B share IP 1 and URL 2; B and C share URL 3
+      hackers.add(hacker("A", new int[] { 1 }, new int[] { 2 }));
+      hackers.add(hacker("B", new int[] { 1 }, new int[] { 2, 3 }));
+      hackers.add(hacker("C", new int[] {}, new int[] { 3 }));
+      // D, E and F share IP 4
+      hackers.add(hacker("D", new int[] { 4 }, new int[] {}));
+      hackers.add(hacker("E", new int[] { 4 }, new int[] {}));
+      hackers.add(hacker("F", new int[] { 4 }, new int[] {}));
+      // G shares nothing
+      hackers.add(hacker("G", new int[] {}, new int[] {}));
+      return hackers;
+   }
+
+   @Test
+   public void testScores() {
+      ArrayList<MergeCandidate> candidates = new CorrelationEngine(hackers()).run().candidates();
+      HashMap<String, MergeCandidate> pairs = byPair(candidates);
+      assertEquals(new HashSet<>(Arrays.asList("A+B", "B+C", "D+E", "D+F", "E+F")), pairs.keySet());
+
+      // A key shared by k hackers adds 1 / (k - 1) to each of their pairs
+      MergeCandidate ab = pairs.get("A+B");
+      assertEquals(1, ab.getSharedIPs());
+      assertEquals(1, ab.getSharedURLs());
+      assertEquals(2.0, ab.getScore(), 1e-9);
+      MergeCandidate bc = pairs.get("B+C");
+      assertEquals(0, bc.getSharedIPs());
+      assertEquals(1, bc.getSharedURLs());
+      assertEquals(1.0, bc.getScore(), 1e-9);
+      for (String pair : new String[] { "D+E", "D+F", "E+F" }) {
+         assertEquals(1, pairs.get(pair).getSharedIPs());
+         assertEquals(0, pairs.get(pair).getSharedURLs());
+         assertEquals(0.5, pairs.get(pair).getScore(), 1e-9);
+      }
+
+      // Highest score first
+      assertEquals("A+B", pair(candidates.get(0)));
+      assertEquals("B+C", pair(candidates.get(1)));
+      for (int i = 1; i < candidates.size(); i++) {
+         assertTrue(candidates.get(i - 1).getScore() >= candidates.get(i).getScore());
+      }
+   }
+
+   @Test
+   public void testComponents() {
+      ArrayList<ArrayList<Hacker>> components = new CorrelationEngine(hackers()).run().components();
+      assertEquals(2, components.size());
+      // Equal sizes, so in table order
+      assertEquals(new HashSet<>(Arrays.asList("A", "B", "C")), names(components.get(0)));
+      assertEquals(new HashSet<>(Arrays.asList("D", "E", "F")), names(components.get(1)));
+   }
+
+   @Test
+   public void testLargestComponentFirst() {
+      ArrayList<Hacker> hackers = hackers();
+      hackers.add(hacker("H", new int[] { 4 }, new int[] {}));
+      ArrayList<ArrayList<Hacker>> components = new CorrelationEngine(hackers).run().components();
+      assertEquals(new HashSet<>(Arrays.asList("D", "E", "F", "H")), names(components.get(0)));
+      assertEquals(3, components.get(1).size());
+   }
+
+   @Test
+   public void testCommonKeysAreIgnored() {
+      ArrayList<Hacker> hackers = new ArrayList<>();
+      // URL 5 is everyone's, too common to say anything
+      for (int i = 0; i <= 64; i++) {
+         hackers.add(hacker("Hacker" + i, new int[] {}, new int[] { 5 }));
+      }
+      // Until all but 64 of them have gone
+      CorrelationEngine engine = new CorrelationEngine(hackers).run();
+      assertTrue(engine.candidates().isEmpty());
+      assertTrue(engine.components().isEmpty());
+
+      hackers.remove(0);
+      engine = new CorrelationEngine(hackers).run();
+      assertEquals(64 * 63 / 2, engine.candidates().size());
+      assertEquals(1.0 / 63, engine.candidates().get(0).getScore(), 1e-9);
+      assertEquals(1, engine.components().size());
+      assertEquals(64, engine.components().get(0).size());
+   }
+
+   @Test
+   public void testInvestigationCorrelates() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      for (Hacker hacker : hackers()) {
+         investigation.addHacker(hacker);
+      }
+      CorrelationEngine engine = investigation.correlate();
+      assertEquals(new HashSet<>(Arrays.asList("A+B", "B+C", "D+E", "D+F", "E+F")),
+            byPair(engine.candidates()).keySet());
+      assertEquals(2, engine.components().size());
+   }
+
+   @Test
+   public void testIncidentsAddedWhileRunning() throws InterruptedException {
+      ArrayList<Hacker> hackers = hackers();
+      Thread adder = new Thread(() -> {
+         // Unshared keys only, so the results stay the same whenever the engine reads them
+         for (int i = 0; i < 50000; i++) {
+            addIncident(hackers.get(i % hackers.size()), -1 - 2 * i, -2 - 2 * i);
+         }
+      });
+      adder.start();
+      try {
+         do {
+            CorrelationEngine engine = new CorrelationEngine(hackers).run();
+            assertEquals(5, engine.candidates().size());
+            assertEquals(2.0, engine.candidates().get(0).getScore(), 1e-9);
+            assertEquals(2, engine.components().size());
+         } while (adder.isAlive());
+      } finally {
+         adder.join();
+      }
+   }
+}
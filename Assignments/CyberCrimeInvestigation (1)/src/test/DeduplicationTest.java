@@ -0,0 +1,112 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class DeduplicationTest {
+   /*
+    * Checks that de-duplicating hackers reject incidents equal to ones they
+    * already have, on add and on merge, on and off the heap.
+    */
+
+   private CyberCrimeInvestigation investigation;
+
+   @Before
+   public void setUp() {
+      investigation = new CyberCrimeInvestigation();
+   }
+
+   private static Incident incident(int url) {
+      String hash = String.format("%032x", url);
+      return new Incident("Linux", "Apache", "2014-01-01", "Mars", hash, hash);
+   }
+
+   // Adds a hacker with incidents at urls from, from + 1, ..., from + count - 1
+   private void add(String name, int from, int count) {
+      Hacker hacker = new Hacker(name);
+      for (int url = from; url < from + count; url++) {
+         hacker.addIncident(incident(url));
+      }
+      investigation.addHacker(hacker);
+   }
+
+   private static ArrayList<String> names(ArrayList<Hacker> hackers) {
+      ArrayList<String> names = new ArrayList<>();
+      for (Hacker hacker : hackers) {
+         names.add(hacker.getName());
+      }
+      return names;
+   }
+
+   private void checkDeduplication() {
+      add("A", 0, 5);
+      add("A", 3, 5);
+      assertEquals(8, investigation.search("A").numIncidents());
+
+      // Loading the same input twice adds nothing the second time
+      investigation.initializeTable("hackerTest.in");
+      investigation.initializeTable("hackerTest.in");
+      assertEquals(2, investigation.search("Hacker6879").numIncidents());
+      assertEquals(1, investigation.search("Hacker7658").numIncidents());
+
+      // Incidents the two hackers share are kept once
+      add("B", 6, 4);
+      assertTrue(investigation.mergeHackers("A", "B"));
+      assertEquals(10, investigation.search("A").numIncidents());
+      assertEquals(10, investigation.getNMostWanted(1).get(0).numIncidents());
+      assertEquals(10, investigation.getIncidentsBetween("2014-01-01", "2014-01-01").size());
+
+      add("B", 0, 1);
+      assertEquals(1, investigation.search("B").numIncidents());
+   }
+
+   @Test
+   public void testDeduplication() {
+      investigation.enableDeduplication();
+      checkDeduplication();
+   }
+
+   @Test
+   public void testDeduplicationOffHeap() {
+      investigation.enableOffHeapIncidents();
+      investigation.enableDeduplication();
+      checkDeduplication();
+   }
+
+   @Test
+   public void testHackerRejectsDuplicates() {
+      Hacker hacker = new Hacker("A");
+      hacker.enableDeduplication();
+      assertTrue(hacker.addIncident(incident(1)));
+      assertFalse(hacker.addIncident(incident(1)));
+      assertTrue(hacker.addIncident(incident(2)));
+      assertEquals(2, hacker.numIncidents());
+   }
+
+   @Test
+   public void testEnablingDeduplicationDropsDuplicates() {
+      add("A", 0, 5);
+      add("A", 0, 5);
+      add("B", 0, 2);
+      assertEquals(10, investigation.search("A").numIncidents());
+      assertEquals("A", investigation.getNMostWanted(1).get(0).getName());
+      assertEquals(12, investigation.getIncidentsBetween("2014-01-01", "2014-01-01").size());
+
+      investigation.enableDeduplication();
+      assertEquals(5, investigation.search("A").numIncidents());
+      assertEquals(2, investigation.search("B").numIncidents());
+      assertEquals(5, investigation.getNMostWanted(1).get(0).numIncidents());
+      assertEquals(7, investigation.getIncidentsBetween("2014-01-01", "2014-01-01").size());
+
+      // Duplicates across hackers are kept: only a hacker's own incidents are compared
+      ArrayList<String> expected = new ArrayList<>();
+      expected.add("A");
+      expected.add("B");
+      assertEquals(expected, names(investigation.getNMostWanted(2)));
+   }
+}
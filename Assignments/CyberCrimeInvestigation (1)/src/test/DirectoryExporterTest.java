@@ -0,0 +1,132 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class DirectoryExporterTest {
+   /*
+    * Compares each export format against golden output for hackers whose
+    * names, aliases and locations need quoting or escaping, and checks the
+    * TEXT format matches toString() on the input files.
+    */
+
+   private static final String DOE = "Doe, \"J\"";
+   private static final String ODD = "Tab\t\"Quote\"\\\u0001";
+
+   private static String hash(int n) {
+      return String.format("%032x", n);
+   }
+
+   private static void add(CyberCrimeInvestigation investigation, String name, String location, int url) {
+      Hacker hacker = new Hacker(name);
+      hacker.addIncident(new Incident("Linux", "Apache", "2014-01-02", location, hash(url), hash(url)));
+      investigation.addHacker(hacker);
+   }
+
+   // DOE with aliases "a;b" and "c\d", then ODD, in that order
+   private static ArrayList<Hacker> hackers() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      add(investigation, DOE, "Paris, France", 1);
+      add(investigation, DOE, "Mars", 2);
+      add(investigation, "a;b", "Mars", 3);
+      add(investigation, "c\\d", "Mars", 4);
+      assertTrue(investigation.mergeHackers(DOE, "a;b"));
+      assertTrue(investigation.mergeHackers(DOE, "c\\d"));
+      add(investigation, ODD, "Mars", 5);
+      ArrayList<Hacker> hackers = new ArrayList<>();
+      hackers.add(investigation.search(DOE));
+      hackers.add(investigation.search(ODD));
+      return hackers;
+   }
+
+   private static String export(DirectoryExporter.Format format) throws IOException {
+      StringWriter out = new StringWriter();
+      new DirectoryExporter(out, format).writeAll(hackers());
+      return out.toString();
+   }
+
+   @Test
+   public void testCsv() throws IOException {
+      String expected = "name,aliases,os,web_server,date,location,ip_hash,url_hash\n"
+            + "\"Doe, \"\"J\"\"\",a\\;b;c\\\\d,Linux,Apache,2014-01-02,\"Paris, France\"," + hash(1) + "," + hash(1) + "\n"
+            + "\"Doe, \"\"J\"\"\",a\\;b;c\\\\d,Linux,Apache,2014-01-02,Mars," + hash(2) + "," + hash(2) + "\n"
+            + "\"Doe, \"\"J\"\"\",a\\;b;c\\\\d,Linux,Apache,2014-01-02,Mars," + hash(3) + "," + hash(3) + "\n"
+            + "\"Doe, \"\"J\"\"\",a\\;b;c\\\\d,Linux,Apache,2014-01-02,Mars," + hash(4) + "," + hash(4) + "\n"
+            + "\"Tab\t\"\"Quote\"\"\\\u0001\",,Linux,Apache,2014-01-02,Mars," + hash(5) + "," + hash(5) + "\n";
+      assertEquals(expected, export(DirectoryExporter.Format.CSV));
+   }
+
+   @Test
+   public void testCsvHeaderOnlyOnce() throws IOException {
+      StringWriter out = new StringWriter();
+      DirectoryExporter exporter = new DirectoryExporter(out, DirectoryExporter.Format.CSV);
+      for (Hacker hacker : hackers()) {
+         exporter.write(hacker);
+      }
+      assertEquals(export(DirectoryExporter.Format.CSV), out.toString());
+   }
+
+   @Test
+   public void testJsonLines() throws IOException {
+      String expected = "{\"name\":\"Doe, \\\"J\\\"\",\"aliases\":[\"a;b\",\"c\\\\d\"],\"numIncidents\":4,\"incidents\":["
+            + "{\"os\":\"Linux\",\"webServer\":\"Apache\",\"date\":\"2014-01-02\",\"location\":\"Paris, France\","
+            + "\"ipHash\":\"" + hash(1) + "\",\"urlHash\":\"" + hash(1) + "\"},"
+            + "{\"os\":\"Linux\",\"webServer\":\"Apache\",\"date\":\"2014-01-02\",\"location\":\"Mars\","
+            + "\"ipHash\":\"" + hash(2) + "\",\"urlHash\":\"" + hash(2) + "\"},"
+            + "{\"os\":\"Linux\",\"webServer\":\"Apache\",\"date\":\"2014-01-02\",\"location\":\"Mars\","
+            + "\"ipHash\":\"" + hash(3) + "\",\"urlHash\":\"" + hash(3) + "\"},"
+            + "{\"os\":\"Linux\",\"webServer\":\"Apache\",\"date\":\"2014-01-02\",\"location\":\"Mars\","
+            + "\"ipHash\":\"" + hash(4) + "\",\"urlHash\":\"" + hash(4) + "\"}]}\n"
+            + "{\"name\":\"Tab\\t\\\"Quote\\\"\\\\\\u0001\",\"aliases\":[],\"numIncidents\":1,\"incidents\":["
+            + "{\"os\":\"Linux\",\"webServer\":\"Apache\",\"date\":\"2014-01-02\",\"location\":\"Mars\","
+            + "\"ipHash\":\"" + hash(5) + "\",\"urlHash\":\"" + hash(5) + "\"}]}\n";
+      assertEquals(expected, export(DirectoryExporter.Format.JSONL));
+   }
+
+   @Test
+   public void testJsonLineBreaksAreEscaped() throws IOException {
+      Hacker hacker = new Hacker("Two\r\nLines");
+      StringWriter out = new StringWriter();
+      new DirectoryExporter(out, DirectoryExporter.Format.JSONL).write(hacker);
+      assertEquals("{\"name\":\"Two\\r\\nLines\",\"aliases\":[],\"numIncidents\":0,\"incidents\":[]}\n", out.toString());
+   }
+
+   @Test
+   public void testTextMatchesToString() throws IOException {
+      for (String inputFile : new String[] { "hackerTest.in", "hacker1.in", "hacker4.in" }) {
+         CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+         investigation.initializeTable(inputFile);
+         if (inputFile.equals("hacker1.in")) {
+            // So one hacker has an alias
+            assertTrue(investigation.mergeHackers("Hacker2896", "Hacker6138"));
+         }
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         investigation.export(out, DirectoryExporter.Format.TEXT);
+         assertEquals(investigation.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+      }
+
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      for (Hacker hacker : hackers()) {
+         investigation.addHacker(hacker);
+      }
+      StringWriter out = new StringWriter();
+      investigation.export(out, DirectoryExporter.Format.TEXT);
+      assertEquals(investigation.toString(), out.toString());
+   }
+
+   @Test
+   public void testEmptyDirectory() throws IOException {
+      StringWriter text = new StringWriter();
+      new CyberCrimeInvestigation().export(text, DirectoryExporter.Format.TEXT);
+      assertEquals("", text.toString());
+   }
+}
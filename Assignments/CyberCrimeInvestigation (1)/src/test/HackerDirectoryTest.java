@@ -0,0 +1,274 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import investigation.*;
+
+@RunWith(Parameterized.class)
+public class HackerDirectoryTest {
+   /*
+    * Runs every HackerDirectory implementation through the same adds, searches
+    * and removes, checked against a HashMap, and splits its spliterator down
+    * to single buckets to check the parts cover every hacker once, in order.
+    */
+
+   @Parameters(name = "{0}")
+   public static Collection<Object[]> directories() {
+      return Arrays.asList(new Object[][] {
+         { "chained", (Supplier<HackerDirectory>) ChainedHackerDirectory::new },
+         { "probing", (Supplier<HackerDirectory>) ProbingHackerDirectory::new },
+         { "incremental", (Supplier<HackerDirectory>) IncrementalHackerDirectory::new },
+         { "concurrent", (Supplier<HackerDirectory>) ConcurrentHackerDirectory::new },
+      });
+   }
+
+   private final Supplier<HackerDirectory> factory;
+   private HackerDirectory directory;
+
+   public HackerDirectoryTest(String type, Supplier<HackerDirectory> factory) {
+      this.factory = factory;
+   }
+
+   @Before
+   public void setUp() {
+      directory = factory.get();
+   }
+
+   private static Hacker hacker(String name) {
+      Hacker hacker = new Hacker(name);
+      String hash = String.format("%032x", name.hashCode() & 0xffffffffL);
+      hacker.addIncident(new Incident("Linux", "Apache", "2014-01-01", "Mars", hash, hash));
+      return hacker;
+   }
+
+   // 2^bits distinct names with the same String.hashCode(), since "Aa" and "BB" collide
+   private static ArrayList<String> collidingNames(int bits) {
+      ArrayList<String> names = new ArrayList<>();
+      for (int i = 0; i < 1 << bits; i++) {
+         StringBuilder name = new StringBuilder();
+         for (int bit = 0; bit < bits; bit++) {
+            name.append((i >> bit & 1) == 0 ? "Aa" : "BB");
+         }
+         names.add(name.toString());
+      }
+      return names;
+   }
+
+   private void assertSameHackers(HashMap<String, Hacker> expected) {
+      assertEquals(expected.size(), directory.size());
+      for (Hacker hacker : expected.values()) {
+         assertSame(hacker, directory.search(hacker.getName()));
+      }
+      HashSet<String> iterated = new HashSet<>();
+      for (Hacker hacker : directory) {
+         assertTrue(iterated.add(hacker.getName()));
+      }
+      assertEquals(expected.keySet(), iterated);
+
+      HashSet<String> chained = new HashSet<>();
+      for (HNode node : directory.toChains()) {
+         for (; node != null; node = node.getNext()) {
+            assertTrue(chained.add(node.getHacker().getName()));
+         }
+      }
+      assertEquals(expected.keySet(), chained);
+   }
+
+   // Takes `advance` hackers, then splits until it cannot; returns the number of splits
+   private static int splitAll(Spliterator<Hacker> spliterator, int advance, List<Hacker> out) {
+      for (int i = 0; i < advance && spliterator.tryAdvance(out::add); i++) {
+      }
+      Spliterator<Hacker> prefix = spliterator.trySplit();
+      if (prefix == null) {
+         spliterator.forEachRemaining(out::add);
+         return 0;
+      }
+      // The prefix comes first in encounter order
+      int splits = 1 + splitAll(prefix, advance, out);
+      return splits + splitAll(spliterator, advance, out);
+   }
+
+   // Checks every way of splitting gives each hacker once, in the unsplit order
+   private void assertSplitsCoverEveryHacker(HashMap<String, Hacker> expected) {
+      ArrayList<Hacker> whole = new ArrayList<>();
+      Spliterator<Hacker> spliterator = directory.spliterator();
+      assertEquals(expected.size(), spliterator.estimateSize());
+      assertTrue((spliterator.characteristics() & Spliterator.ORDERED) != 0);
+      spliterator.forEachRemaining(whole::add);
+      assertEquals(expected.size(), whole.size());
+      assertEquals(expected.keySet(), whole.stream().map(Hacker::getName).collect(Collectors.toSet()));
+
+      for (int advance = 0; advance < 3; advance++) {
+         ArrayList<Hacker> parts = new ArrayList<>();
+         int splits = splitAll(directory.spliterator(), advance, parts);
+         assertTrue(expected.size() < 2 || splits > 0);
+         assertEquals(whole, parts);
+      }
+      assertEquals(whole, directory.parallelStream().collect(Collectors.toList()));
+   }
+
+   @Test
+   public void testMatchesHashMap() {
+      HashMap<String, Hacker> expected = new HashMap<>();
+      Random random = new Random(1);
+      for (int step = 0; step < 20000; step++) {
+         String name = "Hacker" + random.nextInt(2000);
+         if (random.nextInt(3) > 0) {
+            Hacker stored = directory.add(hacker(name));
+            expected.putIfAbsent(name, stored);
+            assertSame(expected.get(name), stored);
+         } else {
+            assertSame(expected.remove(name), directory.remove(name));
+         }
+         if (step % 1000 == 0) {
+            assertSameHackers(expected);
+         }
+      }
+      assertSameHackers(expected);
+      assertSplitsCoverEveryHacker(expected);
+      assertNull(directory.search("Hacker2000"));
+   }
+
+   @Test
+   public void testSpliteratorOnEmptyDirectory() {
+      Spliterator<Hacker> spliterator = directory.spliterator();
+      assertEquals(0, spliterator.estimateSize());
+      assertFalse(spliterator.tryAdvance(hacker -> fail()));
+      assertEquals(0, directory.parallelStream().count());
+   }
+
+   @Test
+   public void testSpliteratorSplitsCollidingRun() {
+      // One long probe run or chain, split after taking part of it
+      HashMap<String, Hacker> expected = new HashMap<>();
+      for (String name : collidingNames(6)) {
+         expected.put(name, directory.add(hacker(name)));
+      }
+      assertSplitsCoverEveryHacker(expected);
+   }
+
+   @Test
+   public void testSpliteratorWhileGrowing() {
+      HashMap<String, Hacker> expected = new HashMap<>();
+      for (int i = 0; i < 3000; i++) {
+         expected.put("Hacker" + i, directory.add(hacker("Hacker" + i)));
+         if (i % 250 == 0) {
+            assertSplitsCoverEveryHacker(expected);
+         }
+      }
+      assertSplitsCoverEveryHacker(expected);
+   }
+
+   @Test
+   public void testAddingExistingNameAppendsIncidents() {
+      Hacker first = directory.add(hacker("Hacker1"));
+      assertSame(first, directory.add(hacker("Hacker1")));
+      assertEquals(1, directory.size());
+      assertEquals(2, first.numIncidents());
+   }
+
+   @Test
+   public void testRemoveFromCollidingRun() {
+      // One long probe run or chain, emptied from the middle outwards
+      ArrayList<String> names = collidingNames(5);
+      HashMap<String, Hacker> expected = new HashMap<>();
+      for (String name : names) {
+         expected.put(name, directory.add(hacker(name)));
+      }
+      Random random = new Random(2);
+      while (!names.isEmpty()) {
+         String name = names.remove(random.nextInt(names.size()));
+         assertSame(expected.remove(name), directory.remove(name));
+         assertNull(directory.search(name));
+         assertSameHackers(expected);
+      }
+      assertEquals(0, directory.size());
+   }
+
+   @Test
+   public void testGrowsAndKeepsEveryHacker() {
+      int capacity = directory.capacity();
+      HashMap<String, Hacker> expected = new HashMap<>();
+      for (int i = 0; i < 5000; i++) {
+         String name = "Hacker" + i;
+         expected.put(name, directory.add(hacker(name)));
+         // Every hacker stays reachable while the table grows
+         assertSame(expected.get("Hacker" + i / 2), directory.search("Hacker" + i / 2));
+      }
+      assertTrue(directory.capacity() > capacity);
+      assertTrue(directory.size() < directory.capacity());
+      assertSameHackers(expected);
+   }
+
+   @Test
+   public void testEnsureCapacity() {
+      HashMap<String, Hacker> expected = new HashMap<>();
+      for (int i = 0; i < 100; i++) {
+         expected.put("Hacker" + i, directory.add(hacker("Hacker" + i)));
+      }
+      directory.ensureCapacity(10000);
+      int capacity = directory.capacity();
+      assertSameHackers(expected);
+      for (int i = 100; i < 5000; i++) {
+         expected.put("Hacker" + i, directory.add(hacker("Hacker" + i)));
+      }
+      assertEquals(capacity, directory.capacity());
+      assertSameHackers(expected);
+   }
+
+   @Test
+   public void testIncrementalMigration() {
+      Assume.assumeTrue(directory instanceof IncrementalHackerDirectory);
+      IncrementalHackerDirectory incremental = (IncrementalHackerDirectory) directory;
+      HashMap<String, Hacker> expected = new HashMap<>();
+      int i = 0;
+      while (!incremental.isMigrating()) {
+         expected.put("Hacker" + i, directory.add(hacker("Hacker" + i)));
+         i++;
+      }
+      // Each call moves a few old buckets; hackers are found in whichever table holds them
+      int calls = 0;
+      while (incremental.isMigrating()) {
+         for (String name : expected.keySet()) {
+            assertSame(expected.get(name), directory.search(name));
+            calls++;
+         }
+      }
+      assertTrue(calls > 1);
+      assertSameHackers(expected);
+
+      // A spliterator taken mid-migration sees hackers in both tables
+      while (!incremental.isMigrating()) {
+         expected.put("Hacker" + i, directory.add(hacker("Hacker" + i)));
+         i++;
+      }
+      assertSplitsCoverEveryHacker(expected);
+      assertSameHackers(expected);
+
+      // Removing during a migration finds hackers not yet moved
+      while (!incremental.isMigrating()) {
+         expected.put("Hacker" + i, directory.add(hacker("Hacker" + i)));
+         i++;
+      }
+      for (int j = 0; j < i; j += 2) {
+         assertSame(expected.remove("Hacker" + j), directory.remove("Hacker" + j));
+      }
+      assertSameHackers(expected);
+   }
+}
@@ -0,0 +1,238 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class HackerIngestorTest {
+   /*
+    * Feeds hackers to an ingestor, both from a publisher the test drives one
+    * record at a time and from HackerFeed reading an input file, and checks
+    * its batches, delayed flushes, demand and counters.
+    */
+
+   // Delivers records only when the test says so, and remembers every request
+   private static class ManualPublisher implements Flow.Publisher<Hacker>, Flow.Subscription {
+      Flow.Subscriber<? super Hacker> subscriber;
+      final ArrayList<Long> requests = new ArrayList<>();
+      long demand = 0;
+      boolean cancelled = false;
+
+      @Override
+      public void subscribe(Flow.Subscriber<? super Hacker> subscriber) {
+         this.subscriber = subscriber;
+         subscriber.onSubscribe(this);
+      }
+
+      @Override
+      public synchronized void request(long n) {
+         requests.add(n);
+         demand += n;
+      }
+
+      @Override
+      public void cancel() {
+         cancelled = true;
+      }
+
+      void send(Hacker hacker) {
+         synchronized (this) {
+            // Never more records than were requested
+            assertTrue(demand > 0);
+            demand--;
+         }
+         subscriber.onNext(hacker);
+      }
+
+      synchronized long demand() {
+         return demand;
+      }
+   }
+
+   private static Hacker hacker(String name, int url) {
+      Hacker hacker = new Hacker(name);
+      String hash = String.format("%032x", url);
+      hacker.addIncident(new Incident("Linux", "Apache", "2014-01-01", "Mars", hash, hash));
+      return hacker;
+   }
+
+   // Waits for the condition, failing after a few seconds
+   private static void await(BooleanSupplier condition) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (!condition.getAsBoolean()) {
+         assertTrue("Timed out", System.nanoTime() < deadline);
+         Thread.sleep(5);
+      }
+   }
+
+   @Test
+   public void testFullBatchesAreApplied() throws Exception {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      ManualPublisher publisher = new ManualPublisher();
+      // Long enough that only full batches are applied
+      HackerIngestor ingestor = investigation.ingest(publisher, 3, TimeUnit.HOURS.toMillis(1));
+      assertEquals(3, publisher.demand());
+
+      publisher.send(hacker("A", 0));
+      publisher.send(hacker("B", 1));
+      assertEquals(0, ingestor.getApplied());
+      assertNull(investigation.search("A"));
+      publisher.send(hacker("A", 2));
+      // One addHacker per name, with both of A's incidents
+      assertEquals(3, ingestor.getApplied());
+      assertEquals(1, ingestor.getBatches());
+      assertEquals(2, investigation.search("A").numIncidents());
+      assertEquals(3, publisher.demand());
+
+      for (int i = 0; i < 4; i++) {
+         publisher.send(hacker("C", 10 + i));
+      }
+      assertEquals(7, ingestor.getReceived());
+      assertEquals(6, ingestor.getApplied());
+      assertEquals(2, ingestor.getBatches());
+
+      // The partial batch is applied when the feed ends
+      publisher.subscriber.onComplete();
+      assertEquals(7L, (long) ingestor.completion().get(5, TimeUnit.SECONDS));
+      assertEquals(3, ingestor.getBatches());
+      assertEquals(4, investigation.search("C").numIncidents());
+   }
+
+   @Test
+   public void testPartialBatchIsAppliedAfterDelay() throws Exception {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      ManualPublisher publisher = new ManualPublisher();
+      HackerIngestor ingestor = investigation.ingest(publisher, 100, 20);
+      publisher.send(hacker("A", 0));
+      publisher.send(hacker("B", 1));
+      // The two applied records are requested again once they are added
+      await(() -> publisher.demand() == 100);
+      assertEquals(2, ingestor.getApplied());
+      assertEquals(1, ingestor.getBatches());
+      assertNotNull(investigation.search("A"));
+      assertEquals(2L, (long) publisher.requests.get(publisher.requests.size() - 1));
+
+      publisher.send(hacker("A", 2));
+      await(() -> publisher.demand() == 100);
+      assertEquals(3, ingestor.getApplied());
+      assertEquals(2, ingestor.getBatches());
+      assertEquals(2, investigation.search("A").numIncidents());
+   }
+
+   @Test
+   public void testDemandNeverExceedsBatchSize() throws Exception {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      ManualPublisher publisher = new ManualPublisher();
+      HackerIngestor ingestor = investigation.ingest(publisher, 8, TimeUnit.HOURS.toMillis(1));
+      for (int i = 0; i < 1000; i++) {
+         publisher.send(hacker("Hacker" + i % 37, i));
+         // Received but not applied, plus still requested, is one batch
+         assertEquals(8, ingestor.getReceived() - ingestor.getApplied() + publisher.demand());
+      }
+      assertEquals(125, ingestor.getBatches());
+      publisher.subscriber.onComplete();
+      assertEquals(1000L, (long) ingestor.completion().get(5, TimeUnit.SECONDS));
+      for (long request : publisher.requests) {
+         assertEquals(8, request);
+      }
+   }
+
+   @Test
+   public void testErrorAppliesReceivedRecords() throws Exception {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      ManualPublisher publisher = new ManualPublisher();
+      HackerIngestor ingestor = investigation.ingest(publisher, 10, TimeUnit.HOURS.toMillis(1));
+      publisher.send(hacker("A", 0));
+      publisher.send(hacker("B", 1));
+      IOException error = new IOException("Feed dropped");
+      publisher.subscriber.onError(error);
+      assertEquals(2, ingestor.getApplied());
+      assertEquals(1, ingestor.getBatches());
+      assertNotNull(investigation.search("B"));
+      try {
+         ingestor.completion().get(5, TimeUnit.SECONDS);
+         fail("Completed normally after an error");
+      } catch (ExecutionException e) {
+         assertSame(error, e.getCause());
+      }
+   }
+
+   @Test
+   public void testCancelDropsPendingRecords() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      ManualPublisher publisher = new ManualPublisher();
+      HackerIngestor ingestor = investigation.ingest(publisher, 10, TimeUnit.HOURS.toMillis(1));
+      publisher.send(hacker("A", 0));
+      ingestor.cancel();
+      assertTrue(publisher.cancelled);
+      assertTrue(ingestor.completion().isCancelled());
+      assertEquals(0, ingestor.getApplied());
+      assertNull(investigation.search("A"));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsEmptyBatches() {
+      new HackerIngestor(new CyberCrimeInvestigation(), 0);
+   }
+
+   @Test
+   public void testFeedMatchesInitializeTable() throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try {
+         for (String inputFile : new String[] { "hackerTest.in", "hacker1.in", "hacker4.in" }) {
+            CyberCrimeInvestigation expected = new CyberCrimeInvestigation();
+            expected.initializeTable(inputFile);
+
+            // A buffer of two holds the reading thread back until batches are applied
+            SubmissionPublisher<Hacker> publisher = new SubmissionPublisher<>(executor, 2);
+            CyberCrimeInvestigation fed = new CyberCrimeInvestigation();
+            HackerIngestor ingestor = fed.ingest(publisher, 16, 5);
+            long records = HackerFeed.publish(new FileReader(inputFile), publisher);
+            assertEquals(records, (long) ingestor.completion().get(30, TimeUnit.SECONDS));
+            assertEquals(records, ingestor.getReceived());
+            assertTrue(ingestor.getBatches() >= records / 16);
+            SnapshotTest.assertSameDirectory(expected, fed);
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testFeedEndingMidRecordFails() throws Exception {
+      String text = "Hacker1\n" + "0".repeat(32) + "\nMars\nLinux\nApache\n2014-01-01\n" + "0".repeat(32)
+            + "\n\nHacker2\n" + "0".repeat(32) + "\nMars\n";
+      SubmissionPublisher<Hacker> publisher = new SubmissionPublisher<>();
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      HackerIngestor ingestor = investigation.ingest(publisher, 4);
+      try {
+         HackerFeed.publish(new StringReader(text), publisher);
+         fail("Published a partial record");
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+         ingestor.completion().get(5, TimeUnit.SECONDS);
+         fail("Completed normally after a partial record");
+      } catch (ExecutionException e) {
+         assertTrue(e.getCause() instanceof IllegalArgumentException);
+      }
+      // The publisher may drop the whole record if still buffered, but any received is applied
+      assertTrue(ingestor.getReceived() <= 1);
+      assertEquals(ingestor.getReceived(), ingestor.getApplied());
+      assertEquals(ingestor.getApplied(), investigation.numHackers());
+   }
+}
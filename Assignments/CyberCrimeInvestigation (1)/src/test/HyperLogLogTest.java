@@ -0,0 +1,183 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class HyperLogLogTest {
+   /*
+    * Checks distinct counts from HyperLogLog sketches against exact counts:
+    * exact while sparse, within the standard error once dense, merged as the
+    * union, and as kept per hacker and per location by the investigation.
+    */
+
+   private static Incident incident(String location, int ip, int url) {
+      return new Incident("Linux", "Apache", "2014-01-01", location, String.format("%032x", ip),
+            String.format("%032x", url));
+   }
+
+   private static void add(CyberCrimeInvestigation investigation, String name, int from, int count) {
+      Hacker hacker = new Hacker(name);
+      for (int url = from; url < from + count; url++) {
+         hacker.addIncident(incident("Mars", url, url));
+      }
+      investigation.addHacker(hacker);
+   }
+
+   @Test
+   public void testExactWhileSparse() {
+      HyperLogLog sketch = new HyperLogLog(14);
+      assertEquals(0, sketch.estimate());
+      for (int i = 0; i < 32; i++) {
+         sketch.add(i, i);
+         sketch.add(i, i);
+         assertEquals(i + 1, sketch.estimate());
+      }
+   }
+
+   @Test
+   public void testSwitchToDense() {
+      HyperLogLog sketch = new HyperLogLog(14);
+      for (int i = 0; i < 33; i++) {
+         sketch.add(0, i);
+      }
+      // Past the sparse limit the registers are used, and linear counting is close at this size
+      assertEquals(33, sketch.estimate(), 1);
+      long estimate = sketch.estimate();
+      for (int i = 0; i < 33; i++) {
+         sketch.add(0, i);
+      }
+      assertEquals(estimate, sketch.estimate());
+   }
+
+   @Test
+   public void testAccuracyBound() {
+      Random random = new Random(1);
+      for (int precision : new int[] { 10, 14 }) {
+         HyperLogLog sketch = new HyperLogLog(precision);
+         HashSet<Long> exact = new HashSet<>();
+         for (int i = 0; i < 200000; i++) {
+            // Repeats are common, so the exact count is well below the additions
+            long hash = random.nextInt(150000);
+            sketch.add(hash * 31, hash);
+            exact.add(hash);
+            if (i % 20000 == 0 || i == 199999) {
+               double error = Math.abs(sketch.estimate() - exact.size()) / (double) exact.size();
+               assertTrue(precision + ": " + sketch.estimate() + " for " + exact.size(),
+                     error <= 3 * sketch.standardError());
+            }
+         }
+      }
+   }
+
+   @Test
+   public void testMergeIsUnion() {
+      for (int[] sizes : new int[][] { { 10, 10 }, { 10, 5000 }, { 5000, 10 }, { 5000, 5000 } }) {
+         HyperLogLog a = new HyperLogLog(12);
+         HyperLogLog b = new HyperLogLog(12);
+         HyperLogLog union = new HyperLogLog(12);
+         // b starts halfway through a's hashes
+         for (int i = 0; i < sizes[0]; i++) {
+            a.add(i, i);
+            union.add(i, i);
+         }
+         for (int i = sizes[0] / 2; i < sizes[0] / 2 + sizes[1]; i++) {
+            b.add(i, i);
+            union.add(i, i);
+         }
+         a.merge(b);
+         // Taking the larger register gives exactly the sketch of the union
+         assertEquals(union.estimate(), a.estimate());
+      }
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testMergeNeedsSamePrecision() {
+      new HyperLogLog(10).merge(new HyperLogLog(12));
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsBadPrecision() {
+      new HyperLogLog(17);
+   }
+
+   @Test
+   public void testMergeCountsDistinctURLs() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      // Few enough URLs to be counted exactly
+      add(investigation, "A", 0, 20);
+      add(investigation, "B", 10, 20);
+      assertEquals(20, investigation.getDistinctURLs("A"));
+      assertEquals(20, investigation.getDistinctURLs("B"));
+      assertTrue(investigation.mergeHackers("A", "B"));
+      assertEquals(30, investigation.getDistinctURLs("A"));
+      assertEquals(30, investigation.getDistinctURLs("B"));
+      assertEquals(0, investigation.getDistinctURLs("Nobody"));
+   }
+
+   @Test
+   public void testMergedSketchMatchesRecount() {
+      // Both sketched before the merge, so their sketches are merged
+      CyberCrimeInvestigation sketched = new CyberCrimeInvestigation();
+      add(sketched, "A", 0, 3000);
+      add(sketched, "B", 2000, 2000);
+      sketched.getDistinctURLs("A");
+      sketched.getDistinctURLs("B");
+      assertTrue(sketched.mergeHackers("A", "B"));
+
+      // Sketched only after the merge, from the merged incidents
+      CyberCrimeInvestigation recounted = new CyberCrimeInvestigation();
+      add(recounted, "A", 0, 3000);
+      add(recounted, "B", 2000, 2000);
+      assertTrue(recounted.mergeHackers("A", "B"));
+
+      long estimate = sketched.getDistinctURLs("A");
+      assertEquals(recounted.getDistinctURLs("A"), estimate);
+      // Hackers' URL sketches have 2^10 registers
+      assertEquals(4000, estimate, 4000 * 3 * new HyperLogLog(10).standardError());
+
+      // Kept up to date by later adds
+      add(sketched, "A", 4000, 10);
+      add(recounted, "A", 4000, 10);
+      assertEquals(recounted.getDistinctURLs("A"), sketched.getDistinctURLs("A"));
+   }
+
+   @Test
+   public void testDistinctIPs() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      assertEquals(0, investigation.getDistinctIPs("Mars"));
+      Hacker a = new Hacker("A");
+      for (int ip = 0; ip < 10; ip++) {
+         // Each IP twice, at different URLs
+         a.addIncident(incident("Mars", ip, ip));
+         a.addIncident(incident("Mars", ip, ip + 100));
+      }
+      a.addIncident(incident("Venus", 0, 0));
+      investigation.addHacker(a);
+      Hacker b = new Hacker("B");
+      for (int ip = 5; ip < 15; ip++) {
+         b.addIncident(incident("Mars", ip, ip));
+      }
+      investigation.addHacker(b);
+      assertEquals(15, investigation.getDistinctIPs("Mars"));
+      assertEquals(1, investigation.getDistinctIPs("Venus"));
+      assertEquals(0, investigation.getDistinctIPs("Nowhere"));
+
+      // A sketch cannot forget, so removing a hacker does not lower the count
+      assertNotNull(investigation.remove("B"));
+      assertEquals(15, investigation.getDistinctIPs("Mars"));
+
+      // Dense once past the sparse limit; locations' IP sketches have 2^14 registers
+      Hacker c = new Hacker("C");
+      for (int ip = 0; ip < 5000; ip++) {
+         c.addIncident(incident("Titan", ip, ip));
+      }
+      investigation.addHacker(c);
+      assertEquals(5000, investigation.getDistinctIPs("Titan"), 5000 * 3 * new HyperLogLog(14).standardError());
+   }
+}
@@ -0,0 +1,218 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class IncidentQueryTest {
+   /*
+    * Evaluates each query operator, date windows at and past their bounds,
+    * and queries whose bitmaps are empty, checking the matches against a
+    * brute-force filter over every hacker's incidents.
+    */
+
+   private static final String[] OSES = { "Linux", "Windows", "MacOS" };
+   private static final String[] SERVERS = { "Apache", "IIS", "nginx" };
+   private static final String[] LOCATIONS = { "Mars", "Venus", "Titan" };
+   // Never an incident's location, so it has no bitmap
+   private static final String NOWHERE = "Nowhere";
+
+   private CyberCrimeInvestigation investigation;
+
+   private static String date(int day) {
+      return LocalDate.of(2014, 1, 1).plusDays(day).toString();
+   }
+
+   private static Incident incident(Random random, int url) {
+      String hash = String.format("%032x", url);
+      return new Incident(OSES[random.nextInt(3)], SERVERS[random.nextInt(3)], date(random.nextInt(60)),
+            LOCATIONS[random.nextInt(3)], hash, hash);
+   }
+
+   private static void addHackers(CyberCrimeInvestigation investigation, Random random, int from, int to) {
+      for (int h = from; h < to; h++) {
+         Hacker hacker = new Hacker("Hacker" + h);
+         for (int i = 0; i < 1 + random.nextInt(6); i++) {
+            hacker.addIncident(incident(random, h * 10 + i));
+         }
+         investigation.addHacker(hacker);
+      }
+   }
+
+   @Before
+   public void setUp() {
+      investigation = new CyberCrimeInvestigation();
+      Random random = new Random(1);
+      addHackers(investigation, random, 0, 300);
+      // Indexed now, so the removes, merges and adds below change a built index
+      investigation.getIncidents(IncidentQuery.os("Linux"));
+      for (int h = 0; h < 300; h += 7) {
+         assertNotNull(investigation.remove("Hacker" + h));
+      }
+      for (int h = 1; h < 300; h += 11) {
+         if (h % 7 != 0 && (h + 1) % 7 != 0) {
+            assertTrue(investigation.mergeHackers("Hacker" + h, "Hacker" + (h + 1)));
+         }
+      }
+      addHackers(investigation, random, 300, 350);
+   }
+
+   private static String sortKey(Incident incident) {
+      return incident.getDate() + incident;
+   }
+
+   // Checks a query matches exactly the incidents the filter accepts
+   private void assertMatches(Predicate<Incident> filter, IncidentQuery query) {
+      ArrayList<Incident> expected = new ArrayList<>();
+      HashSet<String> expectedHackers = new HashSet<>();
+      for (Hacker hacker : investigation.hackers()) {
+         for (Incident incident : hacker.getIncidents()) {
+            if (filter.test(incident)) {
+               expected.add(incident);
+               expectedHackers.add(hacker.getName());
+            }
+         }
+      }
+
+      ArrayList<Incident> incidents = investigation.getIncidents(query);
+      for (int i = 1; i < incidents.size(); i++) {
+         assertTrue(query.toString(), incidents.get(i - 1).getEpochDay() <= incidents.get(i).getEpochDay());
+      }
+      List<Incident> sorted = new ArrayList<>(incidents);
+      sorted.sort(Comparator.comparing(IncidentQueryTest::sortKey));
+      expected.sort(Comparator.comparing(IncidentQueryTest::sortKey));
+      assertEquals(query.toString(), expected, sorted);
+
+      HashSet<String> hackers = new HashSet<>();
+      for (Hacker hacker : investigation.getHackers(query)) {
+         assertTrue(query.toString(), hackers.add(hacker.getName()));
+      }
+      assertEquals(query.toString(), expectedHackers, hackers);
+   }
+
+   private static Predicate<Incident> os(String os) {
+      return incident -> incident.getOS().equals(os);
+   }
+
+   private static Predicate<Incident> webServer(String webServer) {
+      return incident -> incident.getWebServer().equals(webServer);
+   }
+
+   private static Predicate<Incident> location(String location) {
+      return incident -> incident.getLocation().equals(location);
+   }
+
+   private static Predicate<Incident> between(int from, int to) {
+      return incident -> incident.getDate().compareTo(date(from)) >= 0 && incident.getDate().compareTo(date(to)) <= 0;
+   }
+
+   @Test
+   public void testSingleConditions() {
+      for (int i = 0; i < 3; i++) {
+         assertMatches(os(OSES[i]), IncidentQuery.os(OSES[i]));
+         assertMatches(webServer(SERVERS[i]), IncidentQuery.webServer(SERVERS[i]));
+         assertMatches(location(LOCATIONS[i]), IncidentQuery.location(LOCATIONS[i]));
+      }
+   }
+
+   @Test
+   public void testAnd() {
+      assertMatches(os("Linux").and(webServer("Apache")), IncidentQuery.os("Linux").and(IncidentQuery.webServer("Apache")));
+      assertMatches(os("Windows").and(webServer("IIS")).and(location("Mars")).and(between(10, 40)),
+            IncidentQuery.os("Windows").and(IncidentQuery.webServer("IIS"), IncidentQuery.location("Mars"),
+                  IncidentQuery.between(date(10), date(40))));
+      // Disjoint values of one attribute
+      assertMatches(incident -> false, IncidentQuery.os("Linux").and(IncidentQuery.os("MacOS")));
+   }
+
+   @Test
+   public void testOr() {
+      assertMatches(os("Linux").or(location("Titan")), IncidentQuery.os("Linux").or(IncidentQuery.location("Titan")));
+      assertMatches(webServer("IIS").or(webServer("nginx")).or(between(0, 5)),
+            IncidentQuery.webServer("IIS").or(IncidentQuery.webServer("nginx"), IncidentQuery.between(date(0), date(5))));
+      // Every value of one attribute
+      assertMatches(incident -> true,
+            IncidentQuery.location("Mars").or(IncidentQuery.location("Venus"), IncidentQuery.location("Titan")));
+   }
+
+   @Test
+   public void testNot() {
+      assertMatches(os("Linux").negate(), IncidentQuery.os("Linux").not());
+      assertMatches(os("Linux"), IncidentQuery.os("Linux").not().not());
+      assertMatches(between(20, 30).negate(), IncidentQuery.between(date(20), date(30)).not());
+      // Inside an AND, applied with andNot()
+      assertMatches(os("Linux").and(location("Mars").negate()),
+            IncidentQuery.os("Linux").and(IncidentQuery.location("Mars").not()));
+      assertMatches(location("Mars").negate().and(os("Linux")),
+            IncidentQuery.location("Mars").not().and(IncidentQuery.os("Linux")));
+      // An AND of NOTs only starts from every row
+      assertMatches(os("Linux").negate().and(webServer("IIS").negate()),
+            IncidentQuery.os("Linux").not().and(IncidentQuery.webServer("IIS").not()));
+      // Inside an OR, the complement is built
+      assertMatches(os("Linux").or(webServer("Apache").negate()),
+            IncidentQuery.os("Linux").or(IncidentQuery.webServer("Apache").not()));
+      assertMatches(os("Linux").and(webServer("Apache")).negate(),
+            IncidentQuery.os("Linux").and(IncidentQuery.webServer("Apache")).not());
+   }
+
+   @Test
+   public void testDateBounds() {
+      // Both ends are inclusive
+      for (int day = 0; day < 60; day += 13) {
+         assertMatches(between(day, day), IncidentQuery.between(date(day), date(day)));
+      }
+      assertMatches(between(0, 59), IncidentQuery.between(date(0), date(59)));
+      assertMatches(between(15, 16), IncidentQuery.between(date(15), date(16)));
+      // Past the first and last incidents
+      assertMatches(incident -> true, IncidentQuery.between(date(-365), date(365)));
+      assertMatches(between(50, 59), IncidentQuery.between(date(50), date(1000)));
+      assertMatches(incident -> false, IncidentQuery.between(date(-30), date(-1)));
+      assertMatches(incident -> false, IncidentQuery.between(date(60), date(90)));
+      // An empty window
+      assertMatches(incident -> false, IncidentQuery.between(date(30), date(29)));
+   }
+
+   @Test
+   public void testEmptyBitmaps() {
+      assertMatches(incident -> false, IncidentQuery.location(NOWHERE));
+      assertMatches(incident -> true, IncidentQuery.location(NOWHERE).not());
+      // An AND stops at the first empty term, whatever follows
+      assertMatches(incident -> false, IncidentQuery.location(NOWHERE).and(IncidentQuery.os("Linux").not()));
+      assertMatches(incident -> false,
+            IncidentQuery.os("Linux").and(IncidentQuery.between(date(30), date(29)), IncidentQuery.webServer("IIS")));
+      assertMatches(os("Linux"), IncidentQuery.location(NOWHERE).or(IncidentQuery.os("Linux")));
+      assertMatches(incident -> true, IncidentQuery.location(NOWHERE).not().and(IncidentQuery.os(NOWHERE).not()));
+      // NOT of everything
+      assertMatches(incident -> false, IncidentQuery.between(date(-365), date(365)).not());
+   }
+
+   @Test
+   public void testEmptyInvestigation() {
+      investigation = new CyberCrimeInvestigation();
+      assertMatches(incident -> false, IncidentQuery.os("Linux"));
+      assertMatches(incident -> false, IncidentQuery.os("Linux").not());
+      assertMatches(incident -> false, IncidentQuery.os("Linux").not().and(IncidentQuery.location("Mars").not()));
+      assertMatches(incident -> false, IncidentQuery.between(date(-365), date(365)));
+   }
+
+   @Test
+   public void testEveryHackerRemoved() {
+      for (int h = 0; h < 350; h++) {
+         investigation.remove("Hacker" + h);
+      }
+      assertEquals(0, investigation.numHackers());
+      // Dead rows are never matched, even by a NOT
+      assertMatches(incident -> false, IncidentQuery.location(NOWHERE).not());
+      assertMatches(incident -> false, IncidentQuery.os("Linux").or(IncidentQuery.os("Linux").not()));
+   }
+}
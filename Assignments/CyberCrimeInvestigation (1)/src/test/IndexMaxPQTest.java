@@ -0,0 +1,263 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class IndexMaxPQTest {
+   /*
+    * Checks the indexed priority queue against a map from handle to key,
+    * through random inserts, key changes and deletes, and checks its
+    * heap-built constructor and fail-fast iterator.
+    */
+
+   // Handles in descending key order, ties by handle as the queue has no fixed order for them
+   private static ArrayList<Integer> sortedHandles(HashMap<Integer, Integer> keys) {
+      ArrayList<Integer> handles = new ArrayList<>(keys.keySet());
+      handles.sort(Comparator.comparing((Integer handle) -> keys.get(handle)).reversed()
+            .thenComparing(Comparator.naturalOrder()));
+      return handles;
+   }
+
+   // The queue's handles in iteration order, with equal keys sorted by handle
+   private static ArrayList<Integer> iteratedHandles(IndexMaxPQ<Integer> pq) {
+      ArrayList<Integer> handles = new ArrayList<>();
+      for (int handle : pq) {
+         handles.add(handle);
+      }
+      for (int i = 1; i < handles.size(); i++) {
+         assertTrue(pq.keyOf(handles.get(i - 1)) >= pq.keyOf(handles.get(i)));
+      }
+      handles.sort(Comparator.comparing((Integer handle) -> pq.keyOf(handle)).reversed()
+            .thenComparing(Comparator.naturalOrder()));
+      return handles;
+   }
+
+   @Test
+   public void testInsertAndDelMax() {
+      IndexMaxPQ<Integer> pq = new IndexMaxPQ<>(4);
+      int[] keys = { 5, 9, 1, 7, 3, 8 };
+      for (int i = 0; i < keys.length; i++) {
+         pq.insert(i, keys[i]);
+      }
+      // Handle 4 and 5 are past the initial range
+      assertEquals(6, pq.size());
+      assertEquals(1, pq.maxIndex());
+      assertEquals(9, (int) pq.maxKey());
+      int[] expected = { 1, 5, 3, 0, 4, 2 };
+      for (int handle : expected) {
+         assertEquals(handle, pq.delMax());
+         assertFalse(pq.contains(handle));
+      }
+      assertTrue(pq.isEmpty());
+   }
+
+   @Test
+   public void testIncreaseKey() {
+      IndexMaxPQ<Integer> pq = new IndexMaxPQ<>(10);
+      for (int i = 0; i < 10; i++) {
+         pq.insert(i, i);
+      }
+      pq.increaseKey(2, 20);
+      assertEquals(2, pq.maxIndex());
+      assertEquals(20, (int) pq.keyOf(2));
+      try {
+         pq.increaseKey(3, 1);
+         fail("Increased to a smaller key");
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+         pq.increaseKey(3, 3);
+         fail("Increased to an equal key");
+      } catch (IllegalArgumentException expected) {
+      }
+      assertEquals(3, (int) pq.keyOf(3));
+   }
+
+   @Test
+   public void testDecreaseKey() {
+      IndexMaxPQ<Integer> pq = new IndexMaxPQ<>(10);
+      for (int i = 0; i < 10; i++) {
+         pq.insert(i, i);
+      }
+      pq.decreaseKey(9, -1);
+      assertEquals(8, pq.maxIndex());
+      assertEquals(-1, (int) pq.keyOf(9));
+      try {
+         pq.decreaseKey(5, 6);
+         fail("Decreased to a larger key");
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+         pq.decreaseKey(5, 5);
+         fail("Decreased to an equal key");
+      } catch (IllegalArgumentException expected) {
+      }
+      for (int i = 8; i >= 0; i--) {
+         assertEquals(i, pq.delMax());
+      }
+      assertEquals(9, pq.delMax());
+   }
+
+   @Test
+   public void testDeleteAndContains() {
+      IndexMaxPQ<Integer> pq = new IndexMaxPQ<>(10);
+      for (int i = 0; i < 10; i++) {
+         pq.insert(i, (i * 7) % 10);
+      }
+      assertTrue(pq.contains(4));
+      assertFalse(pq.contains(10));
+      assertFalse(pq.contains(1000));
+      pq.delete(4);
+      pq.delete(1);
+      assertFalse(pq.contains(4));
+      assertFalse(pq.contains(1));
+      assertEquals(8, pq.size());
+      // A deleted handle can be inserted again
+      pq.insert(4, 100);
+      assertEquals(4, pq.maxIndex());
+
+      try {
+         pq.delete(1);
+         fail("Deleted an absent handle");
+      } catch (NoSuchElementException expected) {
+      }
+      try {
+         pq.contains(-1);
+         fail("Accepted a negative handle");
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+         pq.insert(4, 0);
+         fail("Inserted a handle twice");
+      } catch (IllegalArgumentException expected) {
+      }
+   }
+
+   @Test
+   public void testHeapifyConstructor() {
+      Random random = new Random(1);
+      Integer[] keys = new Integer[1000];
+      HashMap<Integer, Integer> expected = new HashMap<>();
+      for (int i = 0; i < keys.length; i++) {
+         // Some handles are left out
+         if (random.nextInt(4) != 0) {
+            keys[i] = random.nextInt(100);
+            expected.put(i, keys[i]);
+         }
+      }
+      IndexMaxPQ<Integer> pq = new IndexMaxPQ<>(keys);
+      assertEquals(expected.size(), pq.size());
+      for (int i = 0; i < keys.length; i++) {
+         assertEquals(keys[i] != null, pq.contains(i));
+      }
+      assertEquals(sortedHandles(expected), iteratedHandles(pq));
+
+      // Ordered by the comparator when one is given
+      IndexMaxPQ<Integer> min = new IndexMaxPQ<>(keys, Collections.reverseOrder());
+      int previous = Integer.MIN_VALUE;
+      while (!min.isEmpty()) {
+         int key = min.maxKey();
+         min.delMax();
+         assertTrue(key >= previous);
+         previous = key;
+      }
+   }
+
+   @Test
+   public void testMatchesMap() {
+      Random random = new Random(2);
+      IndexMaxPQ<Integer> pq = new IndexMaxPQ<>(0);
+      HashMap<Integer, Integer> expected = new HashMap<>();
+      for (int step = 0; step < 5000; step++) {
+         int handle = random.nextInt(200);
+         int key = random.nextInt(1000);
+         int op = random.nextInt(5);
+         if (!expected.containsKey(handle)) {
+            pq.insert(handle, key);
+            expected.put(handle, key);
+         } else if (op == 0) {
+            pq.delete(handle);
+            expected.remove(handle);
+         } else if (op == 1 && key > expected.get(handle)) {
+            pq.increaseKey(handle, key);
+            expected.put(handle, key);
+         } else if (op == 2 && key < expected.get(handle)) {
+            pq.decreaseKey(handle, key);
+            expected.put(handle, key);
+         } else if (op == 3) {
+            pq.changeKey(handle, key);
+            expected.put(handle, key);
+         } else if (!pq.isEmpty()) {
+            int max = pq.maxIndex();
+            assertEquals(expected.get(sortedHandles(expected).get(0)), pq.maxKey());
+            assertEquals(max, pq.delMax());
+            expected.remove(max);
+         }
+         assertEquals(expected.size(), pq.size());
+         if (step % 100 == 0) {
+            assertEquals(sortedHandles(expected), iteratedHandles(pq));
+         }
+      }
+   }
+
+   @Test
+   public void testIteratorStopsEarly() {
+      IndexMaxPQ<Integer> pq = new IndexMaxPQ<>(100);
+      for (int i = 0; i < 100; i++) {
+         pq.insert(i, i);
+      }
+      Iterator<Integer> handles = pq.iterator();
+      for (int i = 99; i > 94; i--) {
+         assertEquals(i, (int) handles.next());
+      }
+      // Iterating leaves the queue as it was
+      assertEquals(100, pq.size());
+      assertEquals(99, pq.maxIndex());
+      assertFalse(new IndexMaxPQ<Integer>(1).iterator().hasNext());
+   }
+
+   @Test
+   public void testIteratorFailsFast() {
+      IndexMaxPQ<Integer> pq = new IndexMaxPQ<>(10);
+      for (int i = 0; i < 10; i++) {
+         pq.insert(i, i);
+      }
+      Runnable[] changes = {
+            () -> pq.insert(10, 10),
+            () -> pq.delMax(),
+            () -> pq.delete(3),
+            () -> pq.changeKey(4, 40),
+            () -> pq.increaseKey(5, 50),
+            () -> pq.decreaseKey(6, -6),
+      };
+      for (Runnable change : changes) {
+         Iterator<Integer> handles = pq.iterator();
+         handles.next();
+         change.run();
+         try {
+            handles.next();
+            fail("Kept iterating after the queue changed");
+         } catch (ConcurrentModificationException expected) {
+         }
+      }
+      // Reading the queue does not invalidate an iterator
+      Iterator<Integer> handles = pq.iterator();
+      handles.next();
+      pq.maxKey();
+      pq.contains(1);
+      pq.keyOf(1);
+      handles.next();
+   }
+}
@@ -0,0 +1,105 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import investigation.*;
+
+public class MappedHackerFileTest {
+   /*
+    * Decodes records straight from a mapped file and checks each against an
+    * Incident built from the same lines read as text.
+    */
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static List<String> lines(String inputFile) throws IOException {
+      return Files.readAllLines(Paths.get(inputFile), StandardCharsets.UTF_8);
+   }
+
+   private String write(String text) throws IOException {
+      File file = folder.newFile();
+      Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+      return file.getPath();
+   }
+
+   // Checks every record of the mapped file against the given lines
+   private static void assertSameRecords(List<String> lines, MappedHackerFile file) {
+      assertEquals(lines.size() / 7, file.numRecords());
+      for (int record = 0; record < file.numRecords(); record++) {
+         List<String> fields = lines.subList(record * 7, record * 7 + 7);
+         Incident expected = new Incident(fields.get(3), fields.get(4), fields.get(5), fields.get(2), fields.get(1),
+               fields.get(6));
+         Incident incident = file.incident(record);
+         assertEquals(fields.get(0), file.name(record));
+         assertEquals(expected, incident);
+         assertEquals(fields.get(5), incident.getDate());
+         assertEquals(fields.get(2), incident.getLocation());
+         assertEquals(fields.get(1), incident.getIPHash());
+         assertEquals(fields.get(6), incident.getURLHash());
+      }
+   }
+
+   @Test
+   public void testDecodesEveryRecord() throws IOException {
+      for (String inputFile : new String[] { "hackerTest.in", "hacker1.in", "hacker4.in" }) {
+         assertSameRecords(lines(inputFile), new MappedHackerFile(inputFile));
+      }
+   }
+
+   @Test
+   public void testCrlfLineBreaks() throws IOException {
+      List<String> lines = lines("hacker1.in");
+      assertSameRecords(lines, new MappedHackerFile(write(String.join("\r\n", lines) + "\r\n")));
+      // Without a line break after the last record
+      assertSameRecords(lines, new MappedHackerFile(write(String.join("\r\n", lines))));
+   }
+
+   @Test
+   public void testTrailingBlankLines() throws IOException {
+      List<String> lines = lines("hackerTest.in");
+      assertSameRecords(lines, new MappedHackerFile(write(String.join("\n", lines) + "\n\n\n")));
+      assertSameRecords(lines, new MappedHackerFile(write(String.join("\n", lines) + "\n \t\n\r\n")));
+   }
+
+   @Test
+   public void testEmptyFile() throws IOException {
+      assertEquals(0, new MappedHackerFile(write("")).numRecords());
+      assertEquals(0, new MappedHackerFile(write("\n\n")).numRecords());
+   }
+
+   @Test
+   public void testTruncatedLastRecord() throws IOException {
+      List<String> lines = lines("hackerTest.in");
+      for (int missing = 1; missing < 7; missing++) {
+         String text = String.join("\n", lines.subList(0, lines.size() - missing)) + "\n";
+         try {
+            new MappedHackerFile(write(text));
+            fail("Accepted a record missing " + missing + " lines");
+         } catch (IllegalArgumentException expected) {
+         }
+      }
+   }
+
+   @Test(expected = IndexOutOfBoundsException.class)
+   public void testRecordOutOfRange() {
+      MappedHackerFile file = new MappedHackerFile("hackerTest.in");
+      file.incident(file.numRecords());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testMalformedHash() throws IOException {
+      String text = "Hacker1\nnot a hash\nMars\nLinux\nApache\n2014-01-01\n" + "0".repeat(32) + "\n";
+      new MappedHackerFile(write(text)).incident(0);
+   }
+}
@@ -0,0 +1,121 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class MergeTest {
+   /*
+    * Checks merging hackers and resolving merged-away names to the hacker
+    * they were merged into.
+    */
+
+   private CyberCrimeInvestigation investigation;
+
+   @Before
+   public void setUp() {
+      investigation = new CyberCrimeInvestigation();
+   }
+
+   private static Incident incident(int url) {
+      String hash = String.format("%032x", url);
+      return new Incident("Linux", "Apache", "2014-01-01", "Mars", hash, hash);
+   }
+
+   // Adds a hacker with incidents at urls from, from + 1, ..., from + count - 1
+   private void add(String name, int from, int count) {
+      Hacker hacker = new Hacker(name);
+      for (int url = from; url < from + count; url++) {
+         hacker.addIncident(incident(url));
+      }
+      investigation.addHacker(hacker);
+   }
+
+   private static ArrayList<String> names(ArrayList<Hacker> hackers) {
+      ArrayList<String> names = new ArrayList<>();
+      for (Hacker hacker : hackers) {
+         names.add(hacker.getName());
+      }
+      return names;
+   }
+
+   @Test
+   public void testMergeKeepsLargerHacker() {
+      add("Small", 0, 1);
+      add("Large", 10, 3);
+      assertTrue(investigation.mergeHackers("Small", "Large"));
+
+      Hacker kept = investigation.search("Large");
+      assertEquals("Large", kept.getName());
+      assertEquals(4, kept.numIncidents());
+      assertTrue(kept.getAliases().contains("Small"));
+      assertEquals(1, investigation.numHackers());
+      assertEquals(1, investigation.getNMostWanted(5).size());
+      assertEquals(4, investigation.getNMostWanted(1).get(0).numIncidents());
+      assertEquals(names(investigation.getNMostWanted(1)), names(investigation.getHackersByLocation("Mars")));
+   }
+
+   @Test
+   public void testMergeKeepsIncidentOrder() {
+      add("A", 0, 3);
+      add("B", 10, 2);
+      assertTrue(investigation.mergeHackers("A", "B"));
+      List<Incident> incidents = investigation.search("A").getIncidents();
+      assertEquals(5, incidents.size());
+      int[] urls = { 0, 1, 2, 10, 11 };
+      for (int i = 0; i < urls.length; i++) {
+         assertEquals(incident(urls[i]), incidents.get(i));
+      }
+   }
+
+   @Test
+   public void testMergedNamesResolve() {
+      add("A", 0, 1);
+      add("B", 10, 2);
+      add("C", 20, 3);
+      add("D", 30, 10);
+      assertTrue(investigation.mergeHackers("B", "A"));
+      assertTrue(investigation.mergeHackers("C", "B"));
+      // A and B now both name the hacker kept as C
+      assertSame(investigation.search("C"), investigation.search("A"));
+      assertSame(investigation.search("C"), investigation.search("B"));
+      assertEquals(6, investigation.search("A").numIncidents());
+
+      // Merging by a former name merges the hacker it resolves to
+      assertTrue(investigation.mergeHackers("A", "D"));
+      assertEquals("D", investigation.search("A").getName());
+      assertEquals(16, investigation.search("B").numIncidents());
+      assertEquals(1, investigation.numHackers());
+
+      assertFalse(investigation.mergeHackers("A", "D"));
+      assertFalse(investigation.mergeHackers("D", "Nobody"));
+   }
+
+   @Test
+   public void testRemoveForgetsMergedNames() {
+      add("A", 0, 1);
+      add("B", 10, 2);
+      assertTrue(investigation.mergeHackers("B", "A"));
+      assertNotNull(investigation.remove("B"));
+      assertNull(investigation.search("A"));
+      assertNull(investigation.search("B"));
+
+      // A former name can be reused by a new hacker
+      add("A", 20, 1);
+      assertEquals(1, investigation.search("A").numIncidents());
+      assertTrue(investigation.search("A").getAliases().isEmpty());
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void testIncidentsAreReadOnly() {
+      add("A", 0, 2);
+      add("B", 10, 1);
+      assertTrue(investigation.mergeHackers("A", "B"));
+      investigation.search("A").getIncidents().add(incident(99));
+   }
+}
@@ -0,0 +1,131 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class MostWantedSketchTest {
+   /*
+    * Checks the approximate ranking against exact counts on a skewed stream:
+    * a few heavy hitters with far more incidents than a long tail of others.
+    */
+
+   private static final int HEAVY_HITTERS = 5;
+
+   // Heavy hitter i has 1000 * (HEAVY_HITTERS - i) incidents; the tail has 1 to 5 each
+   private static HashMap<String, Integer> stream(MostWantedSketch sketch, Random random) {
+      HashMap<String, Integer> counts = new HashMap<>();
+      ArrayList<String> arrivals = new ArrayList<>();
+      for (int i = 0; i < HEAVY_HITTERS; i++) {
+         for (int j = 0; j < 1000 * (HEAVY_HITTERS - i); j++) {
+            arrivals.add("Heavy" + i);
+         }
+      }
+      for (int i = 0; i < 5000; i++) {
+         int incidents = 1 + random.nextInt(5);
+         for (int j = 0; j < incidents; j++) {
+            arrivals.add("Tail" + i);
+         }
+      }
+      Collections.shuffle(arrivals, random);
+      for (String name : arrivals) {
+         sketch.add(name, 1);
+         counts.merge(name, 1, Integer::sum);
+      }
+      return counts;
+   }
+
+   @Test
+   public void testEstimatesNeverUndercount() {
+      MostWantedSketch sketch = new MostWantedSketch(10, 0.001, 0.01);
+      HashMap<String, Integer> counts = stream(sketch, new Random(1));
+      long total = 0;
+      int overBound = 0;
+      for (String name : counts.keySet()) {
+         long estimate = sketch.estimate(name);
+         assertTrue(name, estimate >= counts.get(name));
+         if (estimate - counts.get(name) > sketch.errorBound()) {
+            overBound++;
+         }
+         total += counts.get(name);
+      }
+      assertEquals(total, sketch.total());
+      // Exceeding the bound is allowed for about delta of the hackers
+      assertTrue(overBound <= counts.size() / 50);
+   }
+
+   @Test
+   public void testTopMatchesExactRanking() {
+      MostWantedSketch sketch = new MostWantedSketch(10, 0.001, 0.01);
+      HashMap<String, Integer> counts = stream(sketch, new Random(2));
+      LinkedHashMap<String, Long> top = sketch.top(HEAVY_HITTERS);
+      ArrayList<String> expected = new ArrayList<>();
+      for (int i = 0; i < HEAVY_HITTERS; i++) {
+         expected.add("Heavy" + i);
+      }
+      // The gaps between heavy hitters are far above the error bound
+      assertTrue(sketch.errorBound() < 500);
+      assertEquals(expected, new ArrayList<>(top.keySet()));
+      for (String name : top.keySet()) {
+         assertTrue(top.get(name) - counts.get(name) <= sketch.errorBound());
+      }
+   }
+
+   @Test
+   public void testApproximateMode() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      investigation.initializeTable("hackerTest.in");
+      investigation.enableApproximateMode(3, 0.01, 0.01);
+      // Hackers already in the directory are counted first
+      assertEquals(3, investigation.getApproximateMostWanted(3).size());
+
+      String hash = "0".repeat(32);
+      for (int i = 0; i < 10; i++) {
+         Hacker hacker = new Hacker("Newcomer");
+         hacker.addIncident(new Incident("Linux", "Apache", "2014-01-01", "Mars", hash, hash));
+         investigation.addHacker(hacker);
+      }
+      LinkedHashMap<String, Long> top = investigation.getApproximateMostWanted(1);
+      assertEquals(10L, (long) top.get("Newcomer"));
+      // New hackers are counted, not stored
+      assertNull(investigation.search("Newcomer"));
+      assertEquals(4, investigation.numHackers());
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void testApproximateModeNotEnabled() {
+      new CyberCrimeInvestigation().getApproximateMostWanted(1);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testTooManyCounters() {
+      // About 2.7 billion columns
+      new MostWantedSketch(10, 1e-9, 0.01);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testCounterCountOverflows() {
+      // 27 million columns in 100 rows do not fit an int
+      new MostWantedSketch(10, 1e-7, 1e-43);
+   }
+
+   @Test
+   public void testRejectsBadParameters() {
+      double[][] bad = { { 0, 0.5 }, { 1, 0.5 }, { 0.5, 0 }, { 0.5, 1 }, { Double.NaN, 0.5 }, { 0.5, Double.NaN } };
+      for (double[] parameters : bad) {
+         try {
+            new MostWantedSketch(10, parameters[0], parameters[1]);
+            fail("Accepted epsilon " + parameters[0] + " and delta " + parameters[1]);
+         } catch (IllegalArgumentException expected) {
+         }
+      }
+   }
+}
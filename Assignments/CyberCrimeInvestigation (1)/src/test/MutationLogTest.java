@@ -0,0 +1,161 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import investigation.*;
+
+public class MutationLogTest {
+   /*
+    * Recovers directories from the mutation log: after a crash, after a
+    * checkpoint, from a torn last frame, and after concurrent mutations.
+    */
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private String snapshotFile;
+   private String logFile;
+   private String checkpointFile;
+
+   @Before
+   public void setUp() {
+      snapshotFile = new File(folder.getRoot(), "directory.snap").getPath();
+      logFile = new File(folder.getRoot(), "mutations.log").getPath();
+      checkpointFile = new File(folder.getRoot(), "checkpoint.snap").getPath();
+   }
+
+   private static Hacker hacker(String name, String date, int url) {
+      Hacker hacker = new Hacker(name);
+      String hash = String.format("%032x", url);
+      hacker.addIncident(new Incident("Windows", "IIS", date, "Mars", hash, hash));
+      return hacker;
+   }
+
+   // Adds, removes and merges a few hackers, all of which are logged
+   private static void mutate(CyberCrimeInvestigation investigation, int round) {
+      for (int i = 0; i < 20; i++) {
+         investigation.addHacker(hacker("Hacker" + (round * 7 + i) % 30, "2014-01-0" + (1 + i % 9), i));
+      }
+      investigation.remove("Hacker" + (round * 3) % 30);
+      investigation.mergeHackers("Hacker" + (round * 5 + 1) % 30, "Hacker" + (round * 5 + 2) % 30);
+   }
+
+   @Test
+   public void testLogReplaysAfterCrash() {
+      CyberCrimeInvestigation original = new CyberCrimeInvestigation();
+      assertEquals(0, original.openMutationLog(logFile, checkpointFile));
+      original.initializeTable("hackerTest.in");
+      mutate(original, 0);
+      original.enableDeduplication();
+      mutate(original, 1);
+      original.syncMutationLog();
+      // Left open, as if the process died here
+
+      CyberCrimeInvestigation recovered = new CyberCrimeInvestigation();
+      assertTrue(recovered.openMutationLog(logFile, checkpointFile) > 40);
+      SnapshotTest.assertSameDirectory(original, recovered);
+
+      // Keeps logging where the old log left off
+      mutate(recovered, 2);
+      recovered.closeMutationLog();
+      CyberCrimeInvestigation again = new CyberCrimeInvestigation();
+      again.openMutationLog(logFile, checkpointFile);
+      SnapshotTest.assertSameDirectory(recovered, again);
+      again.closeMutationLog();
+   }
+
+   @Test
+   public void testCheckpointReplaysOnlyLaterMutations() {
+      CyberCrimeInvestigation original = new CyberCrimeInvestigation();
+      original.openMutationLog(logFile, checkpointFile);
+      mutate(original, 0);
+      original.checkpoint();
+      mutate(original, 1);
+      original.closeMutationLog();
+
+      CyberCrimeInvestigation recovered = new CyberCrimeInvestigation();
+      // 20 adds, a remove and a merge since the checkpoint
+      assertEquals(22, recovered.openMutationLog(logFile, checkpointFile));
+      SnapshotTest.assertSameDirectory(original, recovered);
+      recovered.closeMutationLog();
+   }
+
+   @Test
+   public void testTornFrameIsCutOff() throws IOException {
+      CyberCrimeInvestigation original = new CyberCrimeInvestigation();
+      original.openMutationLog(logFile, checkpointFile);
+      mutate(original, 0);
+      original.syncMutationLog();
+      original.saveSnapshot(snapshotFile);
+      CyberCrimeInvestigation expected = new CyberCrimeInvestigation();
+      expected.loadSnapshot(snapshotFile);
+      original.addHacker(hacker("Hacker99", "2015-01-01", 99));
+      original.closeMutationLog();
+
+      // The last frame was only half written
+      try (RandomAccessFile log = new RandomAccessFile(logFile, "rw")) {
+         log.setLength(log.length() - 5);
+      }
+      CyberCrimeInvestigation recovered = new CyberCrimeInvestigation();
+      assertEquals(22, recovered.openMutationLog(logFile, checkpointFile));
+      SnapshotTest.assertSameDirectory(expected, recovered);
+      assertNull(recovered.search("Hacker99"));
+
+      // The torn frame is overwritten by the next mutation
+      recovered.addHacker(hacker("Hacker98", "2015-01-01", 98));
+      recovered.closeMutationLog();
+      CyberCrimeInvestigation again = new CyberCrimeInvestigation();
+      assertEquals(23, again.openMutationLog(logFile, checkpointFile));
+      SnapshotTest.assertSameDirectory(recovered, again);
+      again.closeMutationLog();
+   }
+
+   @Test
+   public void testConcurrentAddAndMergeReplaysTheSame() throws InterruptedException {
+      for (int round = 0; round < 20; round++) {
+         String log = new File(folder.getRoot(), "concurrent" + round + ".log").getPath();
+         String checkpoint = new File(folder.getRoot(), "concurrent" + round + ".snap").getPath();
+         CyberCrimeInvestigation live = new CyberCrimeInvestigation("concurrent");
+         live.openMutationLog(log, checkpoint);
+         live.addHacker(hacker("X0", "2014-01-01", 0));
+
+         // One thread adds X1, X2, ... while the other merges each into X0 as soon as it can
+         int count = 300;
+         Thread adder = new Thread(() -> {
+            for (int i = 1; i <= count; i++) {
+               live.addHacker(hacker("X" + i, "2014-01-02", i));
+               live.addHacker(hacker("X" + i, "2014-01-03", count + i));
+            }
+         });
+         Thread merger = new Thread(() -> {
+            for (int i = 1; i <= count; i++) {
+               live.mergeHackers("X0", "X" + i);
+            }
+         });
+         adder.start();
+         merger.start();
+         adder.join();
+         merger.join();
+         live.closeMutationLog();
+
+         CyberCrimeInvestigation replayed = new CyberCrimeInvestigation("concurrent");
+         replayed.openMutationLog(log, checkpoint);
+         SnapshotTest.assertSameDirectory(live, replayed);
+         replayed.closeMutationLog();
+      }
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void testLogNeedsEmptyDirectory() {
+      CyberCrimeInvestigation investigation = new CyberCrimeInvestigation();
+      investigation.initializeTable("hackerTest.in");
+      investigation.openMutationLog(logFile, checkpointFile);
+   }
+}
@@ -0,0 +1,186 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class OffHeapParityTest {
+   /*
+    * Applies the same random adds, removes and merges to a directory keeping
+    * incidents on the heap and to ones keeping them in an IncidentStore, and
+    * checks every query answers the same. Also moves incidents off the heap
+    * while another thread adds hackers.
+    */
+
+   private static final String[] OSES = { "Linux", "Windows", "FreeBSD" };
+   private static final String[] WEB_SERVERS = { "Apache", "IIS", "nginx" };
+   private static final String[] LOCATIONS = { "Mars", "Venus", "Europa", "Titan" };
+
+   private static Incident incident(Random random) {
+      String date = String.format("2014-%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28));
+      String ip = String.format("%032x", random.nextInt(50));
+      String url = String.format("%032x", random.nextInt(200));
+      return new Incident(OSES[random.nextInt(OSES.length)], WEB_SERVERS[random.nextInt(WEB_SERVERS.length)],
+            date, LOCATIONS[random.nextInt(LOCATIONS.length)], ip, url);
+   }
+
+   private static ArrayList<String> strings(Iterable<?> values) {
+      ArrayList<String> strings = new ArrayList<>();
+      for (Object value : values) {
+         strings.add(value.toString());
+      }
+      return strings;
+   }
+
+   // Checks the incidents are in date order, then sorts them, as the order within a day is not fixed
+   private static ArrayList<String> incidents(ArrayList<Incident> incidents) {
+      ArrayList<String> strings = new ArrayList<>();
+      for (int i = 0; i < incidents.size(); i++) {
+         if (i > 0) {
+            assertTrue(incidents.get(i - 1).getEpochDay() <= incidents.get(i).getEpochDay());
+         }
+         strings.add(incidents.get(i).getDate() + " " + incidents.get(i));
+      }
+      Collections.sort(strings);
+      return strings;
+   }
+
+   private static TreeSet<String> names(ArrayList<Hacker> hackers) {
+      TreeSet<String> names = new TreeSet<>();
+      for (Hacker hacker : hackers) {
+         names.add(hacker.getName());
+      }
+      return names;
+   }
+
+   private static void assertSameAnswers(CyberCrimeInvestigation heap, CyberCrimeInvestigation offHeap) {
+      assertEquals(heap.toString(), offHeap.toString());
+      assertEquals(strings(heap.getNMostWanted(10)), strings(offHeap.getNMostWanted(10)));
+      for (String location : LOCATIONS) {
+         assertEquals(strings(heap.getHackersByLocation(location)), strings(offHeap.getHackersByLocation(location)));
+      }
+      assertEquals(incidents(heap.getIncidentsBetween("2014-03-01", "2014-05-31")),
+            incidents(offHeap.getIncidentsBetween("2014-03-01", "2014-05-31")));
+      assertEquals(names(heap.getHackersBetween("2014-06-01", "2014-06-30")),
+            names(offHeap.getHackersBetween("2014-06-01", "2014-06-30")));
+      assertEquals(strings(heap.getNMostWanted(5, "2014-01-01", "2014-02-28")),
+            strings(offHeap.getNMostWanted(5, "2014-01-01", "2014-02-28")));
+
+      IncidentQuery query = IncidentQuery.os("Linux")
+            .and(IncidentQuery.location("Mars").or(IncidentQuery.webServer("IIS")))
+            .and(IncidentQuery.between("2014-02-01", "2014-10-31").not().not());
+      assertEquals(incidents(heap.getIncidents(query)), incidents(offHeap.getIncidents(query)));
+      assertEquals(names(heap.getHackers(query)), names(offHeap.getHackers(query)));
+
+      for (Hacker hacker : heap.hackers()) {
+         assertEquals(hacker.numDistinctURLs(), offHeap.getDistinctURLs(hacker.getName()));
+      }
+   }
+
+   private void checkParity(boolean deduplicate, long seed) {
+      CyberCrimeInvestigation heap = new CyberCrimeInvestigation();
+      CyberCrimeInvestigation offHeap = new CyberCrimeInvestigation();
+      // Moved off the heap halfway through
+      CyberCrimeInvestigation moved = new CyberCrimeInvestigation();
+      CyberCrimeInvestigation[] all = { heap, offHeap, moved };
+      offHeap.enableOffHeapIncidents();
+      if (deduplicate) {
+         for (CyberCrimeInvestigation investigation : all) {
+            investigation.enableDeduplication();
+         }
+      }
+
+      Random random = new Random(seed);
+      for (int step = 0; step < 3000; step++) {
+         String name = "Hacker" + random.nextInt(60);
+         int op = random.nextInt(20);
+         if (op < 16) {
+            Incident incident = incident(random);
+            for (CyberCrimeInvestigation investigation : all) {
+               Hacker hacker = new Hacker(name);
+               hacker.addIncident(incident);
+               investigation.addHacker(hacker);
+            }
+         } else if (op < 17) {
+            for (CyberCrimeInvestigation investigation : all) {
+               investigation.remove(name);
+            }
+         } else {
+            String other = "Hacker" + random.nextInt(60);
+            for (CyberCrimeInvestigation investigation : all) {
+               investigation.mergeHackers(name, other);
+            }
+         }
+         if (step == 1500) {
+            moved.enableOffHeapIncidents();
+         }
+         if (step % 500 == 0) {
+            assertSameAnswers(heap, offHeap);
+            assertSameAnswers(heap, moved);
+         }
+      }
+      assertSameAnswers(heap, offHeap);
+      assertSameAnswers(heap, moved);
+      assertEquals(0, heap.getOffHeapIncidentBytes());
+      assertTrue(offHeap.getOffHeapIncidentBytes() > 0);
+   }
+
+   @Test
+   public void testSameAnswersOffHeap() {
+      for (long seed = 0; seed < 3; seed++) {
+         checkParity(false, seed);
+      }
+   }
+
+   @Test
+   public void testSameAnswersOffHeapWithDeduplication() {
+      for (long seed = 0; seed < 3; seed++) {
+         checkParity(true, seed);
+      }
+   }
+
+   @Test(timeout = 60000)
+   public void testEnableWhileAddingWithBloomFilter() throws InterruptedException {
+      for (int round = 0; round < 20; round++) {
+         CyberCrimeInvestigation investigation = new CyberCrimeInvestigation("concurrent");
+         investigation.enableBloomFilter();
+         Random random = new Random(round);
+         // Adds grow the directory, so the filter is rebuilt while incidents move off the heap
+         Thread adder = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+               Hacker hacker = new Hacker("Hacker" + i);
+               hacker.addIncident(incident(random));
+               investigation.addHacker(hacker);
+            }
+         });
+         adder.start();
+         investigation.enableOffHeapIncidents();
+         adder.join();
+         assertEquals(2000, investigation.numHackers());
+         assertTrue(investigation.getOffHeapIncidentBytes() > 0);
+         for (int i = 0; i < 2000; i++) {
+            assertEquals(1, investigation.search("Hacker" + i).numIncidents());
+         }
+      }
+   }
+
+   @Test
+   public void testSameAnswersForInputFile() {
+      CyberCrimeInvestigation heap = new CyberCrimeInvestigation();
+      heap.initializeTable("hacker2.in");
+      CyberCrimeInvestigation offHeap = new CyberCrimeInvestigation();
+      offHeap.enableOffHeapIncidents();
+      offHeap.initializeTable("hacker2.in");
+      assertEquals(heap.toString(), offHeap.toString());
+      assertEquals(strings(heap.getNMostWanted(10)), strings(offHeap.getNMostWanted(10)));
+      assertEquals(incidents(heap.getIncidentsBetween("2000-01-01", "2020-12-31")),
+            incidents(offHeap.getIncidentsBetween("2000-01-01", "2020-12-31")));
+   }
+}
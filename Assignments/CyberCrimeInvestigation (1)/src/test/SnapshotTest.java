@@ -0,0 +1,113 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import investigation.*;
+
+public class SnapshotTest {
+   /*
+    * Round-trips directories through binary snapshots.
+    */
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private String snapshotFile;
+
+   @Before
+   public void setUp() {
+      snapshotFile = new File(folder.getRoot(), "directory.snap").getPath();
+   }
+
+   // Every hacker with its aliases and incidents, keyed by name so table order does not matter
+   static TreeMap<String, String> contents(CyberCrimeInvestigation investigation) {
+      TreeMap<String, String> contents = new TreeMap<>();
+      for (Hacker hacker : investigation.hackers()) {
+         StringBuilder sb = new StringBuilder(hacker.toString());
+         for (Incident incident : hacker.getIncidents()) {
+            sb.append("\n\t").append(incident).append(' ').append(incident.getDate());
+         }
+         contents.put(hacker.getName(), sb.toString());
+      }
+      return contents;
+   }
+
+   static ArrayList<String> mostWanted(CyberCrimeInvestigation investigation) {
+      ArrayList<String> names = new ArrayList<>();
+      for (Hacker hacker : investigation.getNMostWanted(10)) {
+         names.add(hacker.getName());
+      }
+      return names;
+   }
+
+   static void assertSameDirectory(CyberCrimeInvestigation expected, CyberCrimeInvestigation actual) {
+      assertEquals(expected.numHackers(), actual.numHackers());
+      assertEquals(contents(expected), contents(actual));
+      assertEquals(mostWanted(expected), mostWanted(actual));
+   }
+
+   @Test
+   public void testSnapshotRoundTrip() {
+      CyberCrimeInvestigation original = new CyberCrimeInvestigation();
+      original.initializeTable("hacker1.in");
+      assertTrue(original.mergeHackers("Hacker2896", "Hacker6138"));
+      assertNotNull(original.remove("Hacker8157"));
+      original.saveSnapshot(snapshotFile);
+
+      CyberCrimeInvestigation loaded = new CyberCrimeInvestigation();
+      loaded.loadSnapshot(snapshotFile);
+      assertSameDirectory(original, loaded);
+      // Merged-away names still resolve
+      assertSame(loaded.search("Hacker2896"), loaded.search("Hacker6138"));
+      assertNull(loaded.search("Hacker8157"));
+      assertEquals(original.getIncidentsBetween("2000-01-01", "2020-12-31").size(),
+            loaded.getIncidentsBetween("2000-01-01", "2020-12-31").size());
+   }
+
+   @Test
+   public void testEmptySnapshot() {
+      new CyberCrimeInvestigation().saveSnapshot(snapshotFile);
+      CyberCrimeInvestigation loaded = new CyberCrimeInvestigation();
+      loaded.loadSnapshot(snapshotFile);
+      assertEquals(0, loaded.numHackers());
+   }
+
+   @Test
+   public void testSnapshotKeepsModes() {
+      CyberCrimeInvestigation original = new CyberCrimeInvestigation();
+      original.initializeTable("hacker1.in");
+      original.enableDeduplication();
+      original.enableOffHeapIncidents();
+      original.saveSnapshot(snapshotFile);
+
+      CyberCrimeInvestigation loaded = new CyberCrimeInvestigation();
+      loaded.loadSnapshot(snapshotFile);
+      assertSameDirectory(original, loaded);
+      assertTrue(loaded.getOffHeapIncidentBytes() > 0);
+
+      // Still de-duplicating after the load
+      Hacker some = loaded.hackers().iterator().next();
+      int incidents = some.numIncidents();
+      Hacker again = new Hacker(some.getName());
+      again.addIncident(some.getIncidents().get(0));
+      loaded.addHacker(again);
+      assertEquals(incidents, loaded.search(some.getName()).numIncidents());
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testRejectsOtherFiles() throws IOException {
+      try (FileOutputStream out = new FileOutputStream(snapshotFile)) {
+         out.write("Hacker1\n".getBytes());
+      }
+      new CyberCrimeInvestigation().loadSnapshot(snapshotFile);
+   }
+}
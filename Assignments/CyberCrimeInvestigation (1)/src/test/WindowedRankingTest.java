@@ -0,0 +1,177 @@
+package test;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.*;
+
+import investigation.*;
+
+public class WindowedRankingTest {
+   /*
+    * Checks the windowed most wanted ranking against a brute-force recount of
+    * every hacker's incidents after each random add, remove, merge and advance,
+    * and after de-duplication is turned on under a window already running.
+    */
+
+   private static final int WINDOW_DAYS = 7;
+   private static final LocalDate FIRST_DAY = LocalDate.of(2014, 1, 1);
+
+   private CyberCrimeInvestigation investigation;
+   private int today;
+
+   private static Incident incident(Random random) {
+      String date = FIRST_DAY.plusDays(random.nextInt(40)).toString();
+      // Few distinct values, so duplicates are common
+      String hash = Integer.toHexString(random.nextInt(3)) + "0".repeat(31);
+      return new Incident("Linux", "Apache", date, "Mars", hash, hash);
+   }
+
+   private void add(String name, Incident incident) {
+      Hacker hacker = new Hacker(name);
+      hacker.addIncident(incident);
+      investigation.addHacker(hacker);
+      today = Math.max(today, incident.getEpochDay());
+   }
+
+   // The ranking recounted from every hacker's incidents
+   private ArrayList<String> recount() {
+      HashMap<String, Integer> counts = new HashMap<>();
+      for (Hacker hacker : investigation.hackers()) {
+         int count = 0;
+         for (Incident incident : hacker.getIncidents()) {
+            int day = incident.getEpochDay();
+            if (day > today - WINDOW_DAYS && day <= today) {
+               count++;
+            }
+         }
+         if (count > 0) {
+            counts.put(hacker.getName(), count);
+         }
+      }
+      ArrayList<String> names = new ArrayList<>(counts.keySet());
+      names.sort(Comparator.comparing((String name) -> counts.get(name))
+            .thenComparing(Comparator.naturalOrder()).reversed());
+      return names;
+   }
+
+   private ArrayList<String> ranking() {
+      ArrayList<String> names = new ArrayList<>();
+      for (Hacker hacker : investigation.getNMostWantedInWindow(Integer.MAX_VALUE)) {
+         names.add(hacker.getName());
+      }
+      return names;
+   }
+
+   // De-duplication is turned on before the window if deduplicateAt is 0, before that step if positive, never if negative
+   private void checkAgainstRecount(int deduplicateAt, long seed) {
+      investigation = new CyberCrimeInvestigation();
+      today = Integer.MIN_VALUE;
+      if (deduplicateAt == 0) {
+         investigation.enableDeduplication();
+      }
+      investigation.enableWindowedRanking(WINDOW_DAYS);
+      Random random = new Random(seed);
+      for (int step = 0; step < 2000; step++) {
+         if (step > 0 && step == deduplicateAt) {
+            investigation.enableDeduplication();
+            assertEquals("deduplicated", recount(), ranking());
+         }
+         String name = "Hacker" + random.nextInt(20);
+         int op = random.nextInt(20);
+         if (op < 14) {
+            add(name, incident(random));
+         } else if (op < 16) {
+            investigation.remove(name);
+         } else if (op < 19) {
+            investigation.mergeHackers(name, "Hacker" + random.nextInt(20));
+         } else if (today != Integer.MIN_VALUE) {
+            today += random.nextInt(3);
+            investigation.advanceWindowTo(LocalDate.ofEpochDay(today).toString());
+         }
+         assertEquals("step " + step, recount(), ranking());
+      }
+   }
+
+   @Test
+   public void testWindowMatchesRecount() {
+      for (long seed = 0; seed < 5; seed++) {
+         checkAgainstRecount(-1, seed);
+      }
+   }
+
+   @Test
+   public void testWindowMatchesRecountWithDeduplication() {
+      for (long seed = 0; seed < 5; seed++) {
+         checkAgainstRecount(0, seed);
+      }
+   }
+
+   @Test
+   public void testWindowMatchesRecountAfterDeduplication() {
+      for (long seed = 0; seed < 5; seed++) {
+         checkAgainstRecount(200, seed);
+      }
+   }
+
+   private static Incident incident(String date, int url) {
+      String hash = String.format("%032x", url);
+      return new Incident("Linux", "Apache", date, "Mars", hash, hash);
+   }
+
+   @Test
+   public void testDeduplicationKeepsWindowEnd() {
+      investigation = new CyberCrimeInvestigation();
+      today = Integer.MIN_VALUE;
+      investigation.enableWindowedRanking(WINDOW_DAYS);
+      for (int i = 0; i < 3; i++) {
+         add("Hacker1", incident("2014-01-05", 0));
+      }
+      add("Hacker2", incident("2014-01-05", 1));
+      add("Hacker2", incident("2014-01-06", 2));
+      add("Hacker3", incident("2014-01-01", 3));
+      add("Hacker3", incident("2014-01-02", 4));
+      add("Hacker3", incident("2014-01-06", 5));
+      // The window now ends after the newest incident, leaving Hacker3's first two out
+      today = (int) LocalDate.of(2014, 1, 9).toEpochDay();
+      investigation.advanceWindowTo("2014-01-09");
+      assertEquals(recount(), ranking());
+
+      // Hacker1 keeps one incident, and the window still ends on the ninth
+      investigation.enableDeduplication();
+      ArrayList<String> expected = new ArrayList<>();
+      expected.add("Hacker2");
+      expected.add("Hacker3");
+      expected.add("Hacker1");
+      assertEquals(expected, ranking());
+      assertEquals(recount(), ranking());
+   }
+
+   @Test
+   public void testRejectedDuplicateIsNotCounted() {
+      investigation = new CyberCrimeInvestigation();
+      investigation.enableDeduplication();
+      investigation.enableWindowedRanking(WINDOW_DAYS);
+      Incident incident = new Incident("Linux", "Apache", "2014-01-01", "Mars", "0".repeat(32), "0".repeat(32));
+      add("Hacker1", incident);
+      add("Hacker1", incident);
+      add("Hacker1", incident);
+      add("Hacker2", incident);
+      add("Hacker2", new Incident("Linux", "Apache", "2014-01-02", "Mars", "0".repeat(32), "0".repeat(32)));
+      assertEquals(1, investigation.search("Hacker1").numIncidents());
+
+      ArrayList<Hacker> top = investigation.getNMostWantedInWindow(2);
+      assertEquals("Hacker2", top.get(0).getName());
+      assertEquals("Hacker1", top.get(1).getName());
+
+      // Merging drops Hacker1's incident as a duplicate of Hacker2's
+      assertTrue(investigation.mergeHackers("Hacker2", "Hacker1"));
+      assertEquals(2, investigation.search("Hacker2").numIncidents());
+      assertEquals(recount(), ranking());
+   }
+}